@@ -0,0 +1,57 @@
+package de.swa.gc;
+
+import java.util.List;
+
+/** Implementation of the Graph Code Metric, which resolves each query term only once per candidate.
+ * An alignment array maps the query's dictionary indices to the candidate's matrix indices, and only the
+ * query's non-zero edges are visited. The results are identical to GraphCodeMetric.
+ */
+public class AlignedGraphCodeMetric {
+    /** calculates the metric triple for Graph Codes based on a given query **/
+    public static float[] calculateSimilarity(GraphCode gcQuery, GraphCode gc) {
+        List<String> voc = gcQuery.getNormalizedDictionary();
+        if (voc.isEmpty()) {
+            // If query dictionary is empty, all metrics are 0
+            return new float[] {0f, 0f, 0f};
+        }
+        
+        float node_metric = GraphCodeMetric.calculateNodeMetric(gcQuery.getTermSignature(), voc.size(), gc.getTermSignature());
+        
+        final int[] alignment = align(voc, gc);
+        final int size = voc.size();
+        // counts[0]: non-zero query edges, counts[1]: matching edges, counts[2]: matching edge types
+        final int[] counts = new int[3];
+        gcQuery.visitNonZeroCells(new GraphCode.CellVisitor() {
+            public void visit(int i, int j, int value) {
+                if (i == j || i >= size || j >= size) return;
+                counts[0]++;
+                int gc_edge = getEdgeValue(gc, alignment[i], alignment[j]);
+                if (gc_edge != 0) counts[1]++;
+                if (gc_edge == value) counts[2]++;
+            }
+        });
+        
+        float edge_metric = counts[0] > 0 ? (float)counts[1] / (float)counts[0] : 0f;
+        float edge_type_metric = counts[1] > 0 ? (float)counts[2] / (float)counts[1] : 0f;
+        
+        return new float[] {node_metric, edge_metric, edge_type_metric};
+    }
+
+    /** maps every term of the query dictionary to its matrix index in the candidate, -1 if it is missing **/
+    public static int[] align(List<String> voc, GraphCode gc) {
+        int[] alignment = new int[voc.size()];
+        for (int i = 0; i < alignment.length; i++) alignment[i] = gc.getIndexForTerm(voc.get(i));
+        return alignment;
+    }
+
+    /** returns the candidate's value for two aligned indices, 0 if one of the terms is missing **/
+    static int getEdgeValue(GraphCode gc, int x, int y) {
+        if (x < 0 || y < 0) return 0;
+        try {
+            return gc.getValue(x, y);
+        }
+        catch (Exception ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package de.swa.gc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.swa.gc.processing.CompiledQuery;
+
+/** Engine for the Graph Code Metric of all pairs of a list of Graph Codes. The similarity matrix is split into square
+ * tiles, which are calculated on the common fork/join pool. Only the tiles on and above the diagonal are scheduled,
+ * each tile also yields the transposed pairs: the matching terms of two Graph Codes are counted once for both
+ * directions, and for Graph Codes with a normalized dictionary also the matching edges and edge types. Only the
+ * denominators of the metric depend on the direction. Results are identical to GraphCodeMetric.calculateSimilarity.
+ * Instead of holding all n * n metric triples, pairs above a threshold can be written to a sparse result file.
+ */
+public class AllPairsSimilarity {
+	public static final int DEFAULT_TILE_SIZE = 128;
+	/** magic bytes of the sparse result file **/
+	public static final byte[] MAGIC = { (byte)0x89, 'G', 'C', 'S' };
+	public static final int VERSION = 1;
+
+	/** receives the metric triple of an ordered pair, i.e. calculateSimilarity(gcs.get(i), gcs.get(j)) **/
+	public interface SimilarityVisitor {
+		void visit(int i, int j, float[] similarity);
+	}
+
+	private final List<GraphCode> gcs;
+	private final int tileSize;
+	private final int[] vocSizes, edgeCounts;
+	private final TermSignature[] signatures;
+	/** sorted edge keys (TermVocabulary IDs of row and column term) and values, null if the dictionary is not normalized **/
+	private final long[][] edgeKeys;
+	private final int[][] edgeValues;
+	/** compiled Graph Codes for the pairs, which cannot be calculated on the edge keys **/
+	private final CompiledQuery[] compiled;
+	private int maxVocSize;
+
+	public AllPairsSimilarity(List<GraphCode> gcs) {
+		this(gcs, DEFAULT_TILE_SIZE);
+	}
+
+	public AllPairsSimilarity(List<GraphCode> gcs, int tileSize) {
+		this.gcs = gcs;
+		this.tileSize = Math.max(1, tileSize);
+		int n = gcs.size();
+		vocSizes = new int[n];
+		edgeCounts = new int[n];
+		signatures = new TermSignature[n];
+		edgeKeys = new long[n][];
+		edgeValues = new int[n][];
+		compiled = new CompiledQuery[n];
+		boolean normalized = true;
+		for (int i = 0; i < n; i++) normalized &= prepare(i, gcs.get(i));
+		if (!normalized) {
+			for (int i = 0; i < n; i++) if (compiled[i] == null) compiled[i] = new CompiledQuery(gcs.get(i));
+		}
+	}
+
+	/** extracts the term signature and sorted edges of a Graph Code, returns false if its dictionary is not normalized **/
+	private boolean prepare(int idx, GraphCode gc) {
+		List<String> voc = gc.getNormalizedDictionary();
+		vocSizes[idx] = voc.size();
+		maxVocSize = Math.max(maxVocSize, voc.size());
+		signatures[idx] = gc.getTermSignature();
+		boolean normalized = voc.size() == gc.getDictionarySize();
+		for (int i = 0; normalized && i < voc.size(); i++) normalized = voc.get(i).equals(gc.getTermForIndex(i));
+		if (!normalized) {
+			compiled[idx] = new CompiledQuery(gc);
+			edgeCounts[idx] = compiled[idx].getEdgeCount();
+			return false;
+		}
+
+		final int[] ids = gc.getTermIds();
+		final long[][] keys = { new long[16] };
+		final int[][] values = { new int[16] };
+		final int[] count = new int[1];
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (x == y) return;
+				if (count[0] == keys[0].length) {
+					keys[0] = Arrays.copyOf(keys[0], count[0] * 2);
+					values[0] = Arrays.copyOf(values[0], count[0] * 2);
+				}
+				keys[0][count[0]] = ((long)ids[x] << 32) | ids[y];
+				values[0][count[0]] = value;
+				count[0]++;
+			}
+		});
+		final long[] k = keys[0];
+		Integer[] order = new Integer[count[0]];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(k[a], k[b]);
+			}
+		});
+		edgeKeys[idx] = new long[order.length];
+		edgeValues[idx] = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			edgeKeys[idx][i] = k[order[i]];
+			edgeValues[idx][i] = values[0][order[i]];
+		}
+		edgeCounts[idx] = order.length;
+		return true;
+	}
+
+	/** returns the number of Graph Codes **/
+	public int size() {
+		return gcs.size();
+	}
+
+	/** calculates all ordered pairs including i == j. The visitor is called concurrently from the pool threads,
+	 * the similarity array is reused after the call **/
+	public void calculate(final SimilarityVisitor visitor) {
+		run(new TileConsumer() {
+			public void accept(Tile t) {
+				float[] sim = new float[3];
+				for (int i = t.rowFrom; i < t.rowTo; i++) {
+					for (int j = t.colFrom; j < t.colTo; j++) {
+						if (t.isDiagonal() && j < i) continue;
+						t.get(i, j, sim);
+						visitor.visit(i, j, sim);
+						if (i == j) continue;
+						t.get(j, i, sim);
+						visitor.visit(j, i, sim);
+					}
+				}
+			}
+		});
+	}
+
+	/** returns the n * n * 3 matrix of all metric triples **/
+	public float[][][] calculateMatrix() {
+		final float[][][] matrix = new float[size()][size()][];
+		calculate(new SimilarityVisitor() {
+			public void visit(int i, int j, float[] similarity) {
+				matrix[i][j] = similarity.clone();
+			}
+		});
+		return matrix;
+	}
+
+	/** returns for each Graph Code i the sum of w0 * m0 + w1 * m1 + w2 * m2 of the metric triples (i, j) over all j **/
+	public double[] calculateRowSums(final float w0, final float w1, final float w2) {
+		final double[] sums = new double[size()];
+		run(new TileConsumer() {
+			public void accept(Tile t) {
+				double[] rows = new double[t.rowTo - t.rowFrom];
+				double[] columns = new double[t.colTo - t.colFrom];
+				float[] sim = new float[3];
+				for (int i = t.rowFrom; i < t.rowTo; i++) {
+					for (int j = t.colFrom; j < t.colTo; j++) {
+						if (t.isDiagonal() && j < i) continue;
+						t.get(i, j, sim);
+						rows[i - t.rowFrom] += w0 * sim[0] + w1 * sim[1] + w2 * sim[2];
+						if (i == j) continue;
+						t.get(j, i, sim);
+						columns[j - t.colFrom] += w0 * sim[0] + w1 * sim[1] + w2 * sim[2];
+					}
+				}
+				synchronized (sums) {
+					for (int r = 0; r < rows.length; r++) sums[t.rowFrom + r] += rows[r];
+					for (int c = 0; c < columns.length; c++) sums[t.colFrom + c] += columns[c];
+				}
+			}
+		});
+		return sums;
+	}
+
+	/** writes all ordered pairs (i, j) with i != j and a node metric of at least threshold to a sparse result file:
+	 * the magic bytes 0x89 'G' 'C' 'S', a version byte and the number of Graph Codes, followed by records of int i,
+	 * int j and the float triple. Records are not sorted. Returns the number of written pairs **/
+	public long writeSparse(File f, final float threshold) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+		final long[] count = new long[1];
+		final IOException[] error = new IOException[1];
+		try {
+			out.write(MAGIC);
+			out.write(VERSION);
+			out.writeInt(size());
+			run(new TileConsumer() {
+				public void accept(Tile t) {
+					ByteArrayOutputStream block = new ByteArrayOutputStream();
+					DataOutputStream records = new DataOutputStream(block);
+					float[] sim = new float[3];
+					int n = 0;
+					try {
+						for (int i = t.rowFrom; i < t.rowTo; i++) {
+							for (int j = t.colFrom; j < t.colTo; j++) {
+								if (t.isDiagonal() && j <= i) continue;
+								t.get(i, j, sim);
+								if (sim[0] >= threshold) n += writeRecord(records, i, j, sim);
+								t.get(j, i, sim);
+								if (sim[0] >= threshold) n += writeRecord(records, j, i, sim);
+							}
+						}
+						synchronized (out) {
+							block.writeTo(out);
+							count[0] += n;
+						}
+					}
+					catch (IOException x) {
+						synchronized (out) {
+							error[0] = x;
+						}
+					}
+				}
+			});
+		}
+		finally {
+			out.close();
+		}
+		if (error[0] != null) throw error[0];
+		return count[0];
+	}
+
+	private static int writeRecord(DataOutputStream out, int i, int j, float[] sim) throws IOException {
+		out.writeInt(i);
+		out.writeInt(j);
+		out.writeFloat(sim[0]);
+		out.writeFloat(sim[1]);
+		out.writeFloat(sim[2]);
+		return 1;
+	}
+
+	/** reads a sparse result file, returns the number of Graph Codes of the result **/
+	public static int readSparse(File f, SimilarityVisitor visitor) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+		try {
+			for (byte b : MAGIC) {
+				if (in.read() != (b & 0xFF)) throw new IOException("not a sparse similarity file");
+			}
+			int version = in.read();
+			if (version != VERSION) throw new IOException("unsupported sparse similarity version " + version);
+			int size = in.readInt();
+			float[] sim = new float[3];
+			while (true) {
+				int i;
+				try {
+					i = in.readInt();
+				}
+				catch (EOFException x) {
+					return size;
+				}
+				int j = in.readInt();
+				sim[0] = in.readFloat();
+				sim[1] = in.readFloat();
+				sim[2] = in.readFloat();
+				visitor.visit(i, j, sim);
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private interface TileConsumer {
+		void accept(Tile t);
+	}
+
+	/** calculates the tiles on and above the diagonal and passes them to the consumer **/
+	private void run(TileConsumer consumer) {
+		int blocks = (size() + tileSize - 1) / tileSize;
+		int[] tiles = new int[blocks * (blocks + 1) / 2 * 2];
+		int t = 0;
+		for (int bi = 0; bi < blocks; bi++) {
+			for (int bj = bi; bj < blocks; bj++) {
+				tiles[t++] = bi;
+				tiles[t++] = bj;
+			}
+		}
+		if (tiles.length == 0) return;
+		ForkJoinPool.commonPool().invoke(new TileTask(consumer, tiles, 0, tiles.length / 2));
+	}
+
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final TileConsumer consumer;
+		private final int[] tiles;
+		private final int from, to;
+
+		TileTask(TileConsumer consumer, int[] tiles, int from, int to) {
+			this.consumer = consumer;
+			this.tiles = tiles;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from == 1) {
+				int bi = tiles[from * 2], bj = tiles[from * 2 + 1];
+				consumer.accept(calculateTile(bi * tileSize, Math.min(size(), (bi + 1) * tileSize),
+						bj * tileSize, Math.min(size(), (bj + 1) * tileSize)));
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new TileTask(consumer, tiles, from, mid), new TileTask(consumer, tiles, mid, to));
+		}
+	}
+
+	/** metric triples of a tile, forward holds the pairs (i, j) and backward the pairs (j, i) **/
+	private static class Tile {
+		final int rowFrom, rowTo, colFrom, colTo;
+		final float[] forward, backward;
+
+		Tile(int rowFrom, int rowTo, int colFrom, int colTo) {
+			this.rowFrom = rowFrom;
+			this.rowTo = rowTo;
+			this.colFrom = colFrom;
+			this.colTo = colTo;
+			forward = new float[(rowTo - rowFrom) * (colTo - colFrom) * 3];
+			backward = new float[forward.length];
+		}
+
+		boolean isDiagonal() {
+			return rowFrom == colFrom;
+		}
+
+		/** copies the triple of the ordered pair (x, y) into sim, one of them is a row and the other a column **/
+		void get(int x, int y, float[] sim) {
+			boolean isForward = x >= rowFrom && x < rowTo && y >= colFrom && y < colTo;
+			if (isDiagonal()) isForward = x <= y;
+			int offset = isForward ? ((x - rowFrom) * (colTo - colFrom) + y - colFrom) * 3
+					: ((y - rowFrom) * (colTo - colFrom) + x - colFrom) * 3;
+			float[] source = isForward ? forward : backward;
+			sim[0] = source[offset];
+			sim[1] = source[offset + 1];
+			sim[2] = source[offset + 2];
+		}
+	}
+
+	private Tile calculateTile(int rowFrom, int rowTo, int colFrom, int colTo) {
+		Tile t = new Tile(rowFrom, rowTo, colFrom, colTo);
+		int[] alignment = new int[maxVocSize];
+		int columns = colTo - colFrom;
+		for (int i = rowFrom; i < rowTo; i++) {
+			for (int j = colFrom; j < colTo; j++) {
+				if (t.isDiagonal() && j < i) continue;
+				int offset = ((i - rowFrom) * columns + j - colFrom) * 3;
+				calculatePair(i, j, t.forward, t.backward, offset, alignment);
+			}
+		}
+		return t;
+	}
+
+	/** calculates the triples of (i, j) into forward and of (j, i) into backward **/
+	private void calculatePair(int i, int j, float[] forward, float[] backward, int offset, int[] alignment) {
+		int matchingTerms = GraphCodeMetric.countMatchingTerms(signatures[i], signatures[j]);
+		if (edgeKeys[i] == null || edgeKeys[j] == null) {
+			score(i, j, forward, offset, alignment);
+			score(j, i, backward, offset, alignment);
+			return;
+		}
+		// merge the sorted edge keys, matching edges and edge types are the same in both directions
+		long[] a = edgeKeys[i], b = edgeKeys[j];
+		int[] va = edgeValues[i], vb = edgeValues[j];
+		int matchingEdges = 0, matchingTypes = 0;
+		int x = 0, y = 0;
+		while (x < a.length && y < b.length) {
+			if (a[x] < b[y]) x++;
+			else if (a[x] > b[y]) y++;
+			else {
+				matchingEdges++;
+				if (va[x] == vb[y]) matchingTypes++;
+				x++;
+				y++;
+			}
+		}
+		setTriple(forward, offset, vocSizes[i], matchingTerms, edgeCounts[i], matchingEdges, matchingTypes);
+		setTriple(backward, offset, vocSizes[j], matchingTerms, edgeCounts[j], matchingEdges, matchingTypes);
+	}
+
+	private void score(int query, int candidate, float[] result, int offset, int[] alignment) {
+		compiled[query].score(gcs.get(candidate), result, offset, alignment);
+	}
+
+	private static void setTriple(float[] result, int offset, int vocSize, int matchingTerms, int edges, int matchingEdges, int matchingTypes) {
+		if (vocSize == 0) {
+			result[offset] = 0f;
+			result[offset + 1] = 0f;
+			result[offset + 2] = 0f;
+			return;
+		}
+		result[offset] = (float)Math.min(matchingTerms, vocSize) / (float)vocSize;
+		result[offset + 1] = edges > 0 ? (float)matchingEdges / (float)edges : 0f;
+		result[offset + 2] = matchingEdges > 0 ? (float)matchingTypes / (float)matchingEdges : 0f;
+	}
+}
@@ -0,0 +1,178 @@
+package de.swa.gc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/** Compact binary Graph Code format (.gcb). The layout is
+ * <ul>
+ * <li>magic bytes 0x89 'G' 'C' 'B' and a version byte</li>
+ * <li>the dictionary: varint term count, followed by varint byte length and UTF-8 bytes per term</li>
+ * <li>the sparse edge list: varint edge count, followed by varint x, varint y and zigzag varint value per non-zero cell</li>
+ * <li>the collection elements: varint element count, followed by dictionary, edge list and collection elements of
+ * each element (since version 2)</li>
+ * <li>the CRC32 of all preceding bytes as 4 byte big-endian int</li>
+ * </ul>
+ * Lengths read from the data are not trusted, buffers only grow with the bytes actually read.
+ */
+public class BinaryGraphCodeCodec implements GraphCodeCodec {
+	public static final byte[] MAGIC = { (byte)0x89, 'G', 'C', 'B' };
+	public static final int VERSION = 2;
+	/** maximum nesting of collection elements **/
+	private static final int MAX_DEPTH = 32;
+	/** initial buffer size for lengths read from the data **/
+	private static final int CHUNK_SIZE = 8192;
+
+	/** returns true, if the stream starts with the magic bytes of the binary format, the bytes are consumed **/
+	public static boolean hasMagic(InputStream in) throws IOException {
+		for (byte b : MAGIC) {
+			if (in.read() != (b & 0xFF)) return false;
+		}
+		return true;
+	}
+
+	/** writes a Graph Code in binary format, the stream is flushed but not closed **/
+	public void encode(GraphCode gc, OutputStream out) throws IOException {
+		CRC32 crc = new CRC32();
+		final OutputStream o = new CheckedOutputStream(new BufferedOutputStream(out), crc);
+		o.write(MAGIC);
+		o.write(VERSION);
+		encodeBody(gc, o);
+		o.flush();
+		int checksum = (int)crc.getValue();
+		out.write(checksum >>> 24);
+		out.write(checksum >>> 16);
+		out.write(checksum >>> 8);
+		out.write(checksum);
+		out.flush();
+	}
+
+	/** writes dictionary, edge list and collection elements of a Graph Code **/
+	private static void encodeBody(GraphCode gc, final OutputStream o) throws IOException {
+		int size = gc.getDictionarySize();
+		writeVarInt(o, size);
+		for (int i = 0; i < size; i++) {
+			byte[] term = gc.getTermForIndex(i).getBytes(StandardCharsets.UTF_8);
+			writeVarInt(o, term.length);
+			o.write(term);
+		}
+		final int[] count = new int[1];
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				count[0]++;
+			}
+		});
+		writeVarInt(o, count[0]);
+		final IOException[] error = new IOException[1];
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (error[0] != null) return;
+				try {
+					writeVarInt(o, x);
+					writeVarInt(o, y);
+					writeVarInt(o, (value << 1) ^ (value >> 31));
+				}
+				catch (IOException ex) {
+					error[0] = ex;
+				}
+			}
+		});
+		if (error[0] != null) throw error[0];
+		writeVarInt(o, gc.getCollectionElements().size());
+		for (GraphCode element : gc.getCollectionElements()) encodeBody(element, o);
+	}
+
+	/** reads a Graph Code in binary format, an IOException is thrown for corrupt or truncated data. The stream is read
+	 * unbuffered up to the checksum, callers should pass a buffered stream **/
+	public GraphCode decode(InputStream in) throws IOException {
+		CRC32 crc = new CRC32();
+		DataInputStream raw = new DataInputStream(in);
+		InputStream i = new CheckedInputStream(raw, crc);
+		if (!hasMagic(i)) throw new IOException("not a binary Graph Code");
+		int version = i.read();
+		if (version != 1 && version != VERSION) throw new IOException("unsupported binary Graph Code version " + version);
+
+		GraphCode gc = decodeBody(i, version, 0);
+		int checksum = raw.readInt();
+		if (checksum != (int)crc.getValue()) throw new IOException("binary Graph Code checksum mismatch");
+		return gc;
+	}
+
+	/** reads dictionary, edge list and collection elements of a Graph Code **/
+	private static GraphCode decodeBody(InputStream i, int version, int depth) throws IOException {
+		int size = readLength(i);
+		Vector<String> dictionary = new Vector<String>(Math.min(size, CHUNK_SIZE));
+		for (int t = 0; t < size; t++) {
+			byte[] term = readBytes(i, readLength(i));
+			dictionary.add(new String(term, StandardCharsets.UTF_8));
+		}
+		int edges = readLength(i);
+		if ((long)edges > (long)size * size) throw new IOException("malformed binary Graph Code");
+		int[] cells = new int[Math.min(edges, CHUNK_SIZE) * 3];
+		for (int e = 0; e < edges * 3L; e += 3) {
+			if (e == cells.length) cells = Arrays.copyOf(cells, (int)Math.min(edges * 3L, cells.length * 2L));
+			cells[e] = readVarInt(i);
+			cells[e + 1] = readVarInt(i);
+			int v = readVarInt(i);
+			cells[e + 2] = (v >>> 1) ^ -(v & 1);
+			if (cells[e] < 0 || cells[e] >= size || cells[e + 1] < 0 || cells[e + 1] >= size) throw new IOException("edge outside of the dictionary");
+		}
+
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(dictionary);
+		for (int e = 0; e < edges * 3L; e += 3) gc.setValue(cells[e], cells[e + 1], cells[e + 2]);
+		if (version == 1) return gc;
+		int elements = readLength(i);
+		if (elements > 0 && depth == MAX_DEPTH) throw new IOException("malformed binary Graph Code");
+		for (int e = 0; e < elements; e++) gc.addGraphCode(decodeBody(i, version, depth + 1));
+		return gc;
+	}
+
+	static void writeVarInt(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	static int readVarInt(InputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.read();
+			if (b < 0) throw new EOFException();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("malformed varint");
+	}
+
+	private static int readLength(InputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length < 0) throw new IOException("malformed binary Graph Code");
+		return length;
+	}
+
+	/** reads length bytes, the buffer grows with the bytes read, so a corrupt length ends with an EOFException
+	 * instead of allocating it up front **/
+	static byte[] readBytes(InputStream in, int length) throws IOException {
+		byte[] b = new byte[Math.min(length, CHUNK_SIZE)];
+		int n = 0;
+		while (n < length) {
+			if (n == b.length) b = Arrays.copyOf(b, (int)Math.min(length, b.length * 2L));
+			int r = in.read(b, n, b.length - n);
+			if (r < 0) throw new EOFException();
+			n += r;
+		}
+		return b;
+	}
+}
@@ -0,0 +1,31 @@
+package de.swa.gc;
+
+import java.util.Vector;
+
+/** Graph Code variant, which stores its relationships row-major in a single byte array. The type codes used in
+ * Graph Codes (node types, child and composition relationships) are small, so each cell needs one byte instead of
+ * an int and rows are no separate objects. Values outside of the byte range switch the Graph Code to dense int
+ * storage, so the API stays fully interchangeable with GraphCode.
+ */
+public class CompactGraphCode extends GraphCode {
+	private static final long serialVersionUID = 1L;
+
+	public CompactGraphCode() {}
+
+	/** creates a compact copy of a Graph Code **/
+	public CompactGraphCode(GraphCode gc) {
+		setDictionary(new Vector<String>(gc.dictionary));
+		final int size = gc.dictionary.size();
+		gc.visitNonZeroCells(new CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (x < size && y < size) setValue(x, y, value);
+			}
+		});
+		for (GraphCode child : gc.getCollectionElements()) addGraphCode(child);
+	}
+
+	@Override
+	protected void allocateMatrix(int size) {
+		packedMatrix = new byte[size * size];
+	}
+}
@@ -0,0 +1,267 @@
+package de.swa.gc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** Compressed Graph Code format. After the magic bytes 0x89 'G' 'C' 'Z' and a version byte follow three blocks:
+ * <ul>
+ * <li>the dictionary: varint term count, followed by varint byte length and UTF-8 bytes per term</li>
+ * <li>the diagonal, i.e. the node type values, run-length encoded as pairs of zigzag varint value and varint run length</li>
+ * <li>the non-zero relationships sorted by (row, column): varint count, followed by the varint row delta, the varint
+ * column delta (relative to the previous column of the same row) and the zigzag varint value per cell</li>
+ * </ul>
+ * Each block is stored as mode byte, varint raw length, varint stored length and the stored bytes. With compression
+ * enabled, a block is deflated if this makes it smaller. Since version 2 the blocks are followed by the varint count
+ * of collection elements and the three blocks and collection elements of each element. The CRC32 of all preceding
+ * bytes ends the Graph Code. Block lengths are checked against MAX_BLOCK_SIZE and the stored bytes before anything
+ * is allocated.
+ */
+public class CompressedGraphCodeCodec implements GraphCodeCodec {
+	public static final byte[] MAGIC = { (byte)0x89, 'G', 'C', 'Z' };
+	public static final int VERSION = 2;
+	/** maximum nesting of collection elements **/
+	private static final int MAX_DEPTH = 32;
+	private static final int RAW = 0, DEFLATED = 1;
+	/** maximum raw length of a block **/
+	public static final int MAX_BLOCK_SIZE = 1 << 28;
+	/** upper bound of the deflate compression ratio **/
+	private static final int MAX_RATIO = 1032;
+
+	private final boolean deflate;
+
+	/** creates a codec, which deflates the blocks **/
+	public CompressedGraphCodeCodec() {
+		this(true);
+	}
+
+	/** creates a codec, which only deflates the blocks if deflate is true **/
+	public CompressedGraphCodeCodec(boolean deflate) {
+		this.deflate = deflate;
+	}
+
+	public void encode(GraphCode gc, OutputStream out) throws IOException {
+		CRC32 crc = new CRC32();
+		CheckedOutputStream o = new CheckedOutputStream(out, crc);
+		o.write(MAGIC);
+		o.write(VERSION);
+		encodeBody(gc, o);
+		int checksum = (int)crc.getValue();
+		out.write(checksum >>> 24);
+		out.write(checksum >>> 16);
+		out.write(checksum >>> 8);
+		out.write(checksum);
+		out.flush();
+	}
+
+	/** writes the blocks and collection elements of a Graph Code **/
+	private void encodeBody(GraphCode gc, OutputStream o) throws IOException {
+		int size = gc.getDictionarySize();
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		BinaryGraphCodeCodec.writeVarInt(block, size);
+		for (int i = 0; i < size; i++) {
+			byte[] term = gc.getTermForIndex(i).getBytes(StandardCharsets.UTF_8);
+			BinaryGraphCodeCodec.writeVarInt(block, term.length);
+			block.write(term);
+		}
+		byte[] dictionary = block.toByteArray();
+
+		block.reset();
+		for (int i = 0; i < size;) {
+			int v = gc.getValue(i, i);
+			int run = 1;
+			while (i + run < size && gc.getValue(i + run, i + run) == v) run++;
+			BinaryGraphCodeCodec.writeVarInt(block, zigzag(v));
+			BinaryGraphCodeCodec.writeVarInt(block, run);
+			i += run;
+		}
+		byte[] diagonal = block.toByteArray();
+
+		block.reset();
+		long[] cells = getRelationships(gc);
+		BinaryGraphCodeCodec.writeVarInt(block, cells.length);
+		int row = 0, column = -1;
+		for (long cell : cells) {
+			int x = (int)(cell / size);
+			int y = (int)(cell % size);
+			BinaryGraphCodeCodec.writeVarInt(block, x - row);
+			if (x != row) column = -1;
+			BinaryGraphCodeCodec.writeVarInt(block, y - column - 1);
+			BinaryGraphCodeCodec.writeVarInt(block, zigzag(gc.getValue(x, y)));
+			row = x;
+			column = y;
+		}
+		byte[] relationships = block.toByteArray();
+
+		writeBlock(o, dictionary);
+		writeBlock(o, diagonal);
+		writeBlock(o, relationships);
+		BinaryGraphCodeCodec.writeVarInt(o, gc.getCollectionElements().size());
+		for (GraphCode element : gc.getCollectionElements()) encodeBody(element, o);
+	}
+
+	/** returns the non-zero off-diagonal cells as ascending row * size + column **/
+	private static long[] getRelationships(GraphCode gc) {
+		final long size = gc.getDictionarySize();
+		final long[][] cells = { new long[16] };
+		final int[] count = new int[1];
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (x == y) return;
+				if (count[0] == cells[0].length) cells[0] = Arrays.copyOf(cells[0], count[0] * 2);
+				cells[0][count[0]++] = x * size + y;
+			}
+		});
+		long[] result = Arrays.copyOf(cells[0], count[0]);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private void writeBlock(OutputStream out, byte[] raw) throws IOException {
+		byte[] stored = deflate ? deflate(raw) : null;
+		boolean deflated = stored != null && stored.length < raw.length;
+		out.write(deflated ? DEFLATED : RAW);
+		BinaryGraphCodeCodec.writeVarInt(out, raw.length);
+		if (deflated) BinaryGraphCodeCodec.writeVarInt(out, stored.length);
+		else BinaryGraphCodeCodec.writeVarInt(out, raw.length);
+		out.write(deflated ? stored : raw);
+	}
+
+	private static byte[] deflate(byte[] raw) {
+		Deflater d = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			d.setInput(raw);
+			d.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+			byte[] buffer = new byte[4096];
+			while (!d.finished()) {
+				int n = d.deflate(buffer);
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			d.end();
+		}
+	}
+
+	public GraphCode decode(InputStream in) throws IOException {
+		CRC32 crc = new CRC32();
+		DataInputStream raw = new DataInputStream(in);
+		InputStream i = new CheckedInputStream(raw, crc);
+		for (byte b : MAGIC) {
+			if (i.read() != (b & 0xFF)) throw new IOException("not a compressed Graph Code");
+		}
+		int version = i.read();
+		if (version != 1 && version != VERSION) throw new IOException("unsupported compressed Graph Code version " + version);
+		GraphCode gc = decodeBody(i, version, 0);
+		int checksum = raw.readInt();
+		if (checksum != (int)crc.getValue()) throw new IOException("compressed Graph Code checksum mismatch");
+		return gc;
+	}
+
+	/** reads the blocks and collection elements of a Graph Code **/
+	private static GraphCode decodeBody(InputStream i, int version, int depth) throws IOException {
+		DataInputStream dictionary = readBlock(i);
+		DataInputStream diagonal = readBlock(i);
+		DataInputStream relationships = readBlock(i);
+
+		int size = readLength(dictionary);
+		if (size > dictionary.available()) throw new IOException("malformed compressed Graph Code");
+		Vector<String> terms = new Vector<String>(size);
+		for (int t = 0; t < size; t++) {
+			int length = readLength(dictionary);
+			if (length > dictionary.available()) throw new IOException("malformed compressed Graph Code");
+			byte[] term = new byte[length];
+			dictionary.readFully(term);
+			terms.add(new String(term, StandardCharsets.UTF_8));
+		}
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(terms);
+
+		for (int x = 0; x < size;) {
+			int v = unzigzag(BinaryGraphCodeCodec.readVarInt(diagonal));
+			int run = readLength(diagonal);
+			if (run == 0 || run > size - x) throw new IOException("malformed compressed Graph Code");
+			if (v != 0) for (int r = 0; r < run; r++) gc.setValue(x + r, x + r, v);
+			x += run;
+		}
+
+		int count = readLength(relationships);
+		int row = 0, column = -1;
+		for (int e = 0; e < count; e++) {
+			int rowDelta = readLength(relationships);
+			if (rowDelta != 0) column = -1;
+			row += rowDelta;
+			column += readLength(relationships) + 1;
+			int v = unzigzag(BinaryGraphCodeCodec.readVarInt(relationships));
+			if (row < 0 || row >= size || column < 0 || column >= size) throw new IOException("edge outside of the dictionary");
+			gc.setValue(row, column, v);
+		}
+		if (version == 1) return gc;
+		int elements = readLength(i);
+		if (elements > 0 && depth == MAX_DEPTH) throw new IOException("malformed compressed Graph Code");
+		for (int e = 0; e < elements; e++) gc.addGraphCode(decodeBody(i, version, depth + 1));
+		return gc;
+	}
+
+	private static DataInputStream readBlock(InputStream in) throws IOException {
+		int mode = in.read();
+		int rawLength = readLength(in);
+		int storedLength = readLength(in);
+		if (mode != RAW && mode != DEFLATED) throw new IOException("malformed compressed Graph Code");
+		if (rawLength > MAX_BLOCK_SIZE || storedLength > rawLength) throw new IOException("malformed compressed Graph Code block");
+		if (mode == RAW ? storedLength != rawLength : rawLength > (long)storedLength * MAX_RATIO + 64) throw new IOException("malformed compressed Graph Code block");
+		byte[] stored = BinaryGraphCodeCodec.readBytes(in, storedLength);
+		byte[] raw = mode == RAW ? stored : inflate(stored, rawLength);
+		return new DataInputStream(new ByteArrayInputStream(raw));
+	}
+
+	private static byte[] inflate(byte[] stored, int rawLength) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored);
+			byte[] raw = new byte[rawLength];
+			int n = 0;
+			while (n < rawLength && !inflater.finished()) {
+				int r = inflater.inflate(raw, n, rawLength - n);
+				if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+				n += r;
+			}
+			if (n != rawLength) throw new IOException("malformed compressed Graph Code block");
+			return raw;
+		}
+		catch (DataFormatException x) {
+			throw new IOException("malformed compressed Graph Code block", x);
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	private static int readLength(InputStream in) throws IOException {
+		int length = BinaryGraphCodeCodec.readVarInt(in);
+		if (length < 0) throw new IOException("malformed compressed Graph Code");
+		return length;
+	}
+
+	private static int zigzag(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static int unzigzag(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
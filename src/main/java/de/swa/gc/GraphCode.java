@@ -1,10 +1,16 @@
 package de.swa.gc;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
 
-import com.google.gson.Gson;
-
 /** Implementation of a Graph Code as a 2D representation of MMIR features 
  * 
  * @author stefan_wagenpfeil
@@ -17,23 +23,133 @@ public class GraphCode implements Serializable {
 	
 	public GraphCode() {}
 
+	/** dictionaries of at least this size start in sparse storage mode **/
+	public static final int SPARSE_MIN_SIZE = 32;
+
+	/** dense storage of the relationships, null if the Graph Code is in sparse or packed mode **/
 	protected int[][] matrix;
+	/** sparse storage of the relationships, null if the Graph Code is in dense or packed mode **/
+	protected SparseMatrix sparseMatrix;
+	/** row-major byte storage of the relationships as used by CompactGraphCode, null in the other modes **/
+	protected byte[] packedMatrix;
+	/** maps each dictionary term to the index of its first occurrence, built lazily and reset with the dictionary **/
+	private transient volatile HashMap<String, Integer> termIndex;
+	/** lowercased, de-duplicated dictionary without single character terms, computed once per dictionary **/
+	private transient volatile List<String> normalizedDictionary;
+	/** IDs of the normalized dictionary in the collection-wide TermVocabulary, unsorted and sorted **/
+	private transient volatile int[] termIds, sortedTermIds;
+	/** TermVocabulary IDs of the non-blank dictionary terms **/
+	private transient volatile TermSignature termSignature;
 
-	/** the Graph Code Dictionary contains a list of feature vocabulary terms **/
+	/** the Graph Code Dictionary contains a list of feature vocabulary terms, the returned Vector is a copy **/
 	public Vector<String> getDictionary() {
-		Vector<String> dict = new Vector<String>();
-		for (String s : dictionary) {
+		return new Vector<String>(getNormalizedDictionary());
+	}
+
+	/** returns the Graph Code Dictionary as an immutable list, which is cached until the dictionary changes **/
+	public List<String> getNormalizedDictionary() {
+		List<String> dict = normalizedDictionary;
+		if (dict == null) {
+			dict = normalize(dictionary);
+			normalizedDictionary = dict;
+		}
+		return dict;
+	}
+
+	private static List<String> normalize(Vector<String> terms) {
+		ArrayList<String> dict = new ArrayList<String>(terms.size());
+		HashSet<String> seen = new HashSet<String>(terms.size() * 2);
+		for (String s : terms) {
 			s = s.toLowerCase();
 			if (s.length() == 1) continue;
-			if (!dict.contains(s)) dict.add(s.toLowerCase());
+			if (seen.add(s)) dict.add(s);
 		}
-		return dict;
+		return Collections.unmodifiableList(dict);
 	}
 	
+	/** returns the relationship matrix. In sparse and packed mode this is a dense copy, changes to it are not stored
+	 * in the Graph Code, use setValue instead **/
 	public int[][] getRelationships() {
+		if (sparseMatrix != null) return sparseMatrix.toDense();
+		if (packedMatrix != null) return unpack();
 		return matrix;
 	}
 	
+	/** sets the relationship matrix, which must match the dictionary size. The matrix is stored in sparse mode, if
+	 * this needs less memory for its non-zero cells **/
+	public void setRelationships(int[][] m) {
+		int size = dictionary.size();
+		if (m.length != size) throw new IllegalArgumentException("matrix of size " + m.length + " for a dictionary of size " + size);
+		for (int[] row : m) {
+			if (row.length != size) throw new IllegalArgumentException("matrix row of size " + row.length + " for a dictionary of size " + size);
+		}
+		matrix = m;
+		sparseMatrix = null;
+		packedMatrix = null;
+		chooseStorage();
+	}
+
+	/** moves dense relationships to sparse storage, if the number of non-zero cells makes it the cheaper one. Called
+	 * whenever a complete matrix is set, as setValue only switches from sparse to dense **/
+	protected void chooseStorage() {
+		if (matrix == null || matrix.length < SPARSE_MIN_SIZE) return;
+		int count = 0;
+		for (int[] row : matrix) {
+			for (int v : row) if (v != 0) count++;
+		}
+		if (!SparseMatrix.isSparseCheaper(matrix.length, count)) return;
+		SparseMatrix m = new SparseMatrix(matrix.length);
+		for (int x = 0; x < matrix.length; x++) {
+			for (int y = 0; y < matrix.length; y++) if (matrix[x][y] != 0) m.set(x, y, matrix[x][y]);
+		}
+		sparseMatrix = m;
+		matrix = null;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		chooseStorage();
+	}
+
+	/** callback to visit the non-zero cells of a Graph Code **/
+	public interface CellVisitor {
+		void visit(int x, int y, int value);
+	}
+
+	/** calls the visitor for every non-zero cell of the relationship matrix, without allocating a dense copy **/
+	public void visitNonZeroCells(CellVisitor visitor) {
+		if (sparseMatrix != null) {
+			for (int slot = 0; slot < sparseMatrix.getCapacity(); slot++) {
+				if (sparseMatrix.isOccupied(slot))
+					visitor.visit(sparseMatrix.rowAt(slot), sparseMatrix.columnAt(slot), sparseMatrix.valueAt(slot));
+			}
+		}
+		else if (packedMatrix != null) {
+			int size = dictionary.size();
+			for (int i = 0; i < packedMatrix.length; i++) {
+				if (packedMatrix[i] != 0) visitor.visit(i / size, i % size, packedMatrix[i]);
+			}
+		}
+		else if (matrix != null) {
+			for (int x = 0; x < matrix.length; x++) {
+				int[] row = matrix[x];
+				for (int y = 0; y < row.length; y++) {
+					if (row[y] != 0) visitor.visit(x, y, row[y]);
+				}
+			}
+		}
+	}
+
+	/** returns, if the relationships are stored in sparse mode **/
+	public boolean isSparse() {
+		return sparseMatrix != null;
+	}
+
+	/** returns, if the relationships are stored in a packed byte array **/
+	public boolean isPacked() {
+		return packedMatrix != null;
+	}
+	
 	/** adds a Graph Code to a collection **/
 	public void addGraphCode(GraphCode gc) {
 		collectionElements.add(gc);
@@ -46,12 +162,94 @@ public class GraphCode implements Serializable {
 
 	/** sets the dictionary of the Graph Code, i.e. the list of feature vocabulary terms **/
 	public void setDictionary(Vector<String> d) {
+		TermVocabulary vocabulary = TermVocabulary.getInstance();
 		dictionary = new Vector<String>();
 		for (String s : d) {
 			s = s.toLowerCase();
-			dictionary.add(s.toLowerCase());
+			dictionary.add(vocabulary.intern(s));
+		}
+		dictionaryChanged();
+	}
+
+	/** sets the dictionary of the Graph Code based on IDs of the TermVocabulary, the caller has to keep the terms
+	 * referenced, the vocabulary drops terms no Graph Code refers to **/
+	public void setDictionary(int[] ids) {
+		TermVocabulary vocabulary = TermVocabulary.getInstance();
+		dictionary = new Vector<String>(ids.length);
+		for (int id : ids) {
+			String term = vocabulary.getTerm(id);
+			if (term == null) throw new IllegalArgumentException("unknown term ID " + id);
+			dictionary.add(term);
 		}
-		matrix = new int[d.size()][d.size()];
+		dictionaryChanged();
+	}
+
+	private void dictionaryChanged() {
+		matrix = null;
+		sparseMatrix = null;
+		packedMatrix = null;
+		allocateMatrix(dictionary.size());
+		termIndex = null;
+		termIds = null;
+		sortedTermIds = null;
+		termSignature = null;
+		normalizedDictionary = normalize(dictionary);
+	}
+
+	/** allocates the relationship storage for a new dictionary of the given size **/
+	protected void allocateMatrix(int size) {
+		if (size >= SPARSE_MIN_SIZE) sparseMatrix = new SparseMatrix(size);
+		else matrix = new int[size][size];
+	}
+
+	/** replaces the dictionary terms by the shared instances of the TermVocabulary, e.g. after deserialization **/
+	void internTerms() {
+		TermVocabulary vocabulary = TermVocabulary.getInstance();
+		for (int i = 0; i < dictionary.size(); i++) dictionary.set(i, vocabulary.intern(dictionary.get(i)));
+		termIndex = null;
+		normalizedDictionary = null;
+		termIds = null;
+		sortedTermIds = null;
+		termSignature = null;
+	}
+
+	/** returns the TermVocabulary IDs of the normalized dictionary, in the same order **/
+	public int[] getTermIds() {
+		int[] ids = termIds;
+		if (ids == null) {
+			ids = TermVocabulary.getInstance().getIds(getNormalizedDictionary());
+			termIds = ids;
+		}
+		return ids;
+	}
+
+	/** returns the term signature, the set of TermVocabulary IDs of the non-blank terms of the dictionary. Matching
+	 * terms of two Graph Codes are the intersection of their signatures **/
+	public TermSignature getTermSignature() {
+		TermSignature sig = termSignature;
+		if (sig == null) {
+			int[] ids = getTermIds();
+			List<String> dict = getNormalizedDictionary();
+			int[] nonBlank = new int[ids.length];
+			int n = 0;
+			for (int i = 0; i < ids.length; i++) {
+				if (!dict.get(i).trim().equals("")) nonBlank[n++] = ids[i];
+			}
+			sig = TermSignature.of(Arrays.copyOf(nonBlank, n));
+			termSignature = sig;
+		}
+		return sig;
+	}
+
+	/** returns the TermVocabulary IDs of the normalized dictionary in ascending order **/
+	public int[] getSortedTermIds() {
+		int[] ids = sortedTermIds;
+		if (ids == null) {
+			ids = getTermIds().clone();
+			Arrays.sort(ids);
+			sortedTermIds = ids;
+		}
+		return ids;
 	}
 	
 	/** returns, if the Graph Code is part of a collection or a single Graph Code **/
@@ -61,20 +259,82 @@ public class GraphCode implements Serializable {
 
 	/** returns the matrix value on position x and y **/
 	public int getValue(int x, int y) {
+		if (sparseMatrix != null) return sparseMatrix.get(x, y);
+		if (packedMatrix != null) return packedMatrix[packedIndex(x, y)];
 		return matrix[x][y];
 	}
 
-	/** sets the matrix value of position x and y **/
+	/** sets the matrix value of position x and y, switches to dense mode once sparse storage gets too expensive
+	 * or a value does not fit into packed storage **/
 	public void setValue(int x, int y, int v) {
-		matrix[x][y] = v;
+		if (sparseMatrix != null) {
+			sparseMatrix.set(x, y, v);
+			if (sparseMatrix.isDenseCheaper()) {
+				matrix = sparseMatrix.toDense();
+				sparseMatrix = null;
+			}
+		}
+		else if (packedMatrix != null) {
+			int idx = packedIndex(x, y);
+			if (v == (byte)v) packedMatrix[idx] = (byte)v;
+			else {
+				matrix = unpack();
+				packedMatrix = null;
+				matrix[x][y] = v;
+			}
+		}
+		else matrix[x][y] = v;
+	}
+
+	private int packedIndex(int x, int y) {
+		int size = dictionary.size();
+		if (x < 0 || y < 0 || x >= size || y >= size)
+			throw new ArrayIndexOutOfBoundsException("Index (" + x + ", " + y + ") out of bounds for size " + size);
+		return x * size + y;
+	}
+
+	private int[][] unpack() {
+		int size = dictionary.size();
+		int[][] m = new int[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) m[x][y] = packedMatrix[x * size + y];
+		}
+		return m;
 	}
 	
+	/** returns the matrix index of a feature vocabulary term or -1, if the term is not part of the dictionary **/
+	public int getIndexForTerm(String term) {
+		Integer idx = getTermIndex().get(term.toLowerCase());
+		return idx == null ? -1 : idx;
+	}
+
+	/** returns the number of terms of the raw dictionary, i.e. the dimension of the relationship matrix **/
+	public int getDictionarySize() {
+		return dictionary.size();
+	}
+
+	/** returns the feature vocabulary term of a matrix index **/
+	public String getTermForIndex(int idx) {
+		return dictionary.get(idx);
+	}
+
+	private HashMap<String, Integer> getTermIndex() {
+		HashMap<String, Integer> idx = termIndex;
+		if (idx == null) {
+			idx = new HashMap<String, Integer>(dictionary.size() * 2);
+			for (int i = 0; i < dictionary.size(); i++) idx.putIfAbsent(dictionary.get(i), i);
+			termIndex = idx;
+		}
+		return idx;
+	}
+
 	/** returns the matrix value for two feature vocabulary terms **/
 	public int getEdgeValueForTerms(String term1, String term2) {
-		int translated_x = dictionary.indexOf(term1.toLowerCase());
-		int translated_y = dictionary.indexOf(term2.toLowerCase());
+		int translated_x = getIndexForTerm(term1);
+		int translated_y = getIndexForTerm(term2);
+		if (translated_x < 0 || translated_y < 0) return 0;
 		try {
-			return matrix[translated_x][translated_y];
+			return getValue(translated_x, translated_y);
 		}
 		catch (Exception ex) {
 //			System.out.println("T1: " + term1 + " (" + translated_x + ")   T2: " + term2 + " (" + translated_y + ")");
@@ -82,18 +342,17 @@ public class GraphCode implements Serializable {
 		}
 	}
 	
-	/** sets the matrix value for two feature vocabulary terms **/
+	/** sets the matrix value for two feature vocabulary terms, terms not part of the dictionary are ignored **/
 	public void setValueForTerms(String term1, String term2, int val) {
-		int idx_a = dictionary.indexOf(term1.toLowerCase());
-		int idx_b = dictionary.indexOf(term2.toLowerCase());
-		matrix[idx_a][idx_b] = val;
+		int idx_a = getIndexForTerm(term1);
+		int idx_b = getIndexForTerm(term2);
+		if (idx_a < 0 || idx_b < 0) return;
+		setValue(idx_a, idx_b, val);
 //		System.out.println(idx_a + " " + idx_b + " (" + term1 + "), (" + term2 + ") -> " + val);
 	}
 	
 	/** returns a JSon representation of this Graph Cocde **/
 	public String toString() {
-		Gson gson = new Gson();
-		String s = gson.toJson(this);
-		return s;
+		return GraphCodeIO.asJson(this);
 	}
 }
@@ -0,0 +1,16 @@
+package de.swa.gc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** Storage format of a single Graph Code, implemented by the Json, binary and compressed codecs. GraphCodeIO and
+ * the GraphCodePackStore write with a configured codec and detect the codec of stored Graph Codes when reading.
+ */
+public interface GraphCodeCodec {
+	/** writes a Graph Code, the stream is flushed but not closed **/
+	void encode(GraphCode gc, OutputStream out) throws IOException;
+
+	/** reads a Graph Code, an IOException is thrown for corrupt or truncated data **/
+	GraphCode decode(InputStream in) throws IOException;
+}
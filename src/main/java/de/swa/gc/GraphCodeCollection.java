@@ -1,7 +1,7 @@
 package de.swa.gc;
 
 import java.io.File;
-import java.util.Hashtable;
+import java.util.HashSet;
 import java.util.Vector;
 
 import de.swa.ui.MMFGCollection;
@@ -24,8 +24,7 @@ public class GraphCodeCollection {
 	
 	/** returns the Feature Relevant Graph Code based on statistical relevance of the collection's Graph Codes **/
 	public static GraphCode getFeatureRelevantGraphCode(GraphCode gc1) {
-		if (gcstop == null) calculateGCStop(MMFGCollectionFactory.createOrGetCollection().getCollectionGraphCodes(), false);
-		return subtract(gc1, gcstop);
+		return subtract(gc1, MMFGCollectionFactory.createOrGetCollection().getStopWordStatistics().getGCStop());
 	}
 	
 	/** subtracts one Graph Code from the other **/
@@ -33,8 +32,9 @@ public class GraphCodeCollection {
 		GraphCode gc = new GraphCode();
 		Vector<String> dictionary = new Vector<String>();
 		
-		for (String s : gc1.getDictionary()) {
-			if (!gc2.getDictionary().contains(s)) dictionary.add(s);
+		HashSet<String> dict2 = new HashSet<String>(gc2.getNormalizedDictionary());
+		for (String s : gc1.getNormalizedDictionary()) {
+			if (!dict2.contains(s)) dictionary.add(s);
 		}
 
 		gc.setDictionary(dictionary);
@@ -48,75 +48,30 @@ public class GraphCodeCollection {
 		return gc;
 	}
 	
-	private static GraphCode gcstop = null;
 	/** calculates the Graph Code of Stop-Words (i.e. irrelevant terms within the collection) **/
 	public static GraphCode calculateGCStop(Vector<GraphCode> collection, boolean fromCache) {
-		if (gcstop != null) return gcstop;
-		
 		if (fromCache) {
 			try {
-				GraphCode gc = GraphCodeIO.read(new File(Configuration.getInstance().getGraphCodeRepository() + File.separatorChar + "GCStop.gc"));
-				gcstop = gc;
-				return gcstop;
+				return GraphCodeIO.read(new File(Configuration.getInstance().getGraphCodeRepository() + File.separatorChar + StopWordStatistics.GCSTOP_FILE));
 			}
 			catch (Exception x) {
 				return new GraphCode();
 			}
 		}
 		
-		gcstop = new GraphCode();
-		Hashtable<String, Integer> termFrequency = new Hashtable<String, Integer>();
-		for (GraphCode gc : collection) {
-			for (String s : gc.getDictionary()) {
-				if (termFrequency.containsKey(s)) {
-					int freq = termFrequency.get(s);
-					freq ++;
-					termFrequency.put(s, freq);
-				}
-				else termFrequency.put(s,  1);
-			}
+		StopWordStatistics statistics = new StopWordStatistics();
+		try {
+			for (int i = 0; i < collection.size(); i++) statistics.add("" + i, collection.get(i));
 		}
-
-		Vector<String> stopWords = new Vector<String>();
-//		stopWords.add("face_1");
-//		stopWords.add("face_2");
-//		stopWords.add("flash photography");
-		
-		int threshold = (int)(collection.size() * 0.7); 	// 80% relevance
-		for (String s : termFrequency.keySet()) {
-			int freq = termFrequency.get(s);
-			if (freq > threshold) stopWords.add(s);
+		catch (Exception x) {
+			x.printStackTrace();
 		}
-		
-		gcstop.setDictionary(stopWords);
-		return gcstop;
+		return statistics.getGCStop();
 	}
 	
-	/** returns the union of Graph Codes **/
+	/** returns the union of Graph Codes, see GraphCodeUnion **/
 	public static GraphCode getUnion(Vector<GraphCode> gcs) {
-		GraphCode gc = new GraphCode();
-		Vector<String> dictionary = new Vector<String>();
-		
-		for (GraphCode gci : gcs) {
-			Vector<String> dict_i = gci.getDictionary();
-			for (String s : dict_i) {
-				if (!dictionary.contains(s)) dictionary.add(s);
-			}
-		}
-		
-		gc.setDictionary(dictionary);
-		
-		// add edges
-		for (GraphCode gci : gcs) {
-			for (String s : dictionary) {
-				for (String t : dictionary) {
-					int i = 0;
-					try { i = gci.getEdgeValueForTerms(s, t); } catch (Exception x) {}
-					gc.setValueForTerms(s, t, i);
-				}
-			}
-		}
-		return gc;
+		return GraphCodeUnion.getUnion(gcs);
 	}
 	
 	/** returns a summary of Graph Codes based on a ranking. The parameter top indicates the Level Of Detail **/
@@ -126,22 +81,10 @@ public class GraphCodeCollection {
 		int size = gc.getCollectionElements().size();
 		if (size < top) top = size;
 		
-//		float[][][] ranks = new float[size][size][3];
+		// calculate feature rank matrix and summarize rank for each GC
+		double[] sums = new AllPairsSimilarity(gc.getCollectionElements()).calculateRowSums(1000000, 1000, 1);
 		float[] sum = new float[size];
-
-		// calculate feature rank matrix
-		for (int i = 0; i < size; i++) {
-			GraphCode GC_i = gc.getCollectionElements().get(i);
-			float sum_i = 0.0f;
-			for (int j = 0; j < size; j++) {
-				GraphCode GC_j = gc.getCollectionElements().get(j);
-				float[] sim = GraphCodeMetric.calculateSimilarity(GC_i, GC_j);
-//				ranks[i][j] = sim;
-				// summarize rank for each GC
-				sum_i += sim[0] * 1000000 + sim[1] * 1000 + sim[2];
-			}
-			sum[i] = sum_i;
-		}
+		for (int i = 0; i < size; i++) sum[i] = (float)sums[i];
 
 		Vector<GraphCode> result = new Vector<GraphCode>();
 		float old_max = Float.MAX_VALUE;
@@ -1,5 +1,6 @@
 package de.swa.gc;
 
+import java.util.HashSet;
 import java.util.Vector;
 
 import de.swa.mmfg.CompositionRelationship;
@@ -21,6 +22,7 @@ public class GraphCodeGenerator  {
 	public static GraphCode generate(MMFG m) {
 		GraphCode gc = new GraphCode();
 		Vector<String> dictionary = new Vector<String>();
+		HashSet<String> terms = new HashSet<String>();
 		
 		// Calculate the Graph Code Dictionary by the vocabulary terms of the MMFG
 		Vector<Node> vocTerms = m.allNodes;
@@ -28,7 +30,7 @@ public class GraphCodeGenerator  {
 			String term = n.getName();
 			if (!term.equals("")) {
 				if (term.startsWith("Sentence_")) continue;
-				if (!dictionary.contains(term)) {
+				if (terms.add(term)) {
 					dictionary.add(term);
 				}
 			}
@@ -1,12 +1,29 @@
 package de.swa.gc;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.RandomAccessFile;
-
-import com.google.gson.Gson;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
 
 import de.swa.mmfg.MMFG;
 import de.swa.mmfg.builder.Flattener;
+import de.swa.ui.Logger;
 
 /** Utility Class for Graph Code Import and Export, implements the MMFG-Flattener-Interface
  * 
@@ -14,12 +31,12 @@ import de.swa.mmfg.builder.Flattener;
  */
 
 public class GraphCodeIO implements Flattener {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
 	/** exports a Graph Code based on a MMFG to Json **/
 	public String flatten(MMFG fv) {
 		GraphCode gc = GraphCodeGenerator.generate(fv);
-		Gson g = new Gson();
-		String s = g.toJson(gc);
-		return s;
+		return asJson(gc);
 	}
 
 	/** returns "json" **/
@@ -27,43 +44,123 @@ public class GraphCodeIO implements Flattener {
 		return "json";
 	}
 
-	/** reads a Graph Code from a Json-File **/
+	/** returns the codec for a format name (json | binary | compressed), unknown names return the Json codec **/
+	public static GraphCodeCodec getCodec(String format) {
+		if (format.equalsIgnoreCase("binary")) return new BinaryGraphCodeCodec();
+		if (format.equalsIgnoreCase("compressed")) return new CompressedGraphCodeCodec();
+		return new JsonGraphCodeCodec();
+	}
+
+	/** detects the codec of a stored Graph Code by its magic bytes, the stream has to support mark and is reset **/
+	public static GraphCodeCodec detectCodec(InputStream in) throws IOException {
+		byte[] magic = new byte[BinaryGraphCodeCodec.MAGIC.length];
+		in.mark(magic.length);
+		int n = 0;
+		while (n < magic.length) {
+			int r = in.read(magic, n, magic.length - n);
+			if (r < 0) break;
+			n += r;
+		}
+		in.reset();
+		if (Arrays.equals(magic, BinaryGraphCodeCodec.MAGIC)) return new BinaryGraphCodeCodec();
+		if (Arrays.equals(magic, CompressedGraphCodeCodec.MAGIC)) return new CompressedGraphCodeCodec();
+		return new JsonGraphCodeCodec();
+	}
+
+	/** reads a Graph Code from a stream in any of the formats, the format is detected automatically **/
+	public static GraphCode decode(InputStream in) throws IOException {
+		if (!in.markSupported()) in = new BufferedInputStream(in);
+		return detectCodec(in).decode(in);
+	}
+
+	/** reads a Graph Code from a binary, compressed or Json-File, the format is detected automatically. Json-Files
+	 * written by former versions in a single byte encoding are read as ISO-8859-1. Unreadable files are logged and
+	 * null is returned **/
 	public static GraphCode read(File f) {
-		Gson gson = new Gson();
-		String s = "";
-		try {
-			RandomAccessFile rf = new RandomAccessFile(f, "r");
-			String line = "";
-			while ((line = rf.readLine()) != null) {
-				s += line + "\n";
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			InputStream in = new BufferedInputStream(Channels.newInputStream(ch), BUFFER_SIZE);
+			GraphCodeCodec codec = detectCodec(in);
+			if (!(codec instanceof JsonGraphCodeCodec)) return codec.decode(in);
+			try {
+				return readJson(in, StandardCharsets.UTF_8);
+			} catch (CharacterCodingException x) {
+				ch.position(0);
+				return readJson(new BufferedInputStream(Channels.newInputStream(ch), BUFFER_SIZE), StandardCharsets.ISO_8859_1);
 			}
-			rf.close();
 		} catch (Exception x) {
-			x.printStackTrace();
+			Logger.getInstance().log("could not read Graph Code " + f.getName() + ": " + x);
+			return null;
 		}
-		GraphCode gc = gson.fromJson(s, GraphCode.class);
-		return gc;
+	}
+
+	private static GraphCode readJson(InputStream in, Charset charset) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		return new JsonGraphCodeCodec().decode(new InputStreamReader(in, decoder));
 	}
 	
-	/** writes a Graph Code as Json into File f **/
+	/** writes a Graph Code into File f, files with the extension .gcb are written in binary format, all others as Json **/
 	public static void write(GraphCode gc, File f) {
-		Gson gson = new Gson();
-		String s = gson.toJson(gc);
+		write(gc, f, f.getName().endsWith(".gcb"));
+	}
+
+	/** writes a Graph Code into File f in binary or Json format **/
+	public static void write(GraphCode gc, File f, boolean binary) {
+		if (binary) writeBinary(gc, f);
+		else writeJson(gc, f);
+	}
+
+	/** writes a Graph Code into File f with the given codec **/
+	public static void write(GraphCode gc, File f, GraphCodeCodec codec) {
+		if (codec instanceof JsonGraphCodeCodec) {
+			writeJson(gc, f);
+			return;
+		}
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(f))) {
+			codec.encode(gc, out);
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+	}
+
+	/** writes a Graph Code in binary format into File f **/
+	public static void writeBinary(GraphCode gc, File f) {
+		write(gc, f, new BinaryGraphCodeCodec());
+	}
+
+	/** writes a Graph Code as UTF-8 encoded Json into File f **/
+	public static void writeJson(GraphCode gc, File f) {
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				Writer out = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE)) {
+			new JsonGraphCodeCodec().encode(gc, out);
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+	}
+	
+	/** reads the Graph Code of an asset from a pack store, returns null if it is not stored **/
+	public static GraphCode read(GraphCodePackStore store, UUID id) {
+		try {
+			return store.get(id);
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+		return null;
+	}
+
+	/** writes the Graph Code of an asset into a pack store, a previously stored Graph Code is replaced **/
+	public static void write(GraphCode gc, GraphCodePackStore store, UUID id) {
 		try {
-			RandomAccessFile rf = new RandomAccessFile(f, "rw");
-			rf.setLength(0);
-			rf.writeBytes(s);
-			rf.close();
+			store.put(id, gc);
 		} catch (Exception x) {
 			x.printStackTrace();
 		}
 	}
 	
-	/** returns a Graph Code as JSon **/
+	/** returns a Graph Code as JSon, the relationships are written as dense matrix in every storage mode **/
 	public static String asJson(GraphCode gc) {
-		Gson gson = new Gson();
-		String s = gson.toJson(gc);
-		return s;
+		return new JsonGraphCodeCodec().toJson(gc);
 	}
 
 	/** for Graph Codes, no header is required **/
@@ -1,6 +1,6 @@
 package de.swa.gc;
 
-import java.util.Vector;
+import java.util.List;
 
 /** Implementation of the Graph Code Metric
  * 
@@ -15,23 +15,14 @@ public class GraphCodeMetric {
         float edge_type_metric = 0f;
         
         // node metric checks matching vocabulary terms
-        Vector<String> voc = gcQuery.getDictionary();
+        List<String> voc = gcQuery.getNormalizedDictionary();
         if (voc.isEmpty()) {
             // If query dictionary is empty, all metrics are 0
             return new float[] {0f, 0f, 0f};
         }
         
-        int sim = 0;
-        for (String s : voc) {
-            if (s.trim().equals("")) continue;
-            Vector<String> otherDict = gc.getDictionary();
-            for (String t : otherDict) {
-                if (s.equals(t)) sim++;
-            }
-        }
-        if (sim > voc.size()) sim = voc.size();
-        node_metric = (float)sim / (float)voc.size();
-        if (Float.isNaN(node_metric)) node_metric = 0f;
+        // both dictionaries are de-duplicated, so matching terms are counted on the term signatures
+        node_metric = calculateNodeMetric(gcQuery.getTermSignature(), voc.size(), gc.getTermSignature());
         
         // edge metric checks matching edges of the non diagonal fields
         // edge type metric checks for corresponding type values
@@ -62,4 +53,17 @@ public class GraphCodeMetric {
         
         return new float[] {node_metric, edge_metric, edge_type_metric};
     }
+
+    /** returns the number of terms contained in both term signatures **/
+    public static int countMatchingTerms(TermSignature querySignature, TermSignature signature) {
+        return querySignature.countMatching(signature);
+    }
+
+    /** calculates the node metric of a candidate based on the query's term signature and dictionary size **/
+    public static float calculateNodeMetric(TermSignature querySignature, int querySize, TermSignature signature) {
+        if (querySize == 0) return 0f;
+        int sim = countMatchingTerms(querySignature, signature);
+        if (sim > querySize) sim = querySize;
+        return (float)sim / (float)querySize;
+    }
 }
@@ -0,0 +1,135 @@
+package de.swa.gc;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/** Command line tool to migrate the Graph Code files of a repository to the binary, compressed or UTF-8 Json format and to
+ * verify, that every file can be read. Each migrated file is read back and compared with the original before it
+ * replaces the original file, so file names and thereby the repository layout are kept.
+ *
+ * usage: GraphCodeMigration &lt;graphCodeRepository&gt; (json | binary | compressed | verify)
+ */
+public class GraphCodeMigration {
+	private int files, migrated, failed;
+
+	/** migrates all .gc and .gcb files of a folder to binary or Json, returns false if at least one file failed **/
+	public boolean migrate(File folder, boolean binary) {
+		return migrate(folder, binary ? new BinaryGraphCodeCodec() : new JsonGraphCodeCodec());
+	}
+
+	/** migrates all .gc and .gcb files of a folder to the format of a codec, returns false if at least one file failed **/
+	public boolean migrate(File folder, GraphCodeCodec codec) {
+		for (File f : listGraphCodes(folder)) {
+			files++;
+			GraphCode gc = GraphCodeIO.read(f);
+			if (gc == null) {
+				fail(f, "unreadable");
+				continue;
+			}
+			File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+			try {
+				GraphCodeIO.write(gc, tmp, codec);
+				if (!isEqual(gc, GraphCodeIO.read(tmp))) {
+					fail(f, "verification of the migrated file failed");
+					continue;
+				}
+				Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				migrated++;
+			} catch (Exception x) {
+				fail(f, x.toString());
+			} finally {
+				tmp.delete();
+			}
+		}
+		return failed == 0;
+	}
+
+	/** reads all .gc and .gcb files of a folder and checks, that they survive a round trip through their codec,
+	 * returns false if at least one file failed **/
+	public boolean verify(File folder) {
+		for (File f : listGraphCodes(folder)) {
+			files++;
+			GraphCode gc = GraphCodeIO.read(f);
+			if (gc == null) {
+				fail(f, "unreadable");
+				continue;
+			}
+			try (InputStream in = new BufferedInputStream(new FileInputStream(f))) {
+				GraphCodeCodec codec = GraphCodeIO.detectCodec(in);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				codec.encode(gc, out);
+				GraphCode copy = codec.decode(new ByteArrayInputStream(out.toByteArray()));
+				if (!isEqual(gc, copy)) fail(f, "round trip changed the Graph Code");
+			} catch (Exception x) {
+				fail(f, x.toString());
+			}
+		}
+		return failed == 0;
+	}
+
+	private void fail(File f, String reason) {
+		failed++;
+		System.out.println("failed " + f.getName() + ": " + reason);
+	}
+
+	private static File[] listGraphCodes(File folder) {
+		File[] fs = folder.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".gc") || name.endsWith(".gcb");
+			}
+		});
+		return fs == null ? new File[0] : fs;
+	}
+
+	/** returns true, if both Graph Codes have the same dictionary, relationships and collection elements **/
+	public static boolean isEqual(GraphCode a, GraphCode b) {
+		if (a == null || b == null) return a == b;
+		int size = a.getDictionarySize();
+		if (size != b.getDictionarySize()) return false;
+		for (int i = 0; i < size; i++) {
+			if (!a.getTermForIndex(i).equals(b.getTermForIndex(i))) return false;
+		}
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (a.getValue(x, y) != b.getValue(x, y)) return false;
+			}
+		}
+		int elements = a.getCollectionElements().size();
+		if (elements != b.getCollectionElements().size()) return false;
+		for (int i = 0; i < elements; i++) {
+			if (!isEqual(a.getCollectionElements().get(i), b.getCollectionElements().get(i))) return false;
+		}
+		return true;
+	}
+
+	public int getFileCount() {
+		return files;
+	}
+
+	public int getMigratedCount() {
+		return migrated;
+	}
+
+	public int getFailedCount() {
+		return failed;
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("usage: GraphCodeMigration <graphCodeRepository> (json | binary | compressed | verify)");
+			return;
+		}
+		GraphCodeMigration m = new GraphCodeMigration();
+		File folder = new File(args[0]);
+		boolean ok = args[1].equals("verify") ? m.verify(folder) : m.migrate(folder, GraphCodeIO.getCodec(args[1]));
+		System.out.println(m.getFileCount() + " Graph Codes, " + m.getMigratedCount() + " migrated, " + m.getFailedCount() + " failed");
+		if (!ok) System.exit(1);
+	}
+}
@@ -0,0 +1,529 @@
+package de.swa.gc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/** Log-structured store, which packs the Graph Codes of a repository into a few append-only segment files instead of
+ * one file per asset. Every record carries the asset UUID and a sequence number, the record with the highest sequence
+ * number of an asset wins, so a Graph Code is replaced by appending it again and removed by appending a tombstone.
+ * The offset table from asset UUIDs to records is kept in memory and rebuilt from the record headers on open.
+ * Segments which have been closed are never modified, compaction copies their live records into new segments and
+ * deletes them afterwards. A tombstone, which supersedes a record in another compacted segment, is copied as well, so
+ * a crash between deleting the compacted segments does not resurrect a deleted Graph Code. Compaction runs in a background thread once more than half of the stored bytes are garbage.
+ * A closed segment is flushed and ends with a seal record. On open, only the record headers of sealed segments are
+ * read, the checksums of all other segments are verified, as they may end with an incompletely written record.
+ */
+public class GraphCodePackStore implements Closeable {
+	private static final int SEGMENT_MAGIC = 0x4743504B;	// GCPK
+	private static final int VERSION = 1;
+	private static final int SEGMENT_HEADER = 8;
+	/** type, sequence number, UUID and payload length **/
+	private static final int RECORD_HEADER = 1 + 8 + 16 + 4;
+	private static final byte PUT = 1, TOMBSTONE = 2, SEAL = 3;
+	private static final int SEAL_SIZE = RECORD_HEADER + 4;
+	public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+	private static final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "GraphCodePackStore compaction");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/** position of the latest record of an asset **/
+	private static class Entry {
+		final long sequence;
+		final int segment;
+		final long offset;
+		final int length;
+
+		Entry(long sequence, int segment, long offset, int length) {
+			this.sequence = sequence;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		int size() {
+			return RECORD_HEADER + length + 4;
+		}
+	}
+
+	private final File folder;
+	private final long maxSegmentSize;
+	private final GraphCodeCodec codec;
+	private final HashMap<UUID, Entry> entries = new HashMap<UUID, Entry>();
+	private final TreeMap<Integer, FileChannel> segments = new TreeMap<Integer, FileChannel>();
+	/** bytes of the live records per segment **/
+	private final HashMap<Integer, Long> liveBytes = new HashMap<Integer, Long>();
+	/** segments, which end with a seal record **/
+	private final HashSet<Integer> sealed = new HashSet<Integer>();
+	private int active;
+	private long activeSize;
+	private long sequence;
+	private long totalBytes;
+	private Future<?> compaction;
+	private final Object compactionLock = new Object();
+	/** number of running compactions, which read segments without holding the lock. close waits for them **/
+	private int pinned;
+	private boolean closed;
+
+	/** opens or creates a pack store in a folder **/
+	public GraphCodePackStore(File folder) throws IOException {
+		this(folder, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/** opens or creates a pack store in a folder, segments are closed once they exceed maxSegmentSize bytes **/
+	public GraphCodePackStore(File folder, long maxSegmentSize) throws IOException {
+		this(folder, maxSegmentSize, new BinaryGraphCodeCodec());
+	}
+
+	/** opens or creates a pack store in a folder, which writes Graph Codes with the given codec. Stored Graph Codes
+	 * are read with the codec they have been written with **/
+	public GraphCodePackStore(File folder, long maxSegmentSize, GraphCodeCodec codec) throws IOException {
+		this.folder = folder;
+		this.maxSegmentSize = maxSegmentSize;
+		this.codec = codec;
+		folder.mkdirs();
+		try {
+			load();
+		}
+		catch (IOException x) {
+			close();
+			throw x;
+		}
+	}
+
+	private void load() throws IOException {
+		File[] fs = folder.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("segment-") && name.endsWith(".pack");
+			}
+		});
+		for (File f : fs == null ? new File[0] : fs) {
+			int n = Integer.parseInt(f.getName().substring(8, f.getName().length() - 5));
+			segments.put(n, FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+		}
+		HashMap<UUID, Long> tombstones = new HashMap<UUID, Long>();
+		Vector<Integer> unsealed = new Vector<Integer>();
+		for (Map.Entry<Integer, FileChannel> s : segments.entrySet()) {
+			if (isSealed(s.getValue())) sealed.add(s.getKey());
+			else unsealed.add(s.getKey());
+			scan(s.getKey(), s.getValue(), !sealed.contains(s.getKey()), tombstones);
+		}
+		// the last segment stays active, if it is not sealed. Compaction creates segments after the active one, so
+		// the segment active before may be any unsealed segment
+		if (!segments.isEmpty() && !sealed.contains(segments.lastKey())) {
+			active = segments.lastKey();
+			activeSize = segments.get(active).size();
+			unsealed.remove((Integer)active);
+		}
+		else newSegment();
+		for (int s : unsealed) seal(s, segments.get(s).size());
+	}
+
+	/** returns true, if a segment ends with a valid seal record **/
+	private static boolean isSealed(FileChannel ch) throws IOException {
+		long size = ch.size();
+		if (size < SEGMENT_HEADER + SEAL_SIZE) return false;
+		ByteBuffer b = ByteBuffer.allocate(SEAL_SIZE);
+		readFully(ch, b, size - SEAL_SIZE);
+		CRC32 crc = new CRC32();
+		crc.update(b.array(), 0, RECORD_HEADER);
+		b.flip();
+		return b.get(0) == SEAL && b.getInt(RECORD_HEADER - 4) == 0 && b.getInt(RECORD_HEADER) == (int)crc.getValue();
+	}
+
+	/** reads the record headers of a segment, the checksums are verified for segments, which are not sealed and may
+	 * end with an incompletely written record **/
+	private void scan(int segment, FileChannel ch, boolean verify, HashMap<UUID, Long> tombstones) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+		ch.read(header, 0);
+		header.flip();
+		if (header.remaining() < SEGMENT_HEADER || header.getInt() != SEGMENT_MAGIC || header.getInt() != VERSION)
+			throw new IOException("not a Graph Code pack segment: " + segment);
+		long size = ch.size();
+		long pos = SEGMENT_HEADER;
+		ByteBuffer b = ByteBuffer.allocate(RECORD_HEADER);
+		while (size - pos >= RECORD_HEADER + 4) {
+			b.clear();
+			readFully(ch, b, pos);
+			b.flip();
+			byte type = b.get();
+			long seq = b.getLong();
+			UUID id = new UUID(b.getLong(), b.getLong());
+			int length = b.getInt();
+			if ((type != PUT && type != TOMBSTONE && type != SEAL) || length < 0 || size - pos < RECORD_HEADER + length + 4) break;
+			if (verify && !isValid(ch, pos, length)) break;
+			if (type == SEAL) {
+				pos += RECORD_HEADER + length + 4;
+				continue;
+			}
+			Entry e = new Entry(seq, segment, pos, length);
+			totalBytes += e.size();
+			sequence = Math.max(sequence, seq);
+			Entry current = entries.get(id);
+			Long deleted = tombstones.get(id);
+			long latest = Math.max(current == null ? -1 : current.sequence, deleted == null ? -1 : deleted);
+			if (seq > latest) {
+				if (current != null) addLive(current.segment, -current.size());
+				if (type == PUT) {
+					entries.put(id, e);
+					tombstones.remove(id);
+					addLive(segment, e.size());
+				}
+				else {
+					entries.remove(id);
+					tombstones.put(id, seq);
+				}
+			}
+			pos += e.size();
+		}
+		if (pos < size) ch.truncate(pos);
+	}
+
+	private boolean isValid(FileChannel ch, long pos, int length) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + length + 4);
+		readFully(ch, record, pos);
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 0, RECORD_HEADER + length);
+		record.position(RECORD_HEADER + length);
+		return record.getInt() == (int)crc.getValue();
+	}
+
+	private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+		while (b.hasRemaining()) {
+			int n = ch.read(b, pos);
+			if (n < 0) throw new IOException("unexpected end of pack segment");
+			pos += n;
+		}
+	}
+
+	private void addLive(int segment, long bytes) {
+		Long l = liveBytes.get(segment);
+		liveBytes.put(segment, (l == null ? 0 : l) + bytes);
+	}
+
+	/** seals the active segment and creates a new segment, which becomes the active segment **/
+	private void newSegment() throws IOException {
+		if (segments.containsKey(active)) seal(active, activeSize);
+		active = createSegment();
+		activeSize = SEGMENT_HEADER;
+	}
+
+	/** flushes a segment of the given size and appends the seal record, which is not counted as stored bytes **/
+	private void seal(int segment, long size) throws IOException {
+		FileChannel ch = segments.get(segment);
+		ch.force(false);
+		ByteBuffer b = record(SEAL, 0, new UUID(0, 0), new byte[0]);
+		while (b.hasRemaining()) size += ch.write(b, size);
+		sealed.add(segment);
+	}
+
+	private int createSegment() throws IOException {
+		int n = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+		File f = new File(folder, String.format("segment-%06d.pack", n));
+		FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer b = ByteBuffer.allocate(SEGMENT_HEADER);
+		b.putInt(SEGMENT_MAGIC).putInt(VERSION).flip();
+		ch.write(b, 0);
+		segments.put(n, ch);
+		return n;
+	}
+
+	private static ByteBuffer record(byte type, long seq, UUID id, byte[] payload) {
+		ByteBuffer b = ByteBuffer.allocate(RECORD_HEADER + payload.length + 4);
+		b.put(type).putLong(seq).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+		b.putInt(payload.length).put(payload);
+		CRC32 crc = new CRC32();
+		crc.update(b.array(), 0, b.position());
+		b.putInt((int)crc.getValue());
+		b.flip();
+		return b;
+	}
+
+	/** appends a record to the active segment and returns its offset **/
+	private long append(ByteBuffer record) throws IOException {
+		if (activeSize > SEGMENT_HEADER && activeSize + record.remaining() > maxSegmentSize) newSegment();
+		long pos = activeSize;
+		FileChannel ch = segments.get(active);
+		while (record.hasRemaining()) activeSize += ch.write(record, activeSize);
+		return pos;
+	}
+
+	/** returns true, if the store contains a Graph Code for the asset **/
+	public synchronized boolean contains(UUID id) {
+		return entries.containsKey(id);
+	}
+
+	/** returns the Graph Code of an asset or null, if it is not part of the store **/
+	public synchronized GraphCode get(UUID id) throws IOException {
+		Entry e = entries.get(id);
+		if (e == null) return null;
+		ByteBuffer payload = ByteBuffer.allocate(e.length);
+		readFully(segments.get(e.segment), payload, e.offset + RECORD_HEADER);
+		return GraphCodeIO.decode(new ByteArrayInputStream(payload.array()));
+	}
+
+	/** stores the Graph Code of an asset, a previously stored Graph Code is replaced **/
+	public synchronized void put(UUID id, GraphCode gc) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encode(gc, out);
+		long seq = ++sequence;
+		ByteBuffer record = record(PUT, seq, id, out.toByteArray());
+		int length = out.size();
+		long pos = append(record);
+		Entry e = new Entry(seq, active, pos, length);
+		Entry old = entries.put(id, e);
+		if (old != null) addLive(old.segment, -old.size());
+		addLive(active, e.size());
+		totalBytes += e.size();
+		compactIfNeeded();
+	}
+
+	/** removes the Graph Code of an asset by appending a tombstone **/
+	public synchronized void delete(UUID id) throws IOException {
+		Entry old = entries.remove(id);
+		if (old == null) return;
+		addLive(old.segment, -old.size());
+		append(record(TOMBSTONE, ++sequence, id, new byte[0]));
+		totalBytes += RECORD_HEADER + 4;
+		compactIfNeeded();
+	}
+
+	/** returns the number of stored Graph Codes **/
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** returns the UUIDs of all stored Graph Codes **/
+	public synchronized Set<UUID> getIds() {
+		return new HashSet<UUID>(entries.keySet());
+	}
+
+	/** returns the number of segment files **/
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/** returns the fraction of stored bytes, which belong to replaced or deleted Graph Codes or to tombstones **/
+	public synchronized double getGarbageRatio() {
+		if (totalBytes == 0) return 0d;
+		long live = 0;
+		for (long l : liveBytes.values()) live += l;
+		return 1d - (double)live / (double)totalBytes;
+	}
+
+	private void compactIfNeeded() {
+		if (totalBytes < maxSegmentSize || getGarbageRatio() < 0.5d) return;
+		if (compaction == null || compaction.isDone()) compaction = compactInBackground();
+	}
+
+	/** starts the compaction in a background thread **/
+	public Future<?> compactInBackground() {
+		return compactor.submit(new Runnable() {
+			public void run() {
+				try {
+					compact();
+				}
+				catch (Exception x) {
+					x.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/** copies the live records of all closed segments into new segments and deletes the closed segments. Records
+	 * are copied without holding the lock, readers and writers are only blocked while the offset table is updated.
+	 * The store is not closed before the copy is finished **/
+	public void compact() throws IOException {
+		synchronized (compactionLock) {
+			compactSealedSegments();
+		}
+	}
+
+	private void compactSealedSegments() throws IOException {
+		Vector<Integer> closedSegments = new Vector<Integer>();
+		HashMap<UUID, Entry> live = new HashMap<UUID, Entry>();
+		HashMap<Integer, FileChannel> sources = new HashMap<Integer, FileChannel>();
+		synchronized (this) {
+			if (closed) return;
+			if (activeSize > SEGMENT_HEADER) newSegment();
+			for (int s : segments.keySet()) {
+				if (s == active) continue;
+				closedSegments.add(s);
+				sources.put(s, segments.get(s));
+			}
+			if (closedSegments.isEmpty()) return;
+			for (Map.Entry<UUID, Entry> e : entries.entrySet()) {
+				if (sources.containsKey(e.getValue().segment)) live.put(e.getKey(), e.getValue());
+			}
+			// keeps the channels open until the copy is finished
+			pinned++;
+		}
+		try {
+			copyLiveRecords(closedSegments, live, sources);
+		}
+		finally {
+			synchronized (this) {
+				pinned--;
+				notifyAll();
+			}
+		}
+	}
+
+	private void copyLiveRecords(Vector<Integer> closedSegments, HashMap<UUID, Entry> live, HashMap<Integer, FileChannel> sources)
+			throws IOException {
+		// copy the live records, closed segments are immutable
+		HashMap<UUID, Entry> copies = new HashMap<UUID, Entry>();
+		CompactionOutput out = new CompactionOutput();
+		for (Map.Entry<UUID, Entry> e : live.entrySet()) {
+			Entry src = e.getValue();
+			ByteBuffer record = ByteBuffer.allocate(src.size());
+			readFully(sources.get(src.segment), record, src.offset);
+			record.flip();
+			long pos = out.write(record);
+			copies.put(e.getKey(), new Entry(src.sequence, out.segment, pos, src.length));
+		}
+		Vector<ByteBuffer> tombstones = getCrossSegmentTombstones(closedSegments, sources);
+		for (ByteBuffer tombstone : tombstones) out.write(tombstone);
+
+		synchronized (this) {
+			out.finish();
+			totalBytes += tombstones.size() * (RECORD_HEADER + 4L);
+			for (Map.Entry<UUID, Entry> c : copies.entrySet()) {
+				Entry copy = c.getValue();
+				totalBytes += copy.size();
+				if (entries.get(c.getKey()) == live.get(c.getKey())) {
+					entries.put(c.getKey(), copy);
+					addLive(copy.segment, copy.size());
+				}
+			}
+			for (int s : closedSegments) {
+				FileChannel ch = segments.remove(s);
+				totalBytes -= ch.size() - SEGMENT_HEADER - (sealed.remove(s) ? SEAL_SIZE : 0);
+				liveBytes.remove(s);
+				ch.close();
+				new File(folder, String.format("segment-%06d.pack", s)).delete();
+			}
+		}
+	}
+
+	/** returns the latest tombstone of each asset without stored Graph Code, which supersedes a record in another of
+	 * the closed segments. Segments are deleted one after another, so these tombstones must survive the compaction **/
+	private Vector<ByteBuffer> getCrossSegmentTombstones(Vector<Integer> closedSegments, HashMap<Integer, FileChannel> sources)
+			throws IOException {
+		HashMap<UUID, long[]> tombstones = new HashMap<UUID, long[]>();
+		HashMap<UUID, HashSet<Integer>> puts = new HashMap<UUID, HashSet<Integer>>();
+		ByteBuffer b = ByteBuffer.allocate(RECORD_HEADER);
+		for (int segment : closedSegments) {
+			FileChannel ch = sources.get(segment);
+			long size = ch.size();
+			long pos = SEGMENT_HEADER;
+			while (size - pos >= RECORD_HEADER + 4) {
+				b.clear();
+				readFully(ch, b, pos);
+				b.flip();
+				byte type = b.get();
+				long seq = b.getLong();
+				UUID id = new UUID(b.getLong(), b.getLong());
+				pos += RECORD_HEADER + b.getInt() + 4;
+				if (type == PUT) {
+					if (!puts.containsKey(id)) puts.put(id, new HashSet<Integer>());
+					puts.get(id).add(segment);
+				}
+				else if (type == TOMBSTONE) {
+					long[] t = tombstones.get(id);
+					if (t == null || t[0] < seq) tombstones.put(id, new long[] { seq, segment });
+				}
+			}
+		}
+		Vector<ByteBuffer> result = new Vector<ByteBuffer>();
+		for (Map.Entry<UUID, long[]> t : tombstones.entrySet()) {
+			HashSet<Integer> s = puts.get(t.getKey());
+			if (s == null || (s.size() == 1 && s.contains((int)t.getValue()[1]))) continue;
+			synchronized (this) {
+				if (entries.containsKey(t.getKey())) continue;
+			}
+			result.add(record(TOMBSTONE, t.getValue()[0], t.getKey(), new byte[0]));
+		}
+		return result;
+	}
+
+	/** new segments written by a compaction **/
+	private class CompactionOutput {
+		FileChannel channel;
+		int segment = -1;
+		long size;
+
+		/** appends a record to the current output segment, which is sealed once it is full, returns its offset **/
+		long write(ByteBuffer record) throws IOException {
+			if (channel == null || (size > SEGMENT_HEADER && size + record.remaining() > maxSegmentSize)) {
+				synchronized (GraphCodePackStore.this) {
+					if (channel != null) seal(segment, size);
+					segment = createSegment();
+					channel = segments.get(segment);
+				}
+				size = SEGMENT_HEADER;
+			}
+			long pos = size;
+			while (record.hasRemaining()) size += channel.write(record, size);
+			return pos;
+		}
+
+		/** seals the last output segment **/
+		void finish() throws IOException {
+			if (channel != null) seal(segment, size);
+		}
+	}
+
+	/** flushes all segments to disk **/
+	public synchronized void force() throws IOException {
+		for (FileChannel ch : segments.values()) ch.force(false);
+	}
+
+	/** closes the segments after a running compaction has finished copying records **/
+	public synchronized void close() throws IOException {
+		closed = true;
+		while (pinned > 0) {
+			try {
+				wait();
+			}
+			catch (InterruptedException x) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		IOException error = null;
+		for (FileChannel ch : segments.values()) {
+			try {
+				ch.close();
+			}
+			catch (IOException x) {
+				error = x;
+			}
+		}
+		segments.clear();
+		if (error != null) throw error;
+	}
+}
@@ -0,0 +1,91 @@
+package de.swa.gc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Union engine for Graph Codes. The union dictionary contains the normalized terms of all Graph Codes in the order of
+ * their first occurrence. Every Graph Code's matrix indices are mapped into the union dictionary once and only its
+ * non-zero cells are copied, so a relationship of a later Graph Code replaces the one of an earlier Graph Code.
+ * Large numbers of Graph Codes are reduced in parallel on the common fork/join pool, as the union of partial unions
+ * is the same Graph Code.
+ */
+public class GraphCodeUnion {
+	/** number of Graph Codes, from which on getUnion reduces in parallel **/
+	public static final int PARALLEL_MIN_SIZE = 64;
+	/** number of Graph Codes, which are merged sequentially within one task **/
+	private static final int CHUNK_SIZE = 16;
+
+	/** returns the union of Graph Codes, reduced in parallel for at least PARALLEL_MIN_SIZE Graph Codes **/
+	public static GraphCode getUnion(List<GraphCode> gcs) {
+		return getUnion(gcs, gcs.size() >= PARALLEL_MIN_SIZE);
+	}
+
+	/** returns the union of Graph Codes, reduced in parallel if parallel is true **/
+	public static GraphCode getUnion(List<GraphCode> gcs, boolean parallel) {
+		if (!parallel || gcs.size() <= CHUNK_SIZE) return merge(gcs, 0, gcs.size());
+		return ForkJoinPool.commonPool().invoke(new UnionTask(gcs, 0, gcs.size()));
+	}
+
+	/** merges the Graph Codes from index from (inclusive) to index to (exclusive) **/
+	private static GraphCode merge(List<GraphCode> gcs, int from, int to) {
+		Vector<String> dictionary = new Vector<String>();
+		HashMap<String, Integer> unionIndex = new HashMap<String, Integer>();
+		// maps the matrix indices of each Graph Code to the union dictionary, -1 for terms outside of the union
+		int[][] mappings = new int[to - from][];
+		for (int i = from; i < to; i++) {
+			GraphCode gci = gcs.get(i);
+			int[] mapping = new int[gci.getDictionarySize()];
+			Arrays.fill(mapping, -1);
+			for (String s : gci.getNormalizedDictionary()) {
+				Integer u = unionIndex.get(s);
+				if (u == null) {
+					u = dictionary.size();
+					unionIndex.put(s, u);
+					dictionary.add(s);
+				}
+				int idx = gci.getIndexForTerm(s);
+				if (idx >= 0) mapping[idx] = u;
+			}
+			mappings[i - from] = mapping;
+		}
+
+		final GraphCode gc = new GraphCode();
+		gc.setDictionary(dictionary);
+		for (int i = from; i < to; i++) {
+			final int[] mapping = mappings[i - from];
+			gcs.get(i).visitNonZeroCells(new GraphCode.CellVisitor() {
+				public void visit(int x, int y, int value) {
+					if (value == 0 || x >= mapping.length || y >= mapping.length) return;
+					int ux = mapping[x], uy = mapping[y];
+					if (ux >= 0 && uy >= 0) gc.setValue(ux, uy, value);
+				}
+			});
+		}
+		return gc;
+	}
+
+	private static class UnionTask extends RecursiveTask<GraphCode> {
+		private static final long serialVersionUID = 1L;
+		private final List<GraphCode> gcs;
+		private final int from, to;
+
+		UnionTask(List<GraphCode> gcs, int from, int to) {
+			this.gcs = gcs;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected GraphCode compute() {
+			if (to - from <= CHUNK_SIZE) return merge(gcs, from, to);
+			int mid = (from + to) >>> 1;
+			UnionTask left = new UnionTask(gcs, from, mid);
+			left.fork();
+			GraphCode right = new UnionTask(gcs, mid, to).compute();
+			return merge(Arrays.asList(left.join(), right), 0, 2);
+		}
+	}
+}
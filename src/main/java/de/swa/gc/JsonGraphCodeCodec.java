@@ -0,0 +1,192 @@
+package de.swa.gc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Vector;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/** Streaming codec for the Json Graph Code format written by Gson. Graph Codes are read token by token into the
+ * dictionary and relationships of a new Graph Code and written without building the Json String in memory.
+ * The relationships are always written as dense "matrix", whatever the storage mode of the Graph Code, so the
+ * output is identical to Gson.toJson of a dense Graph Code. The "sparseMatrix" and "packedMatrix" written by
+ * former versions are still understood when reading.
+ */
+public class JsonGraphCodeCodec implements GraphCodeCodec {
+	private final Gson gson = new Gson();
+
+	/** writes a Graph Code as UTF-8 encoded Json, the stream is flushed but not closed **/
+	public void encode(GraphCode gc, OutputStream out) throws IOException {
+		encode(gc, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	/** writes a Graph Code as Json, the writer is flushed but not closed **/
+	public void encode(GraphCode gc, Writer out) throws IOException {
+		JsonWriter w = gson.newJsonWriter(out);
+		encode(gc, w);
+		w.flush();
+	}
+
+	private void encode(GraphCode gc, JsonWriter w) throws IOException {
+		w.beginObject();
+		w.name("dictionary").beginArray();
+		for (String s : gc.dictionary) w.value(s);
+		w.endArray();
+		w.name("collectionElements").beginArray();
+		for (GraphCode element : gc.collectionElements) encode(element, w);
+		w.endArray();
+		if (gc.matrix != null) {
+			w.name("matrix").beginArray();
+			for (int[] row : gc.matrix) {
+				w.beginArray();
+				for (int v : row) w.value(v);
+				w.endArray();
+			}
+			w.endArray();
+		}
+		else if (gc.sparseMatrix != null || gc.packedMatrix != null) {
+			// sparse and packed relationships are written row by row in the dense format
+			int size = gc.getDictionarySize();
+			w.name("matrix").beginArray();
+			for (int x = 0; x < size; x++) {
+				w.beginArray();
+				for (int y = 0; y < size; y++) w.value(gc.getValue(x, y));
+				w.endArray();
+			}
+			w.endArray();
+		}
+		w.endObject();
+	}
+
+	/** returns a Graph Code as Json String **/
+	public String toJson(GraphCode gc) {
+		StringWriter out = new StringWriter();
+		try {
+			encode(gc, out);
+		} catch (IOException x) {
+			// a StringWriter does not throw
+			throw new IllegalStateException(x);
+		}
+		return out.toString();
+	}
+
+	/** reads a Graph Code from UTF-8 encoded Json **/
+	public GraphCode decode(InputStream in) throws IOException {
+		return decode(new InputStreamReader(in, StandardCharsets.UTF_8));
+	}
+
+	/** reads a Graph Code from Json **/
+	public GraphCode decode(Reader in) throws IOException {
+		return decode(newReader(in));
+	}
+
+	private JsonReader newReader(Reader in) {
+		JsonReader r = gson.newJsonReader(in);
+		r.setLenient(true);
+		return r;
+	}
+
+	private GraphCode decode(JsonReader r) throws IOException {
+		if (r.peek() == JsonToken.NULL) {
+			r.nextNull();
+			return null;
+		}
+		GraphCode gc = new GraphCode();
+		boolean hasDictionary = false;
+		// cells read before the dictionary, as (x, y, value) triples
+		int[] pending = new int[0];
+		int count = 0;
+		r.beginObject();
+		while (r.hasNext()) {
+			String name = r.nextName();
+			if (r.peek() == JsonToken.NULL) {
+				r.nextNull();
+			}
+			else if (name.equals("dictionary")) {
+				Vector<String> dictionary = new Vector<String>();
+				r.beginArray();
+				while (r.hasNext()) dictionary.add(r.nextString());
+				r.endArray();
+				gc.setDictionary(dictionary);
+				hasDictionary = true;
+			}
+			else if (name.equals("collectionElements")) {
+				r.beginArray();
+				while (r.hasNext()) {
+					GraphCode element = decode(r);
+					if (element != null) gc.addGraphCode(element);
+				}
+				r.endArray();
+			}
+			else if (name.equals("matrix")) {
+				r.beginArray();
+				for (int x = 0; r.hasNext(); x++) {
+					r.beginArray();
+					for (int y = 0; r.hasNext(); y++) {
+						int v = r.nextInt();
+						if (v == 0) continue;
+						if (hasDictionary) setValue(gc, x, y, v);
+						else {
+							if (count + 3 > pending.length) pending = Arrays.copyOf(pending, Math.max(48, pending.length * 2));
+							pending[count++] = x;
+							pending[count++] = y;
+							pending[count++] = v;
+						}
+					}
+					r.endArray();
+				}
+				r.endArray();
+			}
+			else if (name.equals("sparseMatrix")) {
+				SparseMatrix m = gson.fromJson(r, SparseMatrix.class);
+				for (int slot = 0; slot < m.getCapacity(); slot++) {
+					if (!m.isOccupied(slot)) continue;
+					if (count + 3 > pending.length) pending = Arrays.copyOf(pending, Math.max(48, pending.length * 2));
+					pending[count++] = m.rowAt(slot);
+					pending[count++] = m.columnAt(slot);
+					pending[count++] = m.valueAt(slot);
+				}
+			}
+			else if (name.equals("packedMatrix")) {
+				r.beginArray();
+				for (int i = 0; r.hasNext(); i++) {
+					int v = r.nextInt();
+					if (v == 0) continue;
+					if (count + 3 > pending.length) pending = Arrays.copyOf(pending, Math.max(48, pending.length * 2));
+					pending[count++] = i;
+					pending[count++] = -1;	// resolved with the dictionary size below
+					pending[count++] = v;
+				}
+				r.endArray();
+			}
+			else {
+				r.skipValue();
+			}
+		}
+		r.endObject();
+		int size = gc.getDictionarySize();
+		if (size == 0) return gc;
+		for (int i = 0; i < count; i += 3) {
+			if (pending[i + 1] < 0) setValue(gc, pending[i] / size, pending[i] % size, pending[i + 2]);
+			else setValue(gc, pending[i], pending[i + 1], pending[i + 2]);
+		}
+		return gc;
+	}
+
+	/** sets a cell, cells outside of the dictionary are ignored **/
+	private static void setValue(GraphCode gc, int x, int y, int v) {
+		int size = gc.getDictionarySize();
+		if (x < size && y < size) gc.setValue(x, y, v);
+	}
+}
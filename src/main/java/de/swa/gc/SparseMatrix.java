@@ -0,0 +1,180 @@
+package de.swa.gc;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/** Sparse storage of a square Graph Code matrix as an open addressing hash map from (x, y) to the cell value.
+ * Only non-zero cells are stored, so the memory footprint scales with the number of edges instead of the
+ * square of the dictionary size.
+ */
+public class SparseMatrix implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final long EMPTY = -1L;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int size;
+	private int count;
+	private long[] keys;
+	private int[] values;
+
+	public SparseMatrix() {}
+
+	/** creates an empty sparse matrix of dimension size x size **/
+	public SparseMatrix(int size) {
+		this.size = size;
+		keys = new long[INITIAL_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+		values = new int[INITIAL_CAPACITY];
+	}
+
+	/** returns the dimension of the matrix **/
+	public int getSize() {
+		return size;
+	}
+
+	/** returns the number of non-zero cells **/
+	public int getCount() {
+		return count;
+	}
+
+	/** returns the value on position x and y **/
+	public int get(int x, int y) {
+		checkBounds(x, y);
+		if (count == 0) return 0;
+		int slot = find(key(x, y));
+		return slot < 0 ? 0 : values[slot];
+	}
+
+	/** sets the value on position x and y, a value of 0 removes the cell **/
+	public void set(int x, int y, int v) {
+		checkBounds(x, y);
+		long key = key(x, y);
+		if (v == 0) {
+			remove(key);
+			return;
+		}
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				values[i] = v;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = v;
+		count++;
+		if (count * 2 > keys.length) rehash(keys.length * 2);
+	}
+
+	/** returns true, if a dense int matrix of the same dimension would need less memory **/
+	public boolean isDenseCheaper() {
+		// 8 bytes key + 4 bytes value per slot vs. 4 bytes per dense cell
+		return (long)keys.length * 3 > (long)size * size;
+	}
+
+	/** returns true, if a sparse matrix holding count non-zero cells needs less memory than a dense int matrix of
+	 * dimension size x size, using the same capacity and cost as isDenseCheaper **/
+	public static boolean isSparseCheaper(int size, int count) {
+		long capacity = INITIAL_CAPACITY;
+		while (count * 2L > capacity) capacity *= 2;
+		return capacity * 3 <= (long)size * size;
+	}
+
+	/** returns a dense copy of this matrix **/
+	public int[][] toDense() {
+		int[][] m = new int[size][size];
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) m[rowAt(i)][columnAt(i)] = values[i];
+		}
+		return m;
+	}
+
+	/** returns the number of slots, used to iterate over the non-zero cells together with isOccupied **/
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	/** returns true, if the given slot holds a non-zero cell **/
+	public boolean isOccupied(int slot) {
+		return keys[slot] != EMPTY;
+	}
+
+	/** returns the row of the cell stored in the given slot **/
+	public int rowAt(int slot) {
+		return (int)(keys[slot] >>> 32);
+	}
+
+	/** returns the column of the cell stored in the given slot **/
+	public int columnAt(int slot) {
+		return (int)keys[slot];
+	}
+
+	/** returns the value of the cell stored in the given slot **/
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+
+	private void checkBounds(int x, int y) {
+		if (x < 0 || y < 0 || x >= size || y >= size)
+			throw new ArrayIndexOutOfBoundsException("Index (" + x + ", " + y + ") out of bounds for size " + size);
+	}
+
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void remove(long key) {
+		int i = find(key);
+		if (i < 0) return;
+		// backward shift deletion keeps the probe sequences intact without tombstones
+		int mask = keys.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == EMPTY) break;
+			int home = hash(keys[j]) & mask;
+			boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!between) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+		values[i] = 0;
+		count--;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new int[capacity];
+		int mask = capacity - 1;
+		for (int s = 0; s < oldKeys.length; s++) {
+			if (oldKeys[s] == EMPTY) continue;
+			int i = hash(oldKeys[s]) & mask;
+			while (keys[i] != EMPTY) i = (i + 1) & mask;
+			keys[i] = oldKeys[s];
+			values[i] = oldValues[s];
+		}
+	}
+
+	private static long key(int x, int y) {
+		return ((long)x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,201 @@
+package de.swa.gc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import com.google.gson.Gson;
+
+/** Document frequencies of the normalized terms of a collection's Graph Codes. The frequencies are updated when Graph
+ * Codes are added, replaced or removed, so that the Graph Code of stop words (GCStop), i.e. the terms occurring in more
+ * than 70% of the Graph Codes, does not have to be calculated over the whole collection. GCStop is only rebuilt, when
+ * the set of stop words changes.
+ * If the statistics are persisted, every change is appended to the log file GCStop.df as Json array
+ * ["+", key, terms...] or ["-", key], and GCStop is written to GCStop.gc whenever it changes.
+ */
+public class StopWordStatistics {
+	/** share of the Graph Codes, in which a term has to occur to be a stop word **/
+	public static final float STOP_WORD_RATIO = 0.7f;
+	public static final String LOG_FILE = "GCStop.df";
+	public static final String GCSTOP_FILE = "GCStop.gc";
+
+	private final HashMap<String, String[]> documents = new HashMap<String, String[]>();
+	private final HashMap<String, Integer> frequencies = new HashMap<String, Integer>();
+	private final Gson gson = new Gson();
+	private final File logFile, gcStopFile;
+	private Writer log;
+	private int logRecords;
+	private HashSet<String> stopWords = new HashSet<String>();
+	private boolean changed = true;
+	private GraphCode gcstop;
+
+	/** creates statistics, which are kept in memory only **/
+	public StopWordStatistics() {
+		logFile = null;
+		gcStopFile = null;
+	}
+
+	/** opens the statistics persisted in a folder, the folder is created if necessary **/
+	public StopWordStatistics(File folder) throws IOException {
+		folder.mkdirs();
+		logFile = new File(folder, LOG_FILE);
+		gcStopFile = new File(folder, GCSTOP_FILE);
+		boolean complete = load();
+		// rewrite the log without replaced records or a torn last record
+		if (!complete || logRecords > 2 * documents.size() + 16) rewriteLog();
+		log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8));
+	}
+
+	/** replays the log file, returns false if it ended with an unreadable record **/
+	private boolean load() throws IOException {
+		if (!logFile.exists()) return true;
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] record;
+				try {
+					record = gson.fromJson(line, String[].class);
+				}
+				catch (Exception x) {
+					return false;
+				}
+				if (record == null || record.length < 2) return false;
+				logRecords++;
+				if (record[0].equals("+")) {
+					String[] terms = new String[record.length - 2];
+					System.arraycopy(record, 2, terms, 0, terms.length);
+					apply(record[1], terms);
+				}
+				else apply(record[1], null);
+			}
+			return true;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private void rewriteLog() throws IOException {
+		File tmp = new File(logFile.getParentFile(), LOG_FILE + ".tmp");
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8));
+		try {
+			for (Map.Entry<String, String[]> e : documents.entrySet()) writeRecord(out, "+", e.getKey(), e.getValue());
+		}
+		finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logRecords = documents.size();
+	}
+
+	private void writeRecord(Writer out, String type, String key, String[] terms) throws IOException {
+		String[] record = new String[2 + (terms == null ? 0 : terms.length)];
+		record[0] = type;
+		record[1] = key;
+		if (terms != null) System.arraycopy(terms, 0, record, 2, terms.length);
+		out.write(gson.toJson(record));
+		out.write('\n');
+	}
+
+	/** returns true, if a Graph Code with this key is part of the statistics **/
+	public synchronized boolean contains(String key) {
+		return documents.containsKey(key);
+	}
+
+	/** adds the terms of a Graph Code, a Graph Code previously added with the same key is replaced **/
+	public synchronized void add(String key, GraphCode gc) throws IOException {
+		List<String> dict = gc.getNormalizedDictionary();
+		String[] terms = dict.toArray(new String[dict.size()]);
+		String[] old = documents.get(key);
+		if (old != null && new HashSet<String>(dict).equals(new HashSet<String>(Arrays.asList(old)))) return;
+		apply(key, terms);
+		append("+", key, terms);
+	}
+
+	/** removes the terms of the Graph Code with this key **/
+	public synchronized void remove(String key) throws IOException {
+		if (!documents.containsKey(key)) return;
+		apply(key, null);
+		append("-", key, null);
+	}
+
+	/** replaces the terms of a key, terms is null to remove the key **/
+	private void apply(String key, String[] terms) {
+		String[] old = terms == null ? documents.remove(key) : documents.put(key, terms);
+		if (old != null) {
+			for (String s : old) {
+				int freq = frequencies.get(s) - 1;
+				if (freq == 0) frequencies.remove(s);
+				else frequencies.put(s, freq);
+			}
+		}
+		if (terms != null) {
+			for (String s : terms) {
+				Integer freq = frequencies.get(s);
+				frequencies.put(s, freq == null ? 1 : freq + 1);
+			}
+		}
+		changed = true;
+	}
+
+	private void append(String type, String key, String[] terms) throws IOException {
+		if (log == null) return;
+		writeRecord(log, type, key, terms);
+		log.flush();
+		logRecords++;
+	}
+
+	/** returns the number of Graph Codes **/
+	public synchronized int getDocumentCount() {
+		return documents.size();
+	}
+
+	/** returns the number of Graph Codes containing a term **/
+	public synchronized int getDocumentFrequency(String term) {
+		Integer freq = frequencies.get(term.toLowerCase());
+		return freq == null ? 0 : freq;
+	}
+
+	/** returns the Graph Code of stop words, the same instance is returned as long as the stop words do not change **/
+	public synchronized GraphCode getGCStop() {
+		if (!changed && gcstop != null) return gcstop;
+		changed = false;
+		int threshold = (int)(documents.size() * STOP_WORD_RATIO);
+		HashSet<String> current = new HashSet<String>();
+		for (Map.Entry<String, Integer> e : frequencies.entrySet()) {
+			if (e.getValue() > threshold) current.add(e.getKey());
+		}
+		if (gcstop != null && current.equals(stopWords)) return gcstop;
+
+		stopWords = current;
+		Vector<String> dictionary = new Vector<String>(current);
+		Collections.sort(dictionary);
+		gcstop = new GraphCode();
+		gcstop.setDictionary(dictionary);
+		if (gcStopFile != null) GraphCodeIO.write(gcstop, gcStopFile);
+		return gcstop;
+	}
+
+	/** closes the log file **/
+	public synchronized void close() throws IOException {
+		if (log != null) log.close();
+		log = null;
+	}
+}
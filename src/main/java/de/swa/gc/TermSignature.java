@@ -0,0 +1,83 @@
+package de.swa.gc;
+
+import java.util.Arrays;
+
+/** Set of TermVocabulary IDs of a Graph Code's non-blank terms, which is used to count matching terms. Small IDs are
+ * stored as bitset, in which bit i is set for the ID i. The bitset is sized by the largest ID, which grows with the
+ * vocabulary, so a signature, whose bitset would exceed MIN_BITSET_WORDS and the number of IDs in words, stores the
+ * IDs as sorted int[] instead.
+ */
+public final class TermSignature {
+	/** bitsets up to this number of words are always used **/
+	public static final int MIN_BITSET_WORDS = 64;
+
+	/** bitset over the IDs or null **/
+	private final long[] bits;
+	/** ascending distinct IDs, if bits is null **/
+	private final int[] ids;
+	private final int size;
+
+	private TermSignature(long[] bits, int[] ids, int size) {
+		this.bits = bits;
+		this.ids = ids;
+		this.size = size;
+	}
+
+	/** creates the signature of a set of IDs, duplicates are ignored **/
+	public static TermSignature of(int[] termIds) {
+		int[] sorted = termIds.clone();
+		Arrays.sort(sorted);
+		int n = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (n == 0 || sorted[i] != sorted[n - 1]) sorted[n++] = sorted[i];
+		}
+		int words = n == 0 ? 0 : (sorted[n - 1] >> 6) + 1;
+		if (words > Math.max(MIN_BITSET_WORDS, n)) return new TermSignature(null, Arrays.copyOf(sorted, n), n);
+		long[] bits = new long[words];
+		for (int i = 0; i < n; i++) bits[sorted[i] >> 6] |= 1L << sorted[i];
+		return new TermSignature(bits, null, n);
+	}
+
+	/** returns the number of IDs **/
+	public int size() {
+		return size;
+	}
+
+	/** returns true, if the IDs are stored as bitset **/
+	public boolean isBitset() {
+		return bits != null;
+	}
+
+	public boolean contains(int id) {
+		if (id < 0) return false;
+		if (bits != null) return (id >> 6) < bits.length && (bits[id >> 6] & (1L << id)) != 0;
+		return Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	/** returns the number of IDs contained in both signatures **/
+	public int countMatching(TermSignature other) {
+		if (bits != null && other.bits != null) {
+			int n = Math.min(bits.length, other.bits.length);
+			int count = 0;
+			for (int i = 0; i < n; i++) count += Long.bitCount(bits[i] & other.bits[i]);
+			return count;
+		}
+		if (bits != null) return other.countMatching(this);
+		int count = 0;
+		if (other.bits != null) {
+			for (int id : ids) if (other.contains(id)) count++;
+			return count;
+		}
+		int i = 0, j = 0;
+		while (i < ids.length && j < other.ids.length) {
+			if (ids[i] < other.ids[j]) i++;
+			else if (ids[i] > other.ids[j]) j++;
+			else {
+				count++;
+				i++;
+				j++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,93 @@
+package de.swa.gc;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/** Collection-wide vocabulary, which maps feature vocabulary terms to dense int IDs. Graph Codes use it to
+ * share one String instance per term and to compare dictionaries by integer IDs instead of Strings.
+ * IDs are assigned in order of first use and are only valid within the running process.
+ * The shared term instances are only weakly referenced, so the vocabulary holds the terms of the Graph Codes in
+ * memory and drops a term once no Graph Code refers to it any more. IDs are not reused, a dropped term, which is
+ * used again, gets a new ID. Indexes over IDs therefore keep the Graph Codes or terms they have been built from.
+ */
+public class TermVocabulary {
+	private static TermVocabulary instance;
+
+	/** singleton pattern access **/
+	public static synchronized TermVocabulary getInstance() {
+		if (instance == null) instance = new TermVocabulary();
+		return instance;
+	}
+
+	/** weak reference to the shared instance of a term, which knows the term's ID **/
+	private static class Term extends WeakReference<String> {
+		final int id;
+
+		Term(String term, int id, ReferenceQueue<String> queue) {
+			super(term, queue);
+			this.id = id;
+		}
+	}
+
+	/** shared term instances as weak keys **/
+	private final WeakHashMap<String, Term> ids = new WeakHashMap<String, Term>();
+	private final HashMap<Integer, Term> terms = new HashMap<Integer, Term>();
+	private final ReferenceQueue<String> dropped = new ReferenceQueue<String>();
+	private int nextId;
+
+	private TermVocabulary() {}
+
+	/** returns the entry of a term, new terms are added to the vocabulary with the given instance **/
+	private Term getTerm(String term) {
+		Object o;
+		while ((o = dropped.poll()) != null) {
+			Term t = (Term)o;
+			if (terms.get(t.id) == t) terms.remove(t.id);
+		}
+		Term t = ids.get(term);
+		if (t != null && t.get() != null) return t;
+		t = new Term(term, nextId++, dropped);
+		ids.put(term, t);
+		terms.put(t.id, t);
+		return t;
+	}
+
+	/** returns the ID of a term, new terms are added to the vocabulary **/
+	public synchronized int getId(String term) {
+		return getTerm(term).id;
+	}
+
+	/** returns the ID of a term or -1, if the term is not part of the vocabulary **/
+	public synchronized int lookup(String term) {
+		Term t = ids.get(term);
+		return t == null || t.get() == null ? -1 : t.id;
+	}
+
+	/** returns the IDs of a list of terms **/
+	public synchronized int[] getIds(List<String> t) {
+		int[] result = new int[t.size()];
+		for (int i = 0; i < result.length; i++) result[i] = getTerm(t.get(i)).id;
+		return result;
+	}
+
+	/** returns the term for a given ID or null, if the term has been dropped **/
+	public synchronized String getTerm(int id) {
+		Term t = terms.get(id);
+		return t == null ? null : t.get();
+	}
+
+	/** returns the shared String instance of a term **/
+	public synchronized String intern(String term) {
+		String s = getTerm(term).get();
+		// the entry has just been added with the given instance or is still referenced
+		return s == null ? term : s;
+	}
+
+	/** returns the number of terms in the vocabulary **/
+	public synchronized int size() {
+		return ids.size();
+	}
+}
@@ -0,0 +1,59 @@
+package de.swa.gc.processing;
+
+import java.util.Vector;
+
+/** Base class of Collection Processors for approximate similarity search. An index returns the candidates of a
+ * query, which are then ranked exactly with the Graph Code Metric. Graph Codes outside of the candidate set are not
+ * scored and are appended in collection order with the metric {0, 0, 0}.
+ */
+public abstract class CandidateCollectionProcessor extends DefaultCollectionProcessor {
+	/** ascending ordinals of the candidates of the last execute **/
+	protected int[] candidates = new int[0];
+
+	/** returns the ascending ordinals of the candidates of the current query **/
+	protected abstract int[] getCandidates();
+
+	/** returns the number of candidates ranked exactly by the last execute **/
+	public int getCandidateCount() {
+		return candidates.length;
+	}
+
+	public void execute() {
+		candidates = getCandidates();
+		CompiledQuery query = getCompiledQuery();
+		float[] result = new float[3];
+		int[] alignment = new int[query.getDictionarySize()];
+		for (int i : candidates) {
+			query.score(collection.get(i).getGraphcode(), result, 0, alignment);
+			collection.get(i).setMetric(new float[] {result[0], result[1], result[2]});
+		}
+	}
+
+	/** returns the ranked candidates, filled up with the remaining Graph Codes in collection order **/
+	public Vector<GraphCodeMeta> getResultList() {
+		int n = collection.size();
+		int k = topK > 0 ? Math.min(topK, n) : n;
+		TopKSelector selector = new TopKSelector(k);
+		boolean[] isCandidate = new boolean[n];
+		for (int i : candidates) {
+			isCandidate[i] = true;
+			double score = getCompositeScore(collection.get(i).getMetric());
+			if (score > 0) selector.offer(score, i);
+		}
+		totalCount = n;
+
+		Vector<GraphCodeMeta> result = new Vector<GraphCodeMeta>(k);
+		boolean[] ranked = new boolean[n];
+		for (int i : selector.getOrdinals()) {
+			result.add(collection.get(i));
+			ranked[i] = true;
+		}
+		for (int i = 0; i < n && result.size() < k; i++) {
+			if (ranked[i]) continue;
+			GraphCodeMeta meta = collection.get(i);
+			if (!isCandidate[i]) meta.setMetric(new float[] {0f, 0f, 0f});
+			result.add(meta);
+		}
+		return result;
+	}
+}
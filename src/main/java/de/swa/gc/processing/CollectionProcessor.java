@@ -11,16 +11,55 @@ public abstract class CollectionProcessor {
 	protected int operation;
 	protected GraphCode gcQuery;
 	protected String gcName;
+	/** maximum number of results, 0 returns the whole ranked collection **/
+	protected int topK = 0;
+	/** number of Graph Codes considered by the last query **/
+	protected int totalCount = 0;
+	private CompiledQuery compiledQuery;
 	
 	public void preloadIndex(Vector<GraphCodeMeta> collection) { }
+	
+	/** preloads the Graph Codes of a memory-mapped index without decoding them, they are decoded on first access **/
+	public void preloadIndex(MappedGraphCodeIndex index) {
+		preloadIndex(index.getGraphCodeMetas());
+	}
+	
 	public void setQueryObject(GraphCode gc) {
 		gcQuery = gc;
+		compiledQuery = null;
+	}
+	
+	/** returns the query object prepared for scoring, it is compiled once per query **/
+	protected CompiledQuery getCompiledQuery() {
+		if (compiledQuery == null) compiledQuery = new CompiledQuery(gcQuery);
+		return compiledQuery;
 	}
 		
 	public final void setOperation(int i) {
 		operation = i;
 	}
 	
+	/** limits the result list to the k best Graph Codes, 0 disables the limit **/
+	public void setTopK(int k) {
+		topK = k;
+	}
+	
+	public int getTopK() {
+		return topK;
+	}
+	
+	/** returns the number of Graph Codes considered by the last query, which can exceed the size of the result list **/
+	public int getTotalCount() {
+		return totalCount;
+	}
+	
+	/** returns the composite ranking score of a metric triple for the current operation **/
+	protected double getCompositeScore(float[] metric) {
+		if (operation == SIMILARITY) return metric[0] * 100000d + metric[1] * 100d + metric[2];
+		else if (operation == RECOMMENDATION) return metric[1] * 100000d + metric[0] * 100d + metric[2];
+		return 0d;
+	}
+	
 	public abstract void execute();
 	
 	public abstract Vector<GraphCodeMeta> getResultList();
@@ -0,0 +1,146 @@
+package de.swa.gc.processing;
+
+import java.util.List;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.GraphCodeMetric;
+import de.swa.gc.TermSignature;
+
+/** Query Graph Code prepared for scoring many candidates. Dictionary, term signature and the non-zero edges
+ * of the query are extracted once, so each candidate only pays for aligning the edge terms and comparing the
+ * edges. Scores are identical to GraphCodeMetric.
+ */
+public class CompiledQuery {
+	private final GraphCode gcQuery;
+	private final List<String> voc;
+	private final TermSignature signature;
+	private final int[] edgeRows, edgeColumns, edgeValues;
+	/** query dictionary indices, which take part in at least one edge **/
+	private final int[] edgeTerms;
+
+	public CompiledQuery(GraphCode gc) {
+		gcQuery = gc;
+		voc = gc.getNormalizedDictionary();
+		signature = gc.getTermSignature();
+
+		final int size = voc.size();
+		final int[] count = new int[1];
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (x != y && x < size && y < size) count[0]++;
+			}
+		});
+		edgeRows = new int[count[0]];
+		edgeColumns = new int[count[0]];
+		edgeValues = new int[count[0]];
+		final boolean[] used = new boolean[size];
+		count[0] = 0;
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (x == y || x >= size || y >= size) return;
+				edgeRows[count[0]] = x;
+				edgeColumns[count[0]] = y;
+				edgeValues[count[0]] = value;
+				used[x] = true;
+				used[y] = true;
+				count[0]++;
+			}
+		});
+		int n = 0;
+		for (boolean b : used) if (b) n++;
+		edgeTerms = new int[n];
+		n = 0;
+		for (int i = 0; i < size; i++) if (used[i]) edgeTerms[n++] = i;
+	}
+
+	/** returns the query Graph Code **/
+	public GraphCode getQuery() {
+		return gcQuery;
+	}
+
+	/** returns the size of the query's normalized dictionary **/
+	public int getDictionarySize() {
+		return voc.size();
+	}
+
+	/** returns the number of non-zero, non-diagonal query edges **/
+	public int getEdgeCount() {
+		return edgeRows.length;
+	}
+
+	/** returns the query dictionary index of the row term of an edge **/
+	public int getEdgeRow(int edge) {
+		return edgeRows[edge];
+	}
+
+	/** returns the query dictionary index of the column term of an edge **/
+	public int getEdgeColumn(int edge) {
+		return edgeColumns[edge];
+	}
+
+	/** returns the type value of an edge **/
+	public int getEdgeValue(int edge) {
+		return edgeValues[edge];
+	}
+
+	/** returns the term signature of the query **/
+	public TermSignature getTermSignature() {
+		return signature;
+	}
+
+	/** calculates the metric triple for a candidate Graph Code **/
+	public float[] score(GraphCode gc) {
+		float[] result = new float[3];
+		score(gc, result, 0, new int[voc.size()]);
+		return result;
+	}
+
+	/** calculates the metric triples for a list of candidates, result[3 * i] to result[3 * i + 2] hold the triple
+	 * of the i-th candidate **/
+	public void score(List<GraphCodeMeta> candidates, float[] result) {
+		if (result.length < candidates.size() * 3)
+			throw new IllegalArgumentException("result buffer too small for " + candidates.size() + " candidates");
+		score(candidates, 0, candidates.size(), result);
+	}
+
+	/** calculates the metric triples for the candidates from index from (inclusive) to to (exclusive), result[3 * i]
+	 * to result[3 * i + 2] hold the triple of the i-th candidate **/
+	public void score(List<GraphCodeMeta> candidates, int from, int to, float[] result) {
+		int[] alignment = new int[voc.size()];
+		for (int i = from; i < to; i++) score(candidates.get(i).getGraphcode(), result, i * 3, alignment);
+	}
+
+	/** calculates the metric triple for a candidate into result[offset] to result[offset + 2], using alignment as
+	 * scratch buffer of at least the query's dictionary size **/
+	public void score(GraphCode gc, float[] result, int offset, int[] alignment) {
+		if (voc.isEmpty()) {
+			// If query dictionary is empty, all metrics are 0
+			result[offset] = 0f;
+			result[offset + 1] = 0f;
+			result[offset + 2] = 0f;
+			return;
+		}
+		result[offset] = GraphCodeMetric.calculateNodeMetric(signature, voc.size(), gc.getTermSignature());
+
+		for (int i : edgeTerms) alignment[i] = gc.getIndexForTerm(voc.get(i));
+		int edge_metric_count = 0;
+		int edge_type = 0;
+		for (int e = 0; e < edgeRows.length; e++) {
+			int x = alignment[edgeRows[e]];
+			int y = alignment[edgeColumns[e]];
+			if (x < 0 || y < 0) continue;
+			int gc_edge;
+			try {
+				gc_edge = gc.getValue(x, y);
+			}
+			catch (Exception ex) {
+				continue;
+			}
+			if (gc_edge != 0) edge_metric_count++;
+			if (gc_edge == edgeValues[e]) edge_type++;
+		}
+		int num_of_non_zero_edges = edgeRows.length;
+		result[offset + 1] = num_of_non_zero_edges > 0 ? (float)edge_metric_count / (float)num_of_non_zero_edges : 0f;
+		result[offset + 2] = edge_metric_count > 0 ? (float)edge_type / (float)edge_metric_count : 0f;
+	}
+}
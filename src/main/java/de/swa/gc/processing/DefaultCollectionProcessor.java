@@ -1,53 +1,38 @@
 package de.swa.gc.processing;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Vector;
 
-import de.swa.gc.GraphCodeMetric;
-
 
 public class DefaultCollectionProcessor extends CollectionProcessor {
-	private Vector<GraphCodeMeta> collection;
+	protected Vector<GraphCodeMeta> collection;
 	
 	public void preloadIndex(Vector<GraphCodeMeta> collection) {
 		this.collection = collection;
 	}
 	
 	public void execute() {
-		for (GraphCodeMeta meta : collection) {
-			float[] sim = GraphCodeMetric.calculateSimilarity(gcQuery, meta.getGraphcode());
-			meta.setMetric(sim);
+		float[] result = new float[collection.size() * 3];
+		getCompiledQuery().score(collection, result);
+		setMetrics(result);
+	}
+	
+	/** assigns the metric triples of a result buffer to the collection's Graph Codes **/
+	protected void setMetrics(float[] result) {
+		for (int i = 0; i < collection.size(); i++) {
+			collection.get(i).setMetric(new float[] {result[i * 3], result[i * 3 + 1], result[i * 3 + 2]});
 		}
 	}
 
+	/** returns the ranked collection, limited to the top k Graph Codes if a limit is set **/
 	public Vector<GraphCodeMeta> getResultList() {
-		Collections.sort(collection, new Comparator<GraphCodeMeta>() {
-			public int compare(GraphCodeMeta m1, GraphCodeMeta m2) {
-				float[] metric_a = m1.getMetric();
-				float[] metric_b = m2.getMetric();
-//				System.out.println("A: " + metric_a[0] + " " + metric_a[1] + " " + metric_a[2]);
-//				System.out.println("B: " + metric_b[0] + " " + metric_b[1] + " " + metric_b[2]);
-				
-				if (operation == SIMILARITY) {
-					// calculate numeric values to support java-compatible comparison
-					float a = metric_a[0] * 100000 + metric_a[1] * 100 + metric_a[2];
-					float b = metric_b[0] * 100000 + metric_b[1] * 100 + metric_b[2];
-//					System.out.println("-> S " + (b-a));
-					return (int)(b - a);
-				}
-				else if (operation == RECOMMENDATION) {
-					// calculate numeric values to support java-compatible comparison
-					float a = metric_a[1] * 100000 + metric_a[0] * 100 + metric_a[2];
-					float b = metric_b[1] * 100000 + metric_b[0] * 100 + metric_b[2];
-//					System.out.println("-> R " + (b-a));
-					
-					return (int)(b - a);
-
-				}
-				return 0;
-			};
-		});	
-		return collection;
+		int n = collection.size();
+		int k = topK > 0 ? Math.min(topK, n) : n;
+		TopKSelector selector = new TopKSelector(k);
+		for (int i = 0; i < n; i++) selector.offer(getCompositeScore(collection.get(i).getMetric()), i);
+		totalCount = n;
+		
+		Vector<GraphCodeMeta> result = new Vector<GraphCodeMeta>(k);
+		for (int i : selector.getOrdinals()) result.add(collection.get(i));
+		return result;
 	}
 }
@@ -0,0 +1,168 @@
+package de.swa.gc.processing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.TermVocabulary;
+
+/** Inverted index over the relationships of a list of Graph Codes. For every pair of vocabulary terms it stores the
+ * ordinals of the Graph Codes with a non-zero edge between the two terms together with the edge's type value.
+ * Only edges which are visible through GraphCode.getEdgeValueForTerms are indexed, i.e. diagonal cells and rows
+ * of duplicate dictionary terms are skipped.
+ */
+public class EdgeIndex {
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[] slots;
+	private int count;
+	private int[][] ordinals;
+	private int[][] types;
+
+	/** builds the edge index for a list of Graph Codes, ordinals refer to the position in the list **/
+	public EdgeIndex(List<GraphCode> graphCodes) {
+		keys = new long[64];
+		Arrays.fill(keys, EMPTY);
+		slots = new int[64];
+		int[] sizes = new int[16];
+		long[][] edges = new long[graphCodes.size()][];
+		int[][] values = new int[graphCodes.size()][];
+
+		// first pass: collect the visible edges and count them per term pair
+		for (int i = 0; i < graphCodes.size(); i++) {
+			collectEdges(graphCodes.get(i), edges, values, i);
+			for (long key : edges[i]) {
+				int p = findOrAdd(key);
+				if (p == sizes.length) sizes = Arrays.copyOf(sizes, p * 2);
+				sizes[p]++;
+			}
+		}
+		ordinals = new int[count][];
+		types = new int[count][];
+		for (int p = 0; p < count; p++) {
+			ordinals[p] = new int[sizes[p]];
+			types[p] = new int[sizes[p]];
+		}
+		// second pass: fill the postings in ascending ordinal order
+		int[] fill = new int[count];
+		for (int i = 0; i < edges.length; i++) {
+			for (int e = 0; e < edges[i].length; e++) {
+				int p = find(edges[i][e]);
+				ordinals[p][fill[p]] = i;
+				types[p][fill[p]] = values[i][e];
+				fill[p]++;
+			}
+		}
+	}
+
+	private static void collectEdges(final GraphCode gc, long[][] edges, int[][] values, int ordinal) {
+		final TermVocabulary vocabulary = TermVocabulary.getInstance();
+		final int[] ids = new int[gc.getDictionarySize()];
+		for (int x = 0; x < ids.length; x++) {
+			String term = gc.getTermForIndex(x).toLowerCase();
+			ids[x] = gc.getIndexForTerm(term) == x && term.length() != 1 ? vocabulary.getId(term) : -1;
+		}
+		final long[][] e = { new long[16] };
+		final int[][] v = { new int[16] };
+		final int[] n = new int[1];
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (x == y || x >= ids.length || y >= ids.length || ids[x] < 0 || ids[y] < 0) return;
+				if (n[0] == e[0].length) {
+					e[0] = Arrays.copyOf(e[0], n[0] * 2);
+					v[0] = Arrays.copyOf(v[0], n[0] * 2);
+				}
+				e[0][n[0]] = key(ids[x], ids[y]);
+				v[0][n[0]] = value;
+				n[0]++;
+			}
+		});
+		edges[ordinal] = Arrays.copyOf(e[0], n[0]);
+		values[ordinal] = Arrays.copyOf(v[0], n[0]);
+	}
+
+	/** returns the number of indexed term pairs **/
+	public int size() {
+		return count;
+	}
+
+	/** returns the posting number of a term pair or -1, if no Graph Code relates the two terms **/
+	public int find(int termA, int termB) {
+		return find(key(termA, termB));
+	}
+
+	/** returns the ascending Graph Code ordinals of a posting **/
+	public int[] getOrdinals(int posting) {
+		return ordinals[posting];
+	}
+
+	/** returns the edge type values of a posting, aligned with its ordinals **/
+	public int[] getTypes(int posting) {
+		return types[posting];
+	}
+
+	/** returns the ordinals of all Graph Codes relating two terms with the given type, e.g. "person" next-to "car" **/
+	public int[] getGraphCodes(String termA, String termB, int type) {
+		TermVocabulary vocabulary = TermVocabulary.getInstance();
+		int a = vocabulary.lookup(termA.toLowerCase());
+		int b = vocabulary.lookup(termB.toLowerCase());
+		int p = a < 0 || b < 0 ? -1 : find(a, b);
+		if (p < 0) return new int[0];
+		int n = 0;
+		int[] result = new int[ordinals[p].length];
+		for (int i = 0; i < result.length; i++) {
+			if (types[p][i] == type) result[n++] = ordinals[p][i];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	private int find(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) return slots[i];
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int findOrAdd(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) return slots[i];
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		slots[i] = count;
+		count++;
+		if (count * 2 > keys.length) rehash();
+		return count - 1;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		slots = new int[keys.length];
+		int mask = keys.length - 1;
+		for (int s = 0; s < oldKeys.length; s++) {
+			if (oldKeys[s] == EMPTY) continue;
+			int i = hash(oldKeys[s]) & mask;
+			while (keys[i] != EMPTY) i = (i + 1) & mask;
+			keys[i] = oldKeys[s];
+			slots[i] = oldSlots[s];
+		}
+	}
+
+	private static long key(int termA, int termB) {
+		return ((long)termA << 32) | (termB & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,66 @@
+package de.swa.gc.processing;
+
+import java.util.Vector;
+
+import de.swa.gc.GraphCode;
+
+/** Collection Processor, which computes the metric triple entirely from indexes. The node metric is counted on the
+ * term postings, edge and edge type metric on the postings of an EdgeIndex, so candidate matrices are not accessed
+ * during a query. The ranking is identical to DefaultCollectionProcessor.
+ * Select it with collectionProcessor = de.swa.gc.processing.EdgeIndexCollectionProcessor
+ */
+public class EdgeIndexCollectionProcessor extends InvertedIndexCollectionProcessor {
+	protected EdgeIndex edgeIndex;
+	private int[] nodeCounts = new int[0], edgeCounts = new int[0], typeCounts = new int[0];
+
+	protected void buildIndex(Vector<GraphCodeMeta> collection) {
+		super.buildIndex(collection);
+		Vector<GraphCode> graphCodes = new Vector<GraphCode>(collection.size());
+		for (GraphCodeMeta meta : collection) graphCodes.add(meta.getGraphcode());
+		edgeIndex = new EdgeIndex(graphCodes);
+		nodeCounts = new int[collection.size()];
+		edgeCounts = new int[collection.size()];
+		typeCounts = new int[collection.size()];
+	}
+
+	/** returns the edge index of the collection **/
+	public EdgeIndex getEdgeIndex() {
+		return edgeIndex;
+	}
+
+	public void execute() {
+		collectMatches();
+		CompiledQuery query = getCompiledQuery();
+		int[] ids = query.getQuery().getTermIds();
+
+		// node metric: matching non-blank terms
+		countMatchingTerms(nodeCounts);
+		// edge and edge type metric: matching relationships and their types
+		for (int e = 0; e < query.getEdgeCount(); e++) {
+			int p = edgeIndex.find(ids[query.getEdgeRow(e)], ids[query.getEdgeColumn(e)]);
+			if (p < 0) continue;
+			int[] ordinals = edgeIndex.getOrdinals(p);
+			int[] types = edgeIndex.getTypes(p);
+			int value = query.getEdgeValue(e);
+			for (int k = 0; k < ordinals.length; k++) {
+				edgeCounts[ordinals[k]]++;
+				if (types[k] == value) typeCounts[ordinals[k]]++;
+			}
+		}
+
+		int size = query.getDictionarySize();
+		int numEdges = query.getEdgeCount();
+		for (int o : matches) {
+			float[] metric = new float[3];
+			if (size > 0) {
+				metric[0] = (float)Math.min(nodeCounts[o], size) / (float)size;
+				metric[1] = numEdges > 0 ? (float)edgeCounts[o] / (float)numEdges : 0f;
+				metric[2] = edgeCounts[o] > 0 ? (float)typeCounts[o] / (float)edgeCounts[o] : 0f;
+			}
+			collection.get(o).setMetric(metric);
+			nodeCounts[o] = 0;
+			edgeCounts[o] = 0;
+			typeCounts[o] = 0;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package de.swa.gc.processing;
+
+import java.util.List;
+
+import de.swa.gc.GraphCode;
+
+/** Deterministic embedding of a Graph Code into a fixed-length float vector by feature hashing. Every non-blank
+ * normalized term and every (term, term, type) relationship is hashed to a dimension and a sign. The term features
+ * and the relationship features are each scaled to a fixed weight, so that the cosine of two embeddings is dominated
+ * by the matching terms like the Graph Code Metric. The hash only depends on the term Strings, so embeddings can be
+ * persisted and compared across runs. Embeddings are normalized to unit length, Graph Codes without terms are
+ * embedded as zero vector.
+ */
+public class GraphCodeEmbedding {
+	public static final int DEFAULT_DIMENSION = 256;
+	/** weight of the relationship features relative to the term features **/
+	public static final float EDGE_WEIGHT = 0.5f;
+
+	private final int dimension;
+
+	public GraphCodeEmbedding() {
+		this(DEFAULT_DIMENSION);
+	}
+
+	public GraphCodeEmbedding(int dimension) {
+		if (dimension < 1) throw new IllegalArgumentException("dimension must be positive");
+		this.dimension = dimension;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	/** returns the unit length embedding of a Graph Code **/
+	public float[] embed(GraphCode gc) {
+		final List<String> voc = gc.getNormalizedDictionary();
+		final long[] termHashes = new long[voc.size()];
+		float[] nodes = new float[dimension];
+		for (int i = 0; i < voc.size(); i++) {
+			termHashes[i] = hash(voc.get(i));
+			if (voc.get(i).trim().equals("")) continue;
+			add(nodes, termHashes[i], 1f);
+		}
+
+		final float[] edges = new float[dimension];
+		final int size = voc.size();
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (x == y || x >= size || y >= size) return;
+				add(edges, mix(mix(termHashes[x] * 31 + termHashes[y]) + value), 1f);
+			}
+		});
+
+		float[] v = new float[dimension];
+		scale(nodes, 1f, v);
+		scale(edges, EDGE_WEIGHT, v);
+		scale(v, 1f, null);
+		return v;
+	}
+
+	private void add(float[] v, long hash, float weight) {
+		int d = (int)((hash >>> 1) % dimension);
+		v[d] += (hash & 1) == 0 ? weight : -weight;
+	}
+
+	/** scales v to the given length and adds it to target, v is scaled in place if target is null **/
+	private static void scale(float[] v, float length, float[] target) {
+		double norm = 0;
+		for (float f : v) norm += f * f;
+		if (norm == 0) return;
+		float factor = (float)(length / Math.sqrt(norm));
+		for (int i = 0; i < v.length; i++) {
+			if (target == null) v[i] *= factor;
+			else target[i] += v[i] * factor;
+		}
+	}
+
+	/** returns the dot product, i.e. the cosine of two unit length embeddings **/
+	public static float dot(float[] a, float[] b) {
+		float sum = 0f;
+		for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+		return sum;
+	}
+
+	/** 64 bit FNV-1a hash of a term **/
+	private static long hash(String s) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return mix(h);
+	}
+
+	/** finalizer of SplitMix64 **/
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
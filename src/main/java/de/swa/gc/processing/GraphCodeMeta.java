@@ -1,6 +1,7 @@
 package de.swa.gc.processing;
 
 import de.swa.gc.GraphCode;
+import de.swa.gc.TermSignature;
 
 public class GraphCodeMeta {
 	private String fileName;
@@ -24,6 +25,10 @@ public class GraphCodeMeta {
 	public void setMetric(float[] metric) {
 		this.metric = metric;
 	}
+	/** returns the term signature of the Graph Code, which is used to compute the node metric **/
+	public TermSignature getTermSignature() {
+		return getGraphcode().getTermSignature();
+	}
 	public GraphCode getGraphcode() {
 		return graphcode;
 	}
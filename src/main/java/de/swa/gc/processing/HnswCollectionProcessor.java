@@ -0,0 +1,99 @@
+package de.swa.gc.processing;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+import de.swa.gc.GraphCode;
+import de.swa.ui.MMFGCollection;
+
+/** Collection Processor for approximate similarity search. The Graph Codes are embedded with GraphCodeEmbedding and
+ * inserted into a HnswIndex, whose nearest neighbours of the query's embedding are ranked exactly with the Graph
+ * Code Metric. If vectorIndex is enabled, the index is persisted in the Graph Code repository and shared with the
+ * collection, which inserts new and replaced MMFGs, otherwise every processor keeps its own index in memory.
+ * Select it with collectionProcessor = de.swa.gc.processing.HnswCollectionProcessor
+ */
+public class HnswCollectionProcessor extends CandidateCollectionProcessor {
+	/** number of candidates searched, if no top k limit is set **/
+	public static final int DEFAULT_CANDIDATES = 200;
+	/** minimum number of candidates per result of a top k query **/
+	public static final int CANDIDATES_PER_RESULT = 4;
+
+	private final GraphCodeEmbedding embedding;
+	private final HnswIndex index;
+	private int candidateCount = DEFAULT_CANDIDATES;
+	/** ordinals of the collection's Graph Code names **/
+	private HashMap<String, Integer> ordinals = new HashMap<String, Integer>();
+	/** Graph Codes embedded into the index by name **/
+	private HashMap<String, GraphCode> embedded = new HashMap<String, GraphCode>();
+	/** Graph Codes the ordinals have been built for **/
+	private GraphCode[] indexed = new GraphCode[0];
+
+	/** creates the processor with the persisted index of the Graph Code repository, if vectorIndex is enabled **/
+	public HnswCollectionProcessor() {
+		this(openIndex());
+	}
+
+	public HnswCollectionProcessor(HnswIndex index) {
+		this.index = index;
+		embedding = new GraphCodeEmbedding(index.getDimension());
+	}
+
+	private static HnswIndex openIndex() {
+		HnswIndex index = MMFGCollection.getVectorIndex();
+		return index != null ? index : new HnswIndex(GraphCodeEmbedding.DEFAULT_DIMENSION);
+	}
+
+	public HnswIndex getIndex() {
+		return index;
+	}
+
+	/** sets the number of candidates searched, if no top k limit is set **/
+	public void setCandidateCount(int candidates) {
+		candidateCount = Math.max(1, candidates);
+	}
+
+	/** inserts the collection's Graph Codes missing in the index and Graph Codes, which have changed since they have
+	 * been inserted by this processor **/
+	public void preloadIndex(Vector<GraphCodeMeta> collection) {
+		super.preloadIndex(collection);
+		if (isIndexed(collection)) return;
+		indexed = new GraphCode[collection.size()];
+		ordinals = new HashMap<String, Integer>(collection.size() * 2);
+		for (int i = 0; i < indexed.length; i++) {
+			GraphCodeMeta meta = collection.get(i);
+			indexed[i] = meta.getGraphcode();
+			ordinals.put(meta.getFileName(), i);
+			GraphCode previous = embedded.put(meta.getFileName(), indexed[i]);
+			if (index.contains(meta.getFileName()) && (previous == null || previous == indexed[i])) continue;
+			try {
+				index.insert(meta.getFileName(), embedding.embed(indexed[i]));
+			} catch (Exception x) {
+				x.printStackTrace();
+			}
+		}
+	}
+
+	private boolean isIndexed(Vector<GraphCodeMeta> collection) {
+		if (indexed.length != collection.size()) return false;
+		for (int i = 0; i < indexed.length; i++) {
+			if (indexed[i] != collection.get(i).getGraphcode()) return false;
+		}
+		return true;
+	}
+
+	protected int[] getCandidates() {
+		int k = topK > 0 ? Math.max(topK * CANDIDATES_PER_RESULT, candidateCount) : candidateCount;
+		List<String> keys = index.search(embedding.embed(gcQuery), k);
+		int[] result = new int[keys.size()];
+		int count = 0;
+		for (String key : keys) {
+			Integer o = ordinals.get(key);
+			if (o != null) result[count++] = o;
+		}
+		result = Arrays.copyOf(result, count);
+		Arrays.sort(result);
+		return result;
+	}
+}
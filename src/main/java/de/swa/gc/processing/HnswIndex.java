@@ -0,0 +1,555 @@
+package de.swa.gc.processing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/** Hierarchical Navigable Small World graph over unit length vectors, e.g. GraphCodeEmbeddings, for approximate
+ * nearest neighbour search by cosine similarity. Vectors are inserted incrementally under a String key. Replacing
+ * or removing a key marks its node as deleted, the node stays in the graph for navigation but is not returned.
+ * A persisted index is an append-only file: after the header (magic bytes 0x89 'G' 'C' 'H', version, dimension, M
+ * and efConstruction) follows one record per inserted node with its vector and neighbours, one record per changed
+ * neighbour list and one per deleted node. Each record is stored as length, type, payload and CRC32, a torn last
+ * record is truncated when the file is opened. compact() rewrites the file with one record per node.
+ */
+public class HnswIndex {
+	public static final byte[] MAGIC = { (byte)0x89, 'G', 'C', 'H' };
+	public static final int VERSION = 1;
+	public static final String FILE_NAME = "graphcodes.hnsw";
+	public static final int DEFAULT_M = 16;
+	public static final int DEFAULT_EF_CONSTRUCTION = 100;
+	public static final int DEFAULT_EF_SEARCH = 64;
+	private static final int NODE = 1, LINKS = 2, DELETE = 3;
+	private static final int MAX_LEVEL = 16;
+	/** bytes of changed neighbour lists tolerated in the index file before it is compacted when opened **/
+	private static final long COMPACTION_SLACK = 1 << 20;
+	private static final Hashtable<String, HnswIndex> opened = new Hashtable<String, HnswIndex>();
+
+	private final int dimension, m, maxM0, efConstruction;
+	private final double levelFactor;
+	private int efSearch = DEFAULT_EF_SEARCH;
+	private String[] keys = new String[16];
+	private float[][] vectors = new float[16][];
+	/** links[node][level] holds the neighbours of a node on a level **/
+	private int[][][] links = new int[16][][];
+	private final BitSet deleted = new BitSet();
+	private final HashMap<String, Integer> nodes = new HashMap<String, Integer>();
+	private int count, entryPoint = -1, maxLevel = -1;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private File file;
+	private DataOutputStream log;
+	/** bytes of the index file and of its node records, i.e. the size of a compacted file **/
+	private long logBytes, nodeBytes;
+
+	/** creates an index, which is kept in memory only **/
+	public HnswIndex(int dimension) {
+		this(dimension, DEFAULT_M, DEFAULT_EF_CONSTRUCTION);
+	}
+
+	/** creates an index, which is kept in memory only, with M neighbours per node and level **/
+	public HnswIndex(int dimension, int m, int efConstruction) {
+		this.dimension = dimension;
+		this.m = Math.max(2, m);
+		this.maxM0 = this.m * 2;
+		this.efConstruction = Math.max(efConstruction, this.m);
+		levelFactor = 1 / Math.log(this.m);
+	}
+
+	/** opens the index persisted in a file or creates it with default parameters. An index file is opened only once,
+	 * further calls return the same instance **/
+	public static HnswIndex open(File f, int dimension) throws IOException {
+		String path = f.getCanonicalPath();
+		synchronized (opened) {
+			HnswIndex index = opened.get(path);
+			if (index == null) {
+				index = load(f, dimension);
+				opened.put(path, index);
+			}
+			if (index.dimension != dimension) throw new IOException("index " + f + " has dimension " + index.dimension);
+			return index;
+		}
+	}
+
+	private static HnswIndex load(File f, int dimension) throws IOException {
+		if (!f.exists() || f.length() == 0) {
+			HnswIndex index = new HnswIndex(dimension);
+			index.file = f;
+			index.writeFile(f);
+			index.openLog();
+			return index;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+		HnswIndex index;
+		long valid;
+		try {
+			for (byte b : MAGIC) {
+				if (in.read() != (b & 0xFF)) throw new IOException("not a HNSW index: " + f);
+			}
+			int version = in.read();
+			if (version != VERSION) throw new IOException("unsupported HNSW index version " + version);
+			index = new HnswIndex(in.readInt(), in.readInt(), in.readInt());
+			valid = MAGIC.length + 1 + 12;
+			while (true) {
+				byte[] record;
+				int type;
+				try {
+					int length = in.readInt();
+					if (length < 1) break;
+					record = new byte[length];
+					in.readFully(record);
+					int checksum = in.readInt();
+					CRC32 crc = new CRC32();
+					crc.update(record);
+					if (checksum != (int)crc.getValue()) break;
+					type = record[0];
+				}
+				catch (EOFException x) {
+					break;
+				}
+				index.replay(type, new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1)));
+				valid += 8 + record.length;
+				if (type == NODE) index.nodeBytes += 8 + record.length;
+			}
+		}
+		finally {
+			in.close();
+		}
+		if (valid < f.length()) {
+			RandomAccessFile raf = new RandomAccessFile(f, "rw");
+			try {
+				raf.setLength(valid);
+			}
+			finally {
+				raf.close();
+			}
+		}
+		index.file = f;
+		index.logBytes = valid;
+		if (index.logBytes > 4 * index.nodeBytes + COMPACTION_SLACK) index.writeFile(f);
+		index.openLog();
+		return index;
+	}
+
+	private void openLog() throws IOException {
+		log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+	}
+
+	private void replay(int type, DataInputStream in) throws IOException {
+		if (type == NODE) {
+			byte[] key = new byte[in.readInt()];
+			in.readFully(key);
+			int level = in.readInt();
+			float[] vector = new float[dimension];
+			for (int i = 0; i < dimension; i++) vector[i] = in.readFloat();
+			int id = addNode(new String(key, StandardCharsets.UTF_8), vector, level);
+			for (int lc = 0; lc <= level; lc++) links[id][lc] = readLinks(in);
+			if (level > maxLevel) {
+				maxLevel = level;
+				entryPoint = id;
+			}
+		}
+		else if (type == LINKS) {
+			int id = in.readInt();
+			int level = in.readInt();
+			links[id][level] = readLinks(in);
+		}
+		else if (type == DELETE) {
+			deleteNode(in.readInt());
+		}
+		else throw new IOException("unknown HNSW record type " + type);
+	}
+
+	private static int[] readLinks(DataInputStream in) throws IOException {
+		int[] l = new int[in.readInt()];
+		for (int i = 0; i < l.length; i++) l[i] = in.readInt();
+		return l;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	/** sets the size of the dynamic candidate list of searches, larger values increase recall and latency **/
+	public void setEfSearch(int ef) {
+		efSearch = Math.max(1, ef);
+	}
+
+	/** returns the number of keys, which are not deleted **/
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return nodes.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public boolean contains(String key) {
+		lock.readLock().lock();
+		try {
+			return nodes.containsKey(key);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/** inserts the vector of a key, a vector previously inserted for the key is replaced **/
+	public void insert(String key, float[] vector) throws IOException {
+		if (vector.length != dimension) throw new IllegalArgumentException("vector of dimension " + vector.length + " instead of " + dimension);
+		lock.writeLock().lock();
+		try {
+			ByteArrayOutputStream records = new ByteArrayOutputStream();
+			Integer old = nodes.get(key);
+			if (old != null) {
+				deleteNode(old);
+				writeDelete(records, old);
+			}
+			int level = getLevel(key);
+			int id = addNode(key, vector.clone(), level);
+			ArrayList<int[]> changed = new ArrayList<int[]>();
+			if (entryPoint >= 0) {
+				int ep = entryPoint;
+				for (int lc = maxLevel; lc > level; lc--) ep = greedySearch(vector, ep, lc);
+				List<Candidate> entries = Collections.singletonList(new Candidate(ep, distance(vector, vectors[ep])));
+				for (int lc = Math.min(level, maxLevel); lc >= 0; lc--) {
+					List<Candidate> w = searchLayer(vector, entries, efConstruction, lc);
+					links[id][lc] = selectNeighbors(vector, w, m);
+					for (int n : links[id][lc]) {
+						connect(n, id, lc);
+						changed.add(new int[] { n, lc });
+					}
+					entries = w;
+				}
+			}
+			if (level > maxLevel) {
+				maxLevel = level;
+				entryPoint = id;
+			}
+			int before = records.size();
+			writeNode(records, id);
+			nodeBytes += records.size() - before;
+			for (int[] c : changed) writeLinks(records, c[0], c[1]);
+			append(records);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** removes a key from the search results **/
+	public void remove(String key) throws IOException {
+		lock.writeLock().lock();
+		try {
+			Integer id = nodes.get(key);
+			if (id == null) return;
+			deleteNode(id);
+			ByteArrayOutputStream records = new ByteArrayOutputStream();
+			writeDelete(records, id);
+			append(records);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** returns the keys of the approximately k most similar vectors, most similar first **/
+	public List<String> search(float[] vector, int k) {
+		lock.readLock().lock();
+		try {
+			ArrayList<String> result = new ArrayList<String>();
+			if (entryPoint < 0 || k <= 0) return result;
+			int ep = entryPoint;
+			for (int lc = maxLevel; lc > 0; lc--) ep = greedySearch(vector, ep, lc);
+			List<Candidate> entries = Collections.singletonList(new Candidate(ep, distance(vector, vectors[ep])));
+			for (Candidate c : searchLayer(vector, entries, Math.max(efSearch, k), 0)) {
+				if (deleted.get(c.id)) continue;
+				result.add(keys[c.id]);
+				if (result.size() == k) break;
+			}
+			return result;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private int addNode(String key, float[] vector, int level) {
+		if (count == keys.length) {
+			keys = Arrays.copyOf(keys, count * 2);
+			vectors = Arrays.copyOf(vectors, count * 2);
+			links = Arrays.copyOf(links, count * 2);
+		}
+		int id = count++;
+		keys[id] = key;
+		vectors[id] = vector;
+		links[id] = new int[level + 1][0];
+		Integer old = nodes.put(key, id);
+		if (old != null) deleted.set(old);
+		return id;
+	}
+
+	private void deleteNode(int id) {
+		deleted.set(id);
+		Integer current = nodes.get(keys[id]);
+		if (current != null && current == id) nodes.remove(keys[id]);
+	}
+
+	/** returns the level of a key, drawn from an exponential distribution with a hash of the key as random number **/
+	private int getLevel(String key) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+		double u = ((h >>> 11) + 1) * 0x1.0p-53;
+		return Math.min(MAX_LEVEL, (int)(-Math.log(u) * levelFactor));
+	}
+
+	/** adds a link from node n to node id and shrinks the neighbours of n, if they exceed the maximum **/
+	private void connect(int n, int id, int level) {
+		int[] l = links[n][level];
+		int[] extended = Arrays.copyOf(l, l.length + 1);
+		extended[l.length] = id;
+		int max = level == 0 ? maxM0 : m;
+		if (extended.length <= max) {
+			links[n][level] = extended;
+			return;
+		}
+		ArrayList<Candidate> candidates = new ArrayList<Candidate>(extended.length);
+		for (int c : extended) candidates.add(new Candidate(c, distance(vectors[n], vectors[c])));
+		Collections.sort(candidates, CLOSEST_FIRST);
+		links[n][level] = selectNeighbors(vectors[n], candidates, max);
+	}
+
+	/** selects up to max neighbours from candidates sorted by distance, preferring candidates which are closer to
+	 * the vector than to the already selected neighbours, and fills up with the closest remaining candidates **/
+	private int[] selectNeighbors(float[] vector, List<Candidate> candidates, int max) {
+		int[] result = new int[Math.min(max, candidates.size())];
+		boolean[] selected = new boolean[candidates.size()];
+		int n = 0;
+		for (int i = 0; i < candidates.size() && n < result.length; i++) {
+			Candidate c = candidates.get(i);
+			boolean diverse = true;
+			for (int r = 0; r < n && diverse; r++) diverse = distance(vectors[c.id], vectors[result[r]]) >= c.distance;
+			if (diverse) {
+				result[n++] = c.id;
+				selected[i] = true;
+			}
+		}
+		for (int i = 0; i < candidates.size() && n < result.length; i++) {
+			if (!selected[i]) result[n++] = candidates.get(i).id;
+		}
+		return result;
+	}
+
+	private int greedySearch(float[] vector, int ep, int level) {
+		float best = distance(vector, vectors[ep]);
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int n : links[ep][level]) {
+				float d = distance(vector, vectors[n]);
+				if (d < best) {
+					best = d;
+					ep = n;
+					improved = true;
+				}
+			}
+		}
+		return ep;
+	}
+
+	/** returns up to ef nodes closest to the vector on a level, sorted by distance **/
+	private List<Candidate> searchLayer(float[] vector, List<Candidate> entries, int ef, int level) {
+		BitSet visited = new BitSet(count);
+		PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>(Math.max(ef, 1), CLOSEST_FIRST);
+		PriorityQueue<Candidate> results = new PriorityQueue<Candidate>(Math.max(ef, 1), FURTHEST_FIRST);
+		for (Candidate e : entries) {
+			if (visited.get(e.id)) continue;
+			visited.set(e.id);
+			candidates.add(e);
+			results.add(e);
+			if (results.size() > ef) results.poll();
+		}
+		while (!candidates.isEmpty()) {
+			Candidate c = candidates.poll();
+			if (results.size() >= ef && c.distance > results.peek().distance) break;
+			for (int n : links[c.id][level]) {
+				if (visited.get(n)) continue;
+				visited.set(n);
+				float d = distance(vector, vectors[n]);
+				if (results.size() < ef || d < results.peek().distance) {
+					Candidate nc = new Candidate(n, d);
+					candidates.add(nc);
+					results.add(nc);
+					if (results.size() > ef) results.poll();
+				}
+			}
+		}
+		ArrayList<Candidate> sorted = new ArrayList<Candidate>(results);
+		Collections.sort(sorted, CLOSEST_FIRST);
+		return sorted;
+	}
+
+	private static float distance(float[] a, float[] b) {
+		return 1f - GraphCodeEmbedding.dot(a, b);
+	}
+
+	private static class Candidate {
+		final int id;
+		final float distance;
+
+		Candidate(int id, float distance) {
+			this.id = id;
+			this.distance = distance;
+		}
+	}
+
+	private static final Comparator<Candidate> CLOSEST_FIRST = new Comparator<Candidate>() {
+		public int compare(Candidate a, Candidate b) {
+			int c = Float.compare(a.distance, b.distance);
+			return c != 0 ? c : Integer.compare(a.id, b.id);
+		}
+	};
+
+	private static final Comparator<Candidate> FURTHEST_FIRST = new Comparator<Candidate>() {
+		public int compare(Candidate a, Candidate b) {
+			return CLOSEST_FIRST.compare(b, a);
+		}
+	};
+
+	private void writeNode(ByteArrayOutputStream records, int id) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(b);
+		out.write(NODE);
+		byte[] key = keys[id].getBytes(StandardCharsets.UTF_8);
+		out.writeInt(key.length);
+		out.write(key);
+		out.writeInt(links[id].length - 1);
+		for (float f : vectors[id]) out.writeFloat(f);
+		for (int[] l : links[id]) writeLinks(out, l);
+		writeRecord(records, b.toByteArray());
+	}
+
+	private void writeLinks(ByteArrayOutputStream records, int id, int level) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(b);
+		out.write(LINKS);
+		out.writeInt(id);
+		out.writeInt(level);
+		writeLinks(out, links[id][level]);
+		writeRecord(records, b.toByteArray());
+	}
+
+	private static void writeLinks(DataOutputStream out, int[] l) throws IOException {
+		out.writeInt(l.length);
+		for (int n : l) out.writeInt(n);
+	}
+
+	private void writeDelete(ByteArrayOutputStream records, int id) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(b);
+		out.write(DELETE);
+		out.writeInt(id);
+		writeRecord(records, b.toByteArray());
+	}
+
+	private static void writeRecord(ByteArrayOutputStream records, byte[] record) throws IOException {
+		DataOutputStream out = new DataOutputStream(records);
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		out.writeInt(record.length);
+		out.write(record);
+		out.writeInt((int)crc.getValue());
+	}
+
+	private void append(ByteArrayOutputStream records) throws IOException {
+		if (log == null) return;
+		records.writeTo(log);
+		log.flush();
+		logBytes += records.size();
+	}
+
+	/** rewrites the index file with one record per node **/
+	public void compact() throws IOException {
+		if (file == null) return;
+		lock.writeLock().lock();
+		try {
+			log.close();
+			writeFile(file);
+			openLog();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void writeFile(File f) throws IOException {
+		File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.write(MAGIC);
+			out.write(VERSION);
+			out.writeInt(dimension);
+			out.writeInt(m);
+			out.writeInt(efConstruction);
+			logBytes = MAGIC.length + 1 + 12;
+			nodeBytes = 0;
+			ByteArrayOutputStream records = new ByteArrayOutputStream();
+			for (int id = 0; id < count; id++) {
+				records.reset();
+				writeNode(records, id);
+				nodeBytes += records.size();
+				if (deleted.get(id)) writeDelete(records, id);
+				logBytes += records.size();
+				records.writeTo(out);
+			}
+		}
+		finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** flushes and closes the index file, a closed index can no longer be opened with open() **/
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (log != null) log.close();
+			log = null;
+			if (file != null) opened.remove(file.getCanonicalPath());
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
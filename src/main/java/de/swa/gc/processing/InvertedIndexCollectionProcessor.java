@@ -0,0 +1,144 @@
+package de.swa.gc.processing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import de.swa.gc.GraphCode;
+
+/** Collection Processor, which uses an inverted index from vocabulary terms to the Graph Codes containing them.
+ * Only Graph Codes sharing at least one term with the query are scored, all other Graph Codes have the metric
+ * {0, 0, 0} and are ranked behind them in collection order. The ranking is identical to DefaultCollectionProcessor.
+ * Select it with collectionProcessor = de.swa.gc.processing.InvertedIndexCollectionProcessor
+ */
+public class InvertedIndexCollectionProcessor extends DefaultCollectionProcessor {
+	/** postings[termId] holds the ascending ordinals of the Graph Codes containing the term **/
+	protected int[][] postings = new int[0][];
+	/** Graph Codes the index has been built for **/
+	private GraphCode[] indexed = new GraphCode[0];
+	/** ascending ordinals of the Graph Codes scored by the last execute **/
+	protected int[] matches = new int[0];
+	private boolean[] matched = new boolean[0];
+
+	public void preloadIndex(Vector<GraphCodeMeta> collection) {
+		super.preloadIndex(collection);
+		if (!isIndexed(collection)) buildIndex(collection);
+	}
+
+	private boolean isIndexed(Vector<GraphCodeMeta> collection) {
+		if (indexed.length != collection.size()) return false;
+		for (int i = 0; i < indexed.length; i++) {
+			if (indexed[i] != collection.get(i).getGraphcode()) return false;
+		}
+		return true;
+	}
+
+	/** builds the term postings for a collection **/
+	protected void buildIndex(Vector<GraphCodeMeta> collection) {
+		int n = collection.size();
+		indexed = new GraphCode[n];
+		int maxId = -1;
+		for (int i = 0; i < n; i++) {
+			indexed[i] = collection.get(i).getGraphcode();
+			for (int id : indexed[i].getTermIds()) maxId = Math.max(maxId, id);
+		}
+		int[] counts = new int[maxId + 1];
+		for (GraphCode gc : indexed) {
+			for (int id : gc.getTermIds()) counts[id]++;
+		}
+		postings = new int[maxId + 1][];
+		for (int id = 0; id <= maxId; id++) postings[id] = new int[counts[id]];
+		int[] fill = new int[maxId + 1];
+		for (int i = 0; i < n; i++) {
+			for (int id : indexed[i].getTermIds()) postings[id][fill[id]++] = i;
+		}
+		matched = new boolean[n];
+		matches = new int[0];
+	}
+
+	/** returns the postings of a vocabulary term **/
+	protected int[] getPostings(int termId) {
+		if (termId < 0 || termId >= postings.length) return new int[0];
+		return postings[termId];
+	}
+
+	public void execute() {
+		collectMatches();
+		CompiledQuery query = getCompiledQuery();
+		float[] result = new float[3];
+		int[] alignment = new int[query.getDictionarySize()];
+		for (int i : matches) {
+			query.score(collection.get(i).getGraphcode(), result, 0, alignment);
+			collection.get(i).setMetric(new float[] {result[0], result[1], result[2]});
+		}
+	}
+
+	/** computes the union of the query terms' postings **/
+	protected void collectMatches() {
+		for (int i : matches) matched[i] = false;
+		int[] union = new int[16];
+		int count = 0;
+		for (int id : gcQuery.getTermIds()) {
+			for (int i : getPostings(id)) {
+				if (matched[i]) continue;
+				matched[i] = true;
+				if (count == union.length) union = Arrays.copyOf(union, count * 2);
+				union[count++] = i;
+			}
+		}
+		matches = Arrays.copyOf(union, count);
+		Arrays.sort(matches);
+	}
+
+	/** adds the number of matching non-blank query terms to counts[ordinal] for every matching Graph Code **/
+	protected void countMatchingTerms(int[] counts) {
+		List<String> voc = gcQuery.getNormalizedDictionary();
+		int[] ids = gcQuery.getTermIds();
+		for (int i = 0; i < ids.length; i++) {
+			if (voc.get(i).trim().equals("")) continue;
+			for (int o : getPostings(ids[i])) counts[o]++;
+		}
+	}
+
+	/** returns the ranked collection, Graph Codes without matching terms are appended in collection order **/
+	public Vector<GraphCodeMeta> getResultList() {
+		int k = topK > 0 ? Math.min(topK, collection.size()) : collection.size();
+		// every metric is non-negative, so only matching Graph Codes with a positive score rank before the others
+		TopKSelector selector = new TopKSelector(k);
+		for (int i : matches) {
+			double score = getCompositeScore(collection.get(i).getMetric());
+			if (score > 0) selector.offer(score, i);
+		}
+		return toResultList(selector, k);
+	}
+
+	/** returns the Graph Codes selected with a positive score, filled up to k with the remaining Graph Codes in
+	 * collection order **/
+	protected Vector<GraphCodeMeta> toResultList(TopKSelector selector, int k) {
+		int n = collection.size();
+		totalCount = n;
+		Vector<GraphCodeMeta> result = new Vector<GraphCodeMeta>(k);
+		boolean[] ranked = new boolean[n];
+		for (int i : selector.getOrdinals()) {
+			result.add(collection.get(i));
+			ranked[i] = true;
+		}
+		for (int i = 0; i < n && result.size() < k; i++) {
+			if (ranked[i]) continue;
+			result.add(getUnrankedGraphCode(i));
+		}
+		return result;
+	}
+
+	/** returns a Graph Code, which is appended to the result list in collection order, with its final metric **/
+	protected GraphCodeMeta getUnrankedGraphCode(int ordinal) {
+		GraphCodeMeta meta = collection.get(ordinal);
+		if (!isMatch(ordinal)) meta.setMetric(new float[] {0f, 0f, 0f});
+		return meta;
+	}
+
+	/** returns true, if the Graph Code shares at least one term with the query of the last execute **/
+	protected boolean isMatch(int ordinal) {
+		return matched[ordinal];
+	}
+}
@@ -0,0 +1,338 @@
+package de.swa.gc.processing;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.TermVocabulary;
+
+/** Persistent, append-only index of the collection's Graph Codes, which is memory-mapped with FileChannel.map.
+ * The index consists of two files:
+ * <ul>
+ * <li>a term file with all dictionary terms, the position of a term is its local term ID</li>
+ * <li>a data file with one record per Graph Code: its name, the local term IDs of its dictionary, its
+ * non-zero cells as (x, y, value) triples and the CRC32 of the record</li>
+ * </ul>
+ * The data file is mapped lazily in regions of 64 MB, a region is mapped when a record in it is read and mapped
+ * again when a read needs bytes appended after its mapping. Records crossing a region boundary are read from the
+ * file channel. Opening the index only scans the record headers, Graph Codes are decoded on access.
+ * Appending a Graph Code with an existing name supersedes the older record. A record, which fails its checksum or
+ * cannot be decoded, is read as missing, so callers fall back to the Graph Code file. The index only duplicates
+ * stored Graph Codes, a data file of a former version is therefore emptied on opening.
+ */
+public class MappedGraphCodeIndex implements Closeable {
+	private static final int DATA_MAGIC = 0x47434958;	// GCIX
+	private static final int TERM_MAGIC = 0x47434954;	// GCIT
+	private static final int DATA_VERSION = 2, TERM_VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	/** default size of the regions the data file is mapped in **/
+	static final int REGION_SIZE = 1 << 26;
+	/** maximum size of a record, its length is stored as int **/
+	private static final int MAX_RECORD_SIZE = Integer.MAX_VALUE - 8;
+
+	private final FileChannel data, terms;
+	private final int regionSize;
+	/** mappings of the data file's regions, null if a region has not been read yet **/
+	private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+	private long dataSize, termSize;
+	private final LinkedHashMap<String, Long> offsets = new LinkedHashMap<String, Long>();
+	/** maps local term IDs of the index to the shared term instances of the TermVocabulary **/
+	private String[] localTerms = new String[64];
+	private int termCount;
+	private final HashMap<String, Integer> localIds = new HashMap<String, Integer>();
+
+	/** opens or creates the index files graphcodes.idx and graphcodes.terms in a folder **/
+	public static MappedGraphCodeIndex open(File folder) throws IOException {
+		return new MappedGraphCodeIndex(new File(folder, "graphcodes.idx"), new File(folder, "graphcodes.terms"));
+	}
+
+	public MappedGraphCodeIndex(File dataFile, File termFile) throws IOException {
+		this(dataFile, termFile, REGION_SIZE);
+	}
+
+	MappedGraphCodeIndex(File dataFile, File termFile, int regionSize) throws IOException {
+		this.regionSize = regionSize;
+		data = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		terms = FileChannel.open(termFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			termSize = init(terms, TERM_MAGIC, TERM_VERSION);
+			dataSize = init(data, DATA_MAGIC, DATA_VERSION);
+			loadTerms();
+			loadOffsets();
+		}
+		catch (IOException x) {
+			close();
+			throw x;
+		}
+	}
+
+	/** writes the header of an empty file or checks the header of an existing one, returns the file size. A file of
+	 * an older version is emptied **/
+	private static long init(FileChannel ch, int magic, int currentVersion) throws IOException {
+		if (ch.size() > 0) {
+			ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE);
+			ch.read(b, 0);
+			b.flip();
+			if (b.remaining() < HEADER_SIZE || b.getInt() != magic) throw new IOException("not a Graph Code index file");
+			int version = b.getInt();
+			if (version == currentVersion) return ch.size();
+			if (version > currentVersion) throw new IOException("unsupported Graph Code index version " + version);
+			ch.truncate(0);
+		}
+		ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE);
+		b.putInt(magic).putInt(currentVersion).flip();
+		ch.write(b, 0);
+		return HEADER_SIZE;
+	}
+
+	private void loadTerms() throws IOException {
+		TermVocabulary vocabulary = TermVocabulary.getInstance();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(terms.position(HEADER_SIZE))));
+		long pos = HEADER_SIZE;
+		while (termSize - pos >= 4) {
+			int len = in.readInt();
+			if (len < 0 || termSize - pos - 4 < len) break;	// incomplete trailing entry
+			byte[] bytes = new byte[len];
+			in.readFully(bytes);
+			addLocalTerm(vocabulary.intern(new String(bytes, StandardCharsets.UTF_8)));
+			pos += 4 + len;
+		}
+		termSize = pos;
+		if (terms.size() > termSize) terms.truncate(termSize);
+	}
+
+	private void loadOffsets() throws IOException {
+		long pos = HEADER_SIZE;
+		while (dataSize - pos >= 8) {
+			int len = slice(pos, 4).getInt();
+			if (len < 4 || dataSize - pos - 4 < len) break;	// incomplete trailing record
+			String name = readName(pos);
+			if (name == null) break;
+			offsets.remove(name);
+			offsets.put(name, pos);
+			pos += 4 + len;
+		}
+		if (dataSize > pos) {
+			dataSize = pos;
+			data.truncate(dataSize);
+			regions = new MappedByteBuffer[0];
+		}
+	}
+
+	/** returns the name of the record at a position or null, if its length exceeds the record **/
+	private String readName(long pos) throws IOException {
+		int len = slice(pos, 4).getInt();
+		int nameLength = slice(pos + 4, 4).getInt();
+		if (nameLength < 0 || nameLength > len - 4) return null;
+		byte[] bytes = new byte[nameLength];
+		slice(pos + 8, nameLength).get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** returns length bytes of the data file at a position **/
+	private ByteBuffer slice(long pos, int length) throws IOException {
+		int r = (int)(pos / regionSize);
+		int start = (int)(pos - (long)r * regionSize);
+		if (start + (long)length <= regionSize) {
+			ByteBuffer b = region(r, start + length).duplicate();
+			b.position(start);
+			b.limit(start + length);
+			return b.slice();
+		}
+		// the bytes cross a region boundary
+		ByteBuffer b = ByteBuffer.allocate(length);
+		while (b.hasRemaining()) {
+			if (data.read(b, pos + b.position()) < 0) throw new EOFException();
+		}
+		b.flip();
+		return b;
+	}
+
+	/** returns the mapping of a region, which covers at least its first bytes **/
+	private MappedByteBuffer region(int r, int bytes) throws IOException {
+		if (r >= regions.length) regions = Arrays.copyOf(regions, r + 1);
+		MappedByteBuffer map = regions[r];
+		if (map == null || map.capacity() < bytes) {
+			long start = (long)r * regionSize;
+			map = data.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, dataSize - start));
+			regions[r] = map;
+		}
+		return map;
+	}
+
+	private int addLocalTerm(String term) {
+		if (termCount == localTerms.length) localTerms = Arrays.copyOf(localTerms, termCount * 2);
+		localTerms[termCount] = term;
+		localIds.put(term, termCount);
+		return termCount++;
+	}
+
+	/** returns the number of Graph Codes in the index **/
+	public synchronized int size() {
+		return offsets.size();
+	}
+
+	/** returns true, if the index contains a Graph Code with the given name **/
+	public synchronized boolean contains(String name) {
+		return offsets.containsKey(name);
+	}
+
+	/** returns the names of all Graph Codes in the index **/
+	public synchronized Vector<String> getNames() {
+		return new Vector<String>(offsets.keySet());
+	}
+
+	/** returns the Graph Code with the given name or null, if it is not part of the index or its record is corrupt **/
+	public synchronized GraphCode read(String name) {
+		Long pos = offsets.get(name);
+		if (pos == null) return null;
+		try {
+			ByteBuffer b = slice(pos, 4);
+			b = slice(pos + 4, b.getInt());
+			CRC32 crc = new CRC32();
+			crc.update(b.duplicate().limit(b.limit() - 4));
+			if (b.getInt(b.limit() - 4) != (int)crc.getValue()) {
+				System.out.println("corrupt Graph Code index record " + name);
+				return null;
+			}
+			b.limit(b.limit() - 4);
+			b.position(4 + b.getInt());	// skip the name
+			int size = b.getInt();
+			int[] ids = new int[size];
+			TermVocabulary vocabulary = TermVocabulary.getInstance();
+			for (int i = 0; i < size; i++) ids[i] = vocabulary.getId(localTerms[b.getInt()]);
+			GraphCode gc = new GraphCode();
+			gc.setDictionary(ids);
+			int edges = b.getInt();
+			for (int e = 0; e < edges; e++) gc.setValue(b.getInt(), b.getInt(), b.getInt());
+			return gc;
+		}
+		catch (Exception x) {
+			// torn or corrupt record
+			x.printStackTrace();
+			return null;
+		}
+	}
+
+	/** appends a Graph Code, an existing Graph Code with the same name is superseded **/
+	public synchronized void append(final String name, GraphCode gc) throws IOException {
+		TermVocabulary vocabulary = TermVocabulary.getInstance();
+		int size = gc.getDictionarySize();
+		int[] local = new int[size];
+		ByteBuffer newTerms = ByteBuffer.allocate(64);
+		for (int i = 0; i < size; i++) {
+			String term = gc.getTermForIndex(i);
+			Integer l = localIds.get(term);
+			if (l == null) {
+				byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+				newTerms = ensure(newTerms, 4 + bytes.length);
+				newTerms.putInt(bytes.length).put(bytes);
+				l = addLocalTerm(vocabulary.intern(term));
+			}
+			local[i] = l;
+		}
+		// terms are written before the records referring to them
+		newTerms.flip();
+		while (newTerms.hasRemaining()) termSize += terms.write(newTerms, termSize);
+
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		if (20L + nameBytes.length + 4L * size > MAX_RECORD_SIZE) throw new IOException("Graph Code " + name + " exceeds the maximum record size");
+		final ByteBuffer[] record = { ByteBuffer.allocate(20 + nameBytes.length + 4 * size + 64) };
+		record[0].putInt(0).putInt(nameBytes.length).put(nameBytes).putInt(size);
+		for (int l : local) record[0].putInt(l);
+		final int edgeCountPos = record[0].position();
+		record[0].putInt(0);
+		final int[] edges = new int[1];
+		gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+			public void visit(int x, int y, int value) {
+				if (record[0].position() + 16L > MAX_RECORD_SIZE) throw new IllegalStateException("Graph Code " + name + " exceeds the maximum record size");
+				record[0] = ensure(record[0], 12);
+				record[0].putInt(x).putInt(y).putInt(value);
+				edges[0]++;
+			}
+		});
+		ByteBuffer b = ensure(record[0], 4);
+		b.putInt(edgeCountPos, edges[0]);
+		b.putInt(0, b.position());
+		CRC32 crc = new CRC32();
+		crc.update(b.array(), 4, b.position() - 4);
+		b.putInt((int)crc.getValue());
+		b.flip();
+		long pos = dataSize;
+		try {
+			while (b.hasRemaining()) dataSize += data.write(b, dataSize);
+		}
+		catch (IOException x) {
+			// drops the partially written record
+			dataSize = pos;
+			data.truncate(pos);
+			throw x;
+		}
+		offsets.remove(name);
+		offsets.put(name, pos);
+	}
+
+	private static ByteBuffer ensure(ByteBuffer b, int bytes) {
+		if (b.remaining() >= bytes) return b;
+		ByteBuffer larger = ByteBuffer.allocate((int)Math.min(MAX_RECORD_SIZE, Math.max(b.capacity() * 2L, b.position() + (long)bytes)));
+		b.flip();
+		larger.put(b);
+		return larger;
+	}
+
+	/** returns lazily loaded GraphCodeMetas for all Graph Codes of the index **/
+	public Vector<GraphCodeMeta> getGraphCodeMetas() {
+		Vector<GraphCodeMeta> v = new Vector<GraphCodeMeta>();
+		for (String name : getNames()) v.add(new IndexedGraphCodeMeta(name, this));
+		return v;
+	}
+
+	/** flushes the index files to disk **/
+	public synchronized void force() throws IOException {
+		terms.force(false);
+		data.force(false);
+	}
+
+	public synchronized void close() throws IOException {
+		try {
+			data.close();
+		}
+		finally {
+			terms.close();
+		}
+	}
+
+	/** GraphCodeMeta, which decodes its Graph Code from the index on first access **/
+	private static class IndexedGraphCodeMeta extends GraphCodeMeta {
+		private final MappedGraphCodeIndex index;
+
+		IndexedGraphCodeMeta(String name, MappedGraphCodeIndex index) {
+			super(name, null);
+			this.index = index;
+		}
+
+		public GraphCode getGraphcode() {
+			GraphCode gc = super.getGraphcode();
+			if (gc == null) {
+				gc = index.read(getFileName());
+				setGraphcode(gc);
+			}
+			return gc;
+		}
+	}
+}
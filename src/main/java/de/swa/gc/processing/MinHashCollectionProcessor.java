@@ -0,0 +1,51 @@
+package de.swa.gc.processing;
+
+import java.util.Vector;
+
+import de.swa.gc.GraphCode;
+import de.swa.ui.Configuration;
+
+/** Collection Processor for approximate similarity search. A MinHashIndex over the Graph Codes' vocabularies returns
+ * the candidates of a query, which are then ranked exactly with the Graph Code Metric. Similar Graph Codes, which
+ * LSH has missed, are appended with the metric {0, 0, 0} and can rank too low. The recall is controlled by
+ * minHashBands and minHashRows.
+ * Select it with collectionProcessor = de.swa.gc.processing.MinHashCollectionProcessor
+ */
+public class MinHashCollectionProcessor extends CandidateCollectionProcessor {
+	private final MinHashIndex index;
+	/** Graph Codes the index has been built for **/
+	private GraphCode[] indexed = new GraphCode[0];
+
+	/** creates the processor with the LSH parameters of the configuration **/
+	public MinHashCollectionProcessor() {
+		this(Configuration.getInstance().getMinHashBands(), Configuration.getInstance().getMinHashRows());
+	}
+
+	public MinHashCollectionProcessor(int bands, int rows) {
+		index = new MinHashIndex(bands, rows);
+	}
+
+	public void preloadIndex(Vector<GraphCodeMeta> collection) {
+		super.preloadIndex(collection);
+		if (isIndexed(collection)) return;
+		indexed = new GraphCode[collection.size()];
+		Vector<GraphCode> gcs = new Vector<GraphCode>(collection.size());
+		for (int i = 0; i < indexed.length; i++) {
+			indexed[i] = collection.get(i).getGraphcode();
+			gcs.add(indexed[i]);
+		}
+		index.build(gcs);
+	}
+
+	private boolean isIndexed(Vector<GraphCodeMeta> collection) {
+		if (indexed.length != collection.size()) return false;
+		for (int i = 0; i < indexed.length; i++) {
+			if (indexed[i] != collection.get(i).getGraphcode()) return false;
+		}
+		return true;
+	}
+
+	protected int[] getCandidates() {
+		return index.getCandidates(gcQuery);
+	}
+}
@@ -0,0 +1,125 @@
+package de.swa.gc.processing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.swa.gc.GraphCode;
+
+/** Banded LSH index over MinHash signatures of the Graph Codes' vocabularies. The signature of a Graph Code holds
+ * bands * rows minimum hash values of its non-blank TermVocabulary IDs, so two signatures agree on a position with a
+ * probability equal to the Jaccard similarity of the vocabularies. Graph Codes become candidates of a query, if all
+ * rows of at least one band are equal, i.e. with a probability of 1 - (1 - J^rows)^bands.
+ * Each band is stored as ascending array of 32 bit band hash and ordinal, so lookups are binary searches.
+ */
+public class MinHashIndex {
+	private final int bands, rows;
+	private final long[] seeds;
+	/** per band: band hash in the upper and ordinal in the lower 32 bits, ascending **/
+	private long[][] buckets;
+	private int size;
+
+	public MinHashIndex(int bands, int rows) {
+		if (bands < 1 || rows < 1) throw new IllegalArgumentException("bands and rows must be positive");
+		this.bands = bands;
+		this.rows = rows;
+		seeds = new long[bands * rows];
+		long seed = 0x5DEECE66DL;
+		for (int i = 0; i < seeds.length; i++) seeds[i] = seed = mix(seed + 0x9E3779B97F4A7C15L);
+		buckets = new long[bands][0];
+	}
+
+	public int getBands() {
+		return bands;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	/** returns the number of indexed Graph Codes **/
+	public int size() {
+		return size;
+	}
+
+	/** returns the MinHash signature of a Graph Code or null, if it has no non-blank terms **/
+	public int[] getSignature(GraphCode gc) {
+		int[] ids = gc.getTermIds();
+		List<String> voc = gc.getNormalizedDictionary();
+		int[] signature = new int[seeds.length];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		boolean empty = true;
+		for (int t = 0; t < ids.length; t++) {
+			if (voc.get(t).trim().equals("")) continue;
+			empty = false;
+			for (int i = 0; i < seeds.length; i++) {
+				int h = (int)(mix(ids[t] ^ seeds[i]) >>> 33);
+				if (h < signature[i]) signature[i] = h;
+			}
+		}
+		return empty ? null : signature;
+	}
+
+	/** returns the estimated Jaccard similarity of two signatures **/
+	public static float estimateSimilarity(int[] a, int[] b) {
+		if (a == null || b == null || a.length != b.length) return 0f;
+		int equal = 0;
+		for (int i = 0; i < a.length; i++) if (a[i] == b[i]) equal++;
+		return (float)equal / (float)a.length;
+	}
+
+	/** indexes a list of Graph Codes, their positions are the ordinals returned by getCandidates **/
+	public void build(List<GraphCode> gcs) {
+		size = gcs.size();
+		long[][] b = new long[bands][size];
+		int count = 0;
+		for (int o = 0; o < size; o++) {
+			int[] signature = getSignature(gcs.get(o));
+			if (signature == null) continue;
+			for (int band = 0; band < bands; band++) b[band][count] = ((long)bandHash(signature, band) << 32) | o;
+			count++;
+		}
+		for (int band = 0; band < bands; band++) {
+			b[band] = Arrays.copyOf(b[band], count);
+			Arrays.sort(b[band]);
+		}
+		buckets = b;
+	}
+
+	/** returns the ascending ordinals of the Graph Codes sharing at least one band with the query **/
+	public int[] getCandidates(GraphCode query) {
+		int[] signature = getSignature(query);
+		if (signature == null) return new int[0];
+		boolean[] found = new boolean[size];
+		int[] result = new int[16];
+		int count = 0;
+		for (int band = 0; band < bands; band++) {
+			long[] bucket = buckets[band];
+			long key = (long)bandHash(signature, band) << 32;
+			int i = Arrays.binarySearch(bucket, key);
+			if (i < 0) i = -i - 1;
+			for (; i < bucket.length && (bucket[i] & 0xFFFFFFFF00000000L) == key; i++) {
+				int o = (int)bucket[i];
+				if (found[o]) continue;
+				found[o] = true;
+				if (count == result.length) result = Arrays.copyOf(result, count * 2);
+				result[count++] = o;
+			}
+		}
+		result = Arrays.copyOf(result, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private int bandHash(int[] signature, int band) {
+		long h = band;
+		for (int r = band * rows; r < (band + 1) * rows; r++) h = mix(h * 31 + signature[r]);
+		return (int)(h >>> 32);
+	}
+
+	/** finalizer of SplitMix64 **/
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,48 @@
+package de.swa.gc.processing;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Collection Processor, which scores the collection on all available cores. The collection is split recursively
+ * into chunks that are processed on the common fork/join pool. Every chunk writes into its own range of a shared
+ * result buffer, so the results do not depend on the scheduling and are ranked like in DefaultCollectionProcessor.
+ * Select it with collectionProcessor = de.swa.gc.processing.ParallelCollectionProcessor
+ */
+public class ParallelCollectionProcessor extends DefaultCollectionProcessor {
+	/** number of Graph Codes, which are scored sequentially within one task **/
+	private static final int CHUNK_SIZE = 256;
+
+	public void execute() {
+		float[] result = new float[collection.size() * 3];
+		CompiledQuery query = getCompiledQuery();
+		ForkJoinPool.commonPool().invoke(new ScoringTask(query, collection, 0, collection.size(), result));
+		setMetrics(result);
+	}
+
+	private static class ScoringTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final CompiledQuery query;
+		private final List<GraphCodeMeta> candidates;
+		private final int from, to;
+		private final float[] result;
+
+		ScoringTask(CompiledQuery query, List<GraphCodeMeta> candidates, int from, int to, float[] result) {
+			this.query = query;
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+			this.result = result;
+		}
+
+		protected void compute() {
+			if (to - from <= CHUNK_SIZE) {
+				query.score(candidates, from, to, result);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ScoringTask(query, candidates, from, mid, result),
+					new ScoringTask(query, candidates, mid, to, result));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package de.swa.gc.processing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Vector;
+
+/** Collection Processor for top-k queries, which skips the full metric calculation of candidates that cannot
+ * reach the k best results (WAND-style early termination). For every candidate sharing terms with the query, the
+ * node metric is counted exactly on the term postings, and the number of query edges with both terms present in
+ * the candidate bounds the edge metric from above. The edge type metric is bounded by 1. Candidates are evaluated
+ * in descending order of their bound, and evaluation stops as soon as the bound cannot beat the current k-th best
+ * result. As the composite score is monotonic in each metric, the ranking is identical to the exhaustive scan.
+ * The top-k limit is set by the query engine from queryResultLimit, without it all matching candidates are evaluated.
+ * Select it with collectionProcessor = de.swa.gc.processing.PruningCollectionProcessor
+ */
+public class PruningCollectionProcessor extends InvertedIndexCollectionProcessor {
+	private int[] nodeCounts = new int[0], edgeBounds = new int[0];
+	private TopKSelector selector;
+	private int evaluated;
+	/** marks the candidates, whose metric has been calculated by the last execute **/
+	private boolean[] scored = new boolean[0];
+
+	protected void buildIndex(Vector<GraphCodeMeta> collection) {
+		super.buildIndex(collection);
+		nodeCounts = new int[collection.size()];
+		edgeBounds = new int[collection.size()];
+		scored = new boolean[collection.size()];
+	}
+
+	/** returns the number of candidates, for which the full metric was calculated by the last execute **/
+	public int getEvaluatedCount() {
+		return evaluated;
+	}
+
+	public void execute() {
+		if (topK <= 0) {
+			super.execute();
+			evaluated = matches.length;
+			return;
+		}
+		for (int o : matches) scored[o] = false;
+		collectMatches();
+		CompiledQuery query = getCompiledQuery();
+		int[] ids = query.getQuery().getTermIds();
+		countMatchingTerms(nodeCounts);
+		for (int e = 0; e < query.getEdgeCount(); e++) {
+			countCommon(getPostings(ids[query.getEdgeRow(e)]), getPostings(ids[query.getEdgeColumn(e)]), edgeBounds);
+		}
+
+		// upper bound of the composite score for every candidate
+		int size = query.getDictionarySize();
+		int numEdges = query.getEdgeCount();
+		double[] bounds = new double[matches.length];
+		for (int m = 0; m < matches.length; m++) {
+			int o = matches[m];
+			float[] bound = new float[3];
+			if (size > 0) {
+				bound[0] = (float)Math.min(nodeCounts[o], size) / (float)size;
+				bound[1] = numEdges > 0 ? (float)edgeBounds[o] / (float)numEdges : 0f;
+				bound[2] = edgeBounds[o] > 0 ? 1f : 0f;
+			}
+			bounds[m] = getCompositeScore(bound);
+			nodeCounts[o] = 0;
+			edgeBounds[o] = 0;
+		}
+		int[] order = sortByBound(bounds);
+
+		int k = Math.min(topK, collection.size());
+		selector = new TopKSelector(k);
+		evaluated = 0;
+		float[] result = new float[3];
+		int[] alignment = new int[size];
+		for (int m : order) {
+			int o = matches[m];
+			// all remaining candidates rank behind this bound
+			if (bounds[m] <= 0 || !selector.accepts(bounds[m], o)) break;
+			query.score(collection.get(o).getGraphcode(), result, 0, alignment);
+			float[] metric = new float[] {result[0], result[1], result[2]};
+			collection.get(o).setMetric(metric);
+			scored[o] = true;
+			evaluated++;
+			double score = getCompositeScore(metric);
+			if (score > 0) selector.offer(score, o);
+		}
+	}
+
+	public Vector<GraphCodeMeta> getResultList() {
+		if (topK <= 0) return super.getResultList();
+		return toResultList(selector, Math.min(topK, collection.size()));
+	}
+
+	/** calculates the metric of matching candidates, which are appended without having been evaluated **/
+	protected GraphCodeMeta getUnrankedGraphCode(int ordinal) {
+		if (topK <= 0 || !isMatch(ordinal) || scored[ordinal]) return super.getUnrankedGraphCode(ordinal);
+		GraphCodeMeta meta = collection.get(ordinal);
+		meta.setMetric(getCompiledQuery().score(meta.getGraphcode()));
+		return meta;
+	}
+
+	/** increments counts for every ordinal contained in both ascending postings **/
+	private static void countCommon(int[] a, int[] b, int[] counts) {
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) i++;
+			else if (a[i] > b[j]) j++;
+			else {
+				counts[a[i]]++;
+				i++;
+				j++;
+			}
+		}
+	}
+
+	/** returns the positions of the bounds in descending order of bound and ascending order of ordinal **/
+	private int[] sortByBound(final double[] bounds) {
+		Integer[] order = new Integer[bounds.length];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		// matches are in ascending ordinal order, the stable sort keeps it for equal bounds
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(bounds[b], bounds[a]);
+			}
+		});
+		int[] result = new int[order.length];
+		for (int i = 0; i < result.length; i++) result[i] = order[i];
+		return result;
+	}
+}
@@ -0,0 +1,155 @@
+package de.swa.gc.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.swa.gc.GraphCode;
+
+/** Bounded least recently used cache of query results. Results are keyed by the content of the query Graph Code,
+ * i.e. its normalized dictionary and relationships, the operation (SIMILARITY or RECOMMENDATION), the class of the
+ * collection processor and the result limit, so equal queries hit the cache even if they are different Graph Code
+ * instances. Each result is stored with the version of the collection it has been calculated for and with copies of
+ * its metrics. A result of an older version is a miss.
+ */
+public class QueryResultCache<T> {
+	public static final int DEFAULT_SIZE = 64;
+
+	private final int maxSize;
+	private final LinkedHashMap<Key, Entry<T>> entries;
+	private long hits, misses;
+
+	public QueryResultCache() {
+		this(DEFAULT_SIZE);
+	}
+
+	/** creates a cache for up to maxSize results, a cache of size 0 stores nothing **/
+	public QueryResultCache(int size) {
+		maxSize = Math.max(0, size);
+		entries = new LinkedHashMap<Key, Entry<T>>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry<T>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/** returns the cached result of a query, which has been processed by a collection processor class with a result
+	 * limit for a collection version, or null **/
+	public synchronized Result<T> get(GraphCode query, int operation, String processor, int limit, long version) {
+		Key key = new Key(query, operation, processor, limit);
+		Entry<T> e = entries.get(key);
+		if (e == null || e.version != version) {
+			if (e != null) entries.remove(key);
+			misses++;
+			return null;
+		}
+		hits++;
+		return e.result;
+	}
+
+	/** caches the result of a query for a collection version, metrics holds the metric of each item **/
+	public synchronized void put(GraphCode query, int operation, String processor, int limit, long version, List<T> items, List<float[]> metrics) {
+		if (maxSize == 0) return;
+		float[][] m = new float[metrics.size()][];
+		for (int i = 0; i < m.length; i++) m[i] = metrics.get(i) == null ? null : metrics.get(i).clone();
+		entries.put(new Key(query, operation, processor, limit), new Entry<T>(version, new Result<T>(new ArrayList<T>(items), m)));
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/** returns the number of lookups answered from the cache **/
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/** returns the number of lookups, which have not been answered from the cache **/
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/** cached query result **/
+	public static class Result<T> {
+		private final List<T> items;
+		private final float[][] metrics;
+
+		private Result(List<T> items, float[][] metrics) {
+			this.items = items;
+			this.metrics = metrics;
+		}
+
+		/** returns the ranked items, the list must not be modified **/
+		public List<T> getItems() {
+			return items;
+		}
+
+		/** returns a copy of the metric of the item at a position **/
+		public float[] getMetric(int i) {
+			return metrics[i] == null ? null : metrics[i].clone();
+		}
+	}
+
+	private static class Entry<T> {
+		final long version;
+		final Result<T> result;
+
+		Entry(long version, Result<T> result) {
+			this.version = version;
+			this.result = result;
+		}
+	}
+
+	/** content of a query: normalized terms, relationships between them as ascending cell position and value, the
+	 * operation, the collection processor class and the result limit **/
+	private static class Key {
+		final String[] terms;
+		final long[] cells;
+		final int operation;
+		final String processor;
+		final int limit;
+		final int hash;
+
+		Key(GraphCode gc, int operation, String processor, int limit) {
+			List<String> voc = gc.getNormalizedDictionary();
+			terms = voc.toArray(new String[voc.size()]);
+			final int size = terms.length;
+			final long[][] c = { new long[16] };
+			final int[] count = { 0 };
+			gc.visitNonZeroCells(new GraphCode.CellVisitor() {
+				public void visit(int x, int y, int value) {
+					if (x >= size || y >= size) return;
+					if (count[0] == c[0].length) c[0] = Arrays.copyOf(c[0], count[0] * 2);
+					c[0][count[0]++] = ((long)x * size + y) << 32 | (value & 0xFFFFFFFFL);
+				}
+			});
+			cells = Arrays.copyOf(c[0], count[0]);
+			Arrays.sort(cells);
+			this.operation = operation;
+			this.processor = processor == null ? "" : processor;
+			this.limit = limit;
+			hash = (((Arrays.hashCode(terms) * 31 + Arrays.hashCode(cells)) * 31 + operation) * 31 + this.processor.hashCode()) * 31 + limit;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return hash == k.hash && operation == k.operation && limit == k.limit && processor.equals(k.processor)
+					&& Arrays.equals(terms, k.terms) && Arrays.equals(cells, k.cells);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package de.swa.gc.processing;
+
+/** Bounded selection of the k best candidates based on precomputed composite scores. The candidates are kept in a
+ * primitive min-heap, so selecting k out of n candidates costs O(n log k). Equal scores are ranked by ascending
+ * ordinal, which keeps the order of the underlying collection like a stable sort.
+ */
+public class TopKSelector {
+	private final int capacity;
+	private final double[] scores;
+	private final int[] ordinals;
+	private int size;
+
+	public TopKSelector(int k) {
+		capacity = k;
+		scores = new double[k];
+		ordinals = new int[k];
+	}
+
+	/** returns the number of selected candidates **/
+	public int size() {
+		return size;
+	}
+
+	/** returns true, if k candidates have been selected **/
+	public boolean isFull() {
+		return size == capacity;
+	}
+
+	/** returns the score of the currently k-th best candidate **/
+	public double getThreshold() {
+		return size == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+	}
+
+	/** returns true, if a candidate with this score and ordinal would be selected **/
+	public boolean accepts(double score, int ordinal) {
+		if (capacity == 0) return false;
+		if (size < capacity) return true;
+		return better(score, ordinal, scores[0], ordinals[0]);
+	}
+
+	/** offers a candidate, returns true if it is currently among the k best **/
+	public boolean offer(double score, int ordinal) {
+		if (!accepts(score, ordinal)) return false;
+		if (size < capacity) {
+			int i = size++;
+			// sift up
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!better(scores[parent], ordinals[parent], score, ordinal)) break;
+				scores[i] = scores[parent];
+				ordinals[i] = ordinals[parent];
+				i = parent;
+			}
+			scores[i] = score;
+			ordinals[i] = ordinal;
+		}
+		else siftDown(0, score, ordinal);
+		return true;
+	}
+
+	/** returns the ordinals of the selected candidates, best candidate first **/
+	public int[] getOrdinals() {
+		double[] s = scores.clone();
+		int[] o = ordinals.clone();
+		int n = size;
+		int[] result = new int[n];
+		// heap sort on a copy: repeatedly remove the worst candidate
+		for (int i = n - 1; i >= 0; i--) {
+			result[i] = o[0];
+			n--;
+			double lastScore = s[n];
+			int lastOrdinal = o[n];
+			int j = 0;
+			while (true) {
+				int child = 2 * j + 1;
+				if (child >= n) break;
+				if (child + 1 < n && better(s[child], o[child], s[child + 1], o[child + 1])) child++;
+				if (!better(lastScore, lastOrdinal, s[child], o[child])) break;
+				s[j] = s[child];
+				o[j] = o[child];
+				j = child;
+			}
+			s[j] = lastScore;
+			o[j] = lastOrdinal;
+		}
+		return result;
+	}
+
+	private void siftDown(int i, double score, int ordinal) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) break;
+			if (child + 1 < size && better(scores[child], ordinals[child], scores[child + 1], ordinals[child + 1])) child++;
+			if (!better(score, ordinal, scores[child], ordinals[child])) break;
+			scores[i] = scores[child];
+			ordinals[i] = ordinals[child];
+			i = child;
+		}
+		scores[i] = score;
+		ordinals[i] = ordinal;
+	}
+
+	/** returns true, if candidate a ranks before candidate b **/
+	static boolean better(double scoreA, int ordinalA, double scoreB, int ordinalB) {
+		if (scoreA != scoreB) return scoreA > scoreB;
+		return ordinalA < ordinalB;
+	}
+}
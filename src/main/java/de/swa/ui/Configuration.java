@@ -36,6 +36,15 @@ public class Configuration {
 	private boolean showBoundingBox = true;
 
 	private String collectionManager = "de.swa.ui.DefaultMMFGCollection";
+	private boolean graphCodeIndex = false;
+	private String graphCodeFormat = "json";
+	private boolean packedGraphCodes = false;
+	private boolean stopWordStatistics = false;
+	private int minHashBands = 32;
+	private int minHashRows = 4;
+	private boolean vectorIndex = false;
+	private int queryCacheSize = 64;
+	private int queryResultLimit = 0;
 
 	public static synchronized Configuration getInstance() {
 		if (instance == null) {
@@ -109,6 +118,15 @@ public class Configuration {
 			String password = "";
 			String restServicePort = "8242";
 			String collectionManager = "de.swa.ui.DefaultMMFGCollection";
+			String graphCodeIndex = "false";
+			String graphCodeFormat = "json";
+			String graphCodeStore = "files";
+			String stopWords = "false";
+			String minHashBands = "32";
+			String minHashRows = "4";
+			String vectorIndex = "false";
+			String queryCacheSize = "64";
+			String queryResultLimit = "0";
 
 			while ((line = rf.readLine()) != null) {
 				if (line.equals("")) continue;
@@ -194,19 +212,69 @@ public class Configuration {
 					else if (line.startsWith("collectionManager")) {
 						collectionManager = line.substring(line.indexOf("=") + 1, line.length()).trim();
 					}
+					else if (line.startsWith("graphCodeIndex")) {
+						graphCodeIndex = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("graphCodeFormat")) {
+						graphCodeFormat = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("graphCodeStore")) {
+						graphCodeStore = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("stopWordStatistics")) {
+						stopWords = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("minHashBands")) {
+						minHashBands = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("minHashRows")) {
+						minHashRows = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("vectorIndex")) {
+						vectorIndex = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("queryCacheSize")) {
+						queryCacheSize = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
+					else if (line.startsWith("queryResultLimit")) {
+						queryResultLimit = line.substring(line.indexOf("=") + 1, line.length()).trim();
+					}
  				}
 				catch (Exception x) {}
 			}
 			
-			Configuration.getInstance().setConfig(collectionName, collectionPaths, graphCodeRepo, exportFolder, fileEx, mmfgRepository, uimode, maxNodes, maxRecursions, thumbNails, autoProcess, semExt, launchServer, collectionProc, collectionConf, queryEx, rdfRepo, serverPort, flows, srv, ctx, password, restServicePort, collectionManager);
+			Configuration config = Configuration.getInstance();
+			config.setConfig(collectionName, collectionPaths, graphCodeRepo, exportFolder, fileEx, mmfgRepository, uimode, maxNodes, maxRecursions, thumbNails, autoProcess, semExt, launchServer, collectionProc, collectionConf, queryEx, rdfRepo, serverPort, flows, srv, ctx, password, restServicePort, collectionManager);
+			// each Graph Code option falls back to its default on its own, if its value is malformed
+			config.graphCodeIndex = Boolean.parseBoolean(graphCodeIndex);
+			config.graphCodeFormat = graphCodeFormat;
+			config.packedGraphCodes = graphCodeStore.equalsIgnoreCase("pack");
+			config.stopWordStatistics = Boolean.parseBoolean(stopWords);
+			config.minHashBands = parseInt("minHashBands", minHashBands, 32);
+			config.minHashRows = parseInt("minHashRows", minHashRows, 4);
+			config.vectorIndex = Boolean.parseBoolean(vectorIndex);
+			config.queryCacheSize = parseInt("queryCacheSize", queryCacheSize, 64);
+			config.queryResultLimit = parseInt("queryResultLimit", queryResultLimit, 0);
 		}
 		catch (Exception x) {
 			x.printStackTrace();
 		}
 	}
 	
+	/** returns the int value of a configuration key or its default, if the value is malformed **/
+	private static int parseInt(String key, String value, int defaultValue) {
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException x) {
+			System.out.println("invalid value " + value + " for " + key + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+	
 	public void setConfig(String name, Vector<String> paths, String gcRepo, String export, Vector<String> fileEx, String mmfgRepo, String ui, String nodes, String recursions, String thumbNail, String auto, String semFact, String launch, String collectionProc, String collectionConf, String queryUI, String rdf, String serverPort, String flows, String serverName, String context, String password, String restServicePort, String collectionManager) {
 		try {
+			GMAF_SessionFactory.API_KEY = password;
 			collectionName = name;
 			collectionPaths = paths;
 			graphCodeRepo = gcRepo;
@@ -230,7 +298,6 @@ public class Configuration {
 			this.context = context;
 			this.restServicePort = Integer.parseInt(restServicePort);
 			this.collectionManager = collectionManager;
-			GMAF_SessionFactory.API_KEY = password;
 		}
 		catch (Exception x) {
 			x.printStackTrace();
@@ -256,6 +323,11 @@ public class Configuration {
 	public String getGraphCodeRepository() {
 		return graphCodeRepo;
 	}
+
+	/** sets the Graph Code repository, stores opened for the former repository have to be closed by the caller **/
+	public void setGraphCodeRepository(String repo) {
+		graphCodeRepo = repo;
+	}
 	
 	public String getExportFolder() {
 		return exportFolder;
@@ -353,4 +425,57 @@ public class Configuration {
 	public String getCollectionManager() {
 		return collectionManager;
 	}
+
+	/** returns true, if Graph Codes are additionally stored in a memory-mapped index in the Graph Code repository **/
+	public boolean isGraphCodeIndexEnabled() {
+		return graphCodeIndex;
+	}
+
+	public void setGraphCodeIndexEnabled(boolean enabled) {
+		graphCodeIndex = enabled;
+	}
+
+	/** returns the format of new Graph Codes (json | binary | compressed) **/
+	public String getGraphCodeFormat() {
+		return graphCodeFormat;
+	}
+
+	/** returns true, if Graph Codes are stored in the pack store of the Graph Code repository instead of single files **/
+	public boolean isGraphCodePackStoreEnabled() {
+		return packedGraphCodes;
+	}
+
+	public void setGraphCodePackStoreEnabled(boolean enabled) {
+		packedGraphCodes = enabled;
+	}
+
+	/** returns true, if the stop word statistics of the collection are persisted in the Graph Code repository **/
+	public boolean isStopWordStatisticsEnabled() {
+		return stopWordStatistics;
+	}
+
+	/** returns the number of LSH bands of the MinHashCollectionProcessor **/
+	public int getMinHashBands() {
+		return minHashBands;
+	}
+
+	/** returns the number of MinHash values per LSH band of the MinHashCollectionProcessor **/
+	public int getMinHashRows() {
+		return minHashRows;
+	}
+
+	/** returns true, if the HNSW vector index of the Graph Codes is persisted in the Graph Code repository **/
+	public boolean isVectorIndexEnabled() {
+		return vectorIndex;
+	}
+
+	/** returns the number of query results cached per collection, 0 disables the cache **/
+	public int getQueryCacheSize() {
+		return queryCacheSize;
+	}
+
+	/** returns the maximum number of assets ranked by a query, 0 ranks the whole collection **/
+	public int getQueryResultLimit() {
+		return queryResultLimit;
+	}
 }
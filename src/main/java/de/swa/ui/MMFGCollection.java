@@ -4,17 +4,27 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.UUID;
 import java.util.Vector;
 
 import de.swa.gc.GraphCodeGenerator;
+import de.swa.gc.BinaryGraphCodeCodec;
+import de.swa.gc.CompressedGraphCodeCodec;
+import de.swa.gc.GraphCodeCodec;
 import de.swa.gc.GraphCodeIO;
+import de.swa.gc.GraphCodePackStore;
+import de.swa.gc.StopWordStatistics;
 import de.swa.gc.processing.CollectionProcessor;
-import de.swa.gc.processing.DefaultCollectionProcessor;
+import de.swa.gc.processing.GraphCodeEmbedding;
 import de.swa.gc.processing.GraphCodeMeta;
+import de.swa.gc.processing.HnswIndex;
+import de.swa.gc.processing.MappedGraphCodeIndex;
+import de.swa.gc.processing.QueryResultCache;
 import de.swa.gmaf.GMAF;
 import de.swa.mmfg.GeneralMetadata;
 import org.apache.jena.rdf.model.Model;
@@ -51,6 +61,34 @@ public class MMFGCollection {
 	private Vector<ProgressListener> progressListeners = new Vector<ProgressListener>();
 	private Vector<RefreshListener> refreshListeners = new Vector<RefreshListener>();
 	private GraphCode currentQuery;
+	/**
+	 * version of the collection, incremented when MMFGs are added or replaced
+	 **/
+	private long collectionVersion = 0;
+	/**
+	 * cached query results of the collection
+	 **/
+	private QueryResultCache<MMFG> queryResultCache;
+	/**
+	 * query engine of the collection, which keeps the collection processor and its index between queries
+	 **/
+	private QueryEngine queryEngine;
+	/**
+	 * memory-mapped Graph Code index of the repository, shared by all sessions
+	 **/
+	private static MappedGraphCodeIndex graphCodeIndex;
+	/**
+	 * pack store of the repository, shared by all sessions
+	 **/
+	private static GraphCodePackStore graphCodePackStore;
+	/**
+	 * stop word statistics of the repository, shared by all sessions
+	 **/
+	private static StopWordStatistics stopWordStatistics;
+	/**
+	 * HNSW vector index of the repository, shared by all sessions
+	 **/
+	private static HnswIndex vectorIndex;
 
 	/**
 	 * singleton pattern access
@@ -238,11 +276,27 @@ public class MMFGCollection {
 	 * adds a MMFG to the collection
 	 **/
 	public void addToCollection(MMFG m) {
+		add(m);
+		collectionChanged(m, false);
+	}
+
+	private void add(MMFG m) {
 		collection.add(m);
 		fileMap.put(m.getGeneralMetadata().getFileReference(), m);
 		idMap.put(m.getGeneralMetadata().getId(), m);
 	}
 
+	/**
+	 * updates the indexes and statistics of the repository and the collection version, after a MMFG has been added
+	 * or has replaced another one
+	 **/
+	protected void collectionChanged(MMFG m, boolean replace) {
+		indexGraphCode(m);
+		updateStopWordStatistics(m, replace);
+		indexVector(m, replace);
+		incrementCollectionVersion();
+	}
+
 	/**
 	 * returns the collection of MMFGs
 	 **/
@@ -259,7 +313,9 @@ public class MMFGCollection {
 			graphCodeCache.remove(old);
 			collection.remove(old);
 			fileMap.remove(f);
-			addToCollection(m);
+			add(m);
+			replaceStoredGraphCode(old, m);
+			collectionChanged(m, true);
 		} catch (Exception x) {
 			x.printStackTrace();
 		}
@@ -291,6 +347,344 @@ public class MMFGCollection {
 		return null;
 	}
 
+	/**
+	 * returns the memory-mapped Graph Code index of the repository or null, if it is disabled
+	 **/
+	protected static synchronized MappedGraphCodeIndex getGraphCodeIndex() {
+		if (graphCodeIndex == null && Configuration.getInstance().isGraphCodeIndexEnabled()) {
+			try {
+				graphCodeIndex = MappedGraphCodeIndex.open(new File(Configuration.getInstance().getGraphCodeRepository()));
+			} catch (Exception x) {
+				x.printStackTrace();
+			}
+		}
+		return graphCodeIndex;
+	}
+
+	/**
+	 * returns the name of the Graph Code file of a MMFG
+	 **/
+	protected String getGraphCodeFileName(MMFG m) {
+		return m.getGeneralMetadata().getFileName() + ".gc";
+	}
+
+	/**
+	 * appends a Graph Code to the Graph Code index, if it is enabled
+	 **/
+	protected void appendToGraphCodeIndex(String name, GraphCode gc) {
+		MappedGraphCodeIndex index = getGraphCodeIndex();
+		if (index == null || gc == null || gc.getNormalizedDictionary().size() <= 1) return;
+		try {
+			index.append(name, gc);
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+	}
+
+	/**
+	 * adds the Graph Code of a MMFG to the Graph Code index, if it is not indexed yet. Graph Codes of replaced MMFGs
+	 * have already been indexed by replaceStoredGraphCode
+	 **/
+	protected void indexGraphCode(MMFG m) {
+		MappedGraphCodeIndex index = getGraphCodeIndex();
+		if (index == null) return;
+		String name = getGraphCodeFileName(m);
+		if (index.contains(name)) return;
+		GraphCode gc = loadStoredGraphCode(m, getGraphCodeFile(m));
+		if (gc == null) appendToGraphCodeIndex(name, GraphCodeGenerator.generate(m));
+	}
+
+	/**
+	 * returns the pack store of the repository or null, if Graph Codes are stored as single files
+	 **/
+	protected static synchronized GraphCodePackStore getGraphCodePackStore() {
+		if (graphCodePackStore == null && Configuration.getInstance().isGraphCodePackStoreEnabled()) {
+			try {
+				String format = Configuration.getInstance().getGraphCodeFormat();
+				GraphCodeCodec codec = format.equalsIgnoreCase("compressed") ? new CompressedGraphCodeCodec() : new BinaryGraphCodeCodec();
+				graphCodePackStore = new GraphCodePackStore(new File(Configuration.getInstance().getGraphCodeRepository() + File.separatorChar + "packs"),
+						GraphCodePackStore.DEFAULT_SEGMENT_SIZE, codec);
+			} catch (Exception x) {
+				x.printStackTrace();
+			}
+		}
+		return graphCodePackStore;
+	}
+
+	/**
+	 * closes the Graph Code index and the pack store of the repository, they are opened again on their next use
+	 **/
+	public static synchronized void closeGraphCodeStores() {
+		try {
+			if (graphCodePackStore != null) graphCodePackStore.close();
+			if (graphCodeIndex != null) graphCodeIndex.close();
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+		graphCodePackStore = null;
+		graphCodeIndex = null;
+	}
+
+	/**
+	 * returns the Graph Code file of a MMFG
+	 **/
+	protected File getGraphCodeFile(MMFG m) {
+		return new File(Configuration.getInstance().getGraphCodeRepository() + File.separatorChar + getGraphCodeFileName(m));
+	}
+
+	/**
+	 * returns the key of a MMFG's Graph Code in the pack store. It is derived from the Graph Code file name, as the
+	 * UUIDs of assets without MMFG file change with every start
+	 **/
+	protected UUID getGraphCodeId(MMFG m) {
+		return UUID.nameUUIDFromBytes(getGraphCodeFileName(m).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * loads the stored Graph Code of a MMFG from the Graph Code index, the pack store or its Graph Code file f,
+	 * returns null if no Graph Code is stored. Graph Codes read from files are added to the index and the pack store,
+	 * a corrupt index record is read as missing and superseded
+	 **/
+	protected GraphCode loadStoredGraphCode(MMFG m, File f) {
+		MappedGraphCodeIndex index = getGraphCodeIndex();
+		if (index != null && index.contains(f.getName())) {
+			GraphCode gc = index.read(f.getName());
+			if (gc != null) return gc;
+		}
+		GraphCodePackStore store = getGraphCodePackStore();
+		GraphCode gc = null;
+		if (store != null && store.contains(getGraphCodeId(m)))
+			gc = GraphCodeIO.read(store, getGraphCodeId(m));
+		else if (f.exists()) {
+			gc = GraphCodeIO.read(f);
+			if (store != null && gc != null) GraphCodeIO.write(gc, store, getGraphCodeId(m));
+		}
+		appendToGraphCodeIndex(f.getName(), gc);
+		return gc;
+	}
+
+	/**
+	 * stores a generated Graph Code of a MMFG in the pack store or in its Graph Code file f
+	 **/
+	protected void storeGraphCode(MMFG m, File f, GraphCode gc) {
+		GraphCodePackStore store = getGraphCodePackStore();
+		if (store != null) GraphCodeIO.write(gc, store, getGraphCodeId(m));
+		else GraphCodeIO.write(gc, f, GraphCodeIO.getCodec(Configuration.getInstance().getGraphCodeFormat()));
+		appendToGraphCodeIndex(f.getName(), gc);
+	}
+
+	/**
+	 * replaces the stored Graph Code of a replaced MMFG by the generated Graph Code of the new MMFG, so the query
+	 * engine, the stop word statistics and the vector index all load the new one. Graph Codes of less than two terms
+	 * are not stored, their stale file is deleted and the index entry is superseded
+	 **/
+	protected void replaceStoredGraphCode(MMFG old, MMFG m) {
+		removeStoredGraphCode(old);
+		File f = getGraphCodeFile(m);
+		GraphCode gc = GraphCodeGenerator.generate(m);
+		if (gc.getNormalizedDictionary().size() > 1) {
+			storeGraphCode(m, f, gc);
+			return;
+		}
+		if (f.exists() && !f.delete()) System.out.println("could not delete stale Graph Code " + f.getAbsolutePath());
+		MappedGraphCodeIndex index = getGraphCodeIndex();
+		if (index == null || !index.contains(f.getName())) return;
+		try {
+			index.append(f.getName(), gc);
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+	}
+
+	/**
+	 * removes the Graph Code of a replaced MMFG from the pack store
+	 **/
+	protected void removeStoredGraphCode(MMFG m) {
+		GraphCodePackStore store = getGraphCodePackStore();
+		if (store == null || m == null) return;
+		try {
+			store.delete(getGraphCodeId(m));
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+	}
+
+	/**
+	 * returns the stop word statistics of the repository. Persisted statistics are loaded from the Graph Code repository,
+	 * otherwise they are calculated from the collection on the first call. Afterwards they are updated when MMFGs are
+	 * added or replaced
+	 **/
+	public StopWordStatistics getStopWordStatistics() {
+		synchronized (MMFGCollection.class) {
+			if (stopWordStatistics == null) {
+				StopWordStatistics statistics = new StopWordStatistics();
+				if (Configuration.getInstance().isStopWordStatisticsEnabled()) {
+					try {
+						statistics = new StopWordStatistics(new File(Configuration.getInstance().getGraphCodeRepository()));
+					} catch (Exception x) {
+						x.printStackTrace();
+					}
+				}
+				stopWordStatistics = statistics;
+				for (MMFG m : new Vector<MMFG>(getCollection())) updateStopWordStatistics(statistics, m, false);
+			}
+			return stopWordStatistics;
+		}
+	}
+
+	/**
+	 * adds the terms of a MMFG's Graph Code to the stop word statistics, if they are persisted or have already been
+	 * calculated. Known Graph Codes are only replaced on request
+	 **/
+	protected void updateStopWordStatistics(MMFG m, boolean replace) {
+		StopWordStatistics statistics;
+		if (Configuration.getInstance().isStopWordStatisticsEnabled()) statistics = getStopWordStatistics();
+		else synchronized (MMFGCollection.class) {
+			statistics = stopWordStatistics;
+		}
+		if (statistics != null) updateStopWordStatistics(statistics, m, replace);
+	}
+
+	private void updateStopWordStatistics(StopWordStatistics statistics, MMFG m, boolean replace) {
+		String name = getGraphCodeFileName(m);
+		if (!replace && statistics.contains(name)) return;
+		try {
+			statistics.add(name, getGraphCodeToIndex(m));
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+	}
+
+	/**
+	 * returns the stored Graph Code of a MMFG or generates it, if it is not stored
+	 **/
+	private GraphCode getGraphCodeToIndex(MMFG m) {
+		GraphCode gc = loadStoredGraphCode(m, getGraphCodeFile(m));
+		if (gc == null) gc = GraphCodeGenerator.generate(m);
+		return gc;
+	}
+
+	/**
+	 * returns the HNSW vector index of the repository or null, if it is not persisted
+	 **/
+	public static synchronized HnswIndex getVectorIndex() {
+		if (vectorIndex == null && Configuration.getInstance().isVectorIndexEnabled()) {
+			try {
+				vectorIndex = HnswIndex.open(new File(Configuration.getInstance().getGraphCodeRepository(), HnswIndex.FILE_NAME),
+						GraphCodeEmbedding.DEFAULT_DIMENSION);
+			} catch (Exception x) {
+				x.printStackTrace();
+			}
+		}
+		return vectorIndex;
+	}
+
+	/**
+	 * inserts the embedding of a MMFG's Graph Code into the vector index, an indexed Graph Code is only replaced on request
+	 **/
+	protected void indexVector(MMFG m, boolean replace) {
+		HnswIndex index = getVectorIndex();
+		if (index == null) return;
+		String name = getGraphCodeFileName(m);
+		if (!replace && index.contains(name)) return;
+		try {
+			index.insert(name, new GraphCodeEmbedding(index.getDimension()).embed(getGraphCodeToIndex(m)));
+		} catch (Exception x) {
+			x.printStackTrace();
+		}
+	}
+
+	/**
+	 * returns the version of the collection, which is incremented when MMFGs are added or replaced
+	 **/
+	public synchronized long getCollectionVersion() {
+		return collectionVersion;
+	}
+
+	/**
+	 * increments the collection version, so cached query results are no longer used
+	 **/
+	protected synchronized void incrementCollectionVersion() {
+		collectionVersion++;
+	}
+
+	/**
+	 * returns the query result cache of the collection
+	 **/
+	public synchronized QueryResultCache<MMFG> getQueryResultCache() {
+		if (queryResultCache == null) queryResultCache = new QueryResultCache<MMFG>(Configuration.getInstance().getQueryCacheSize());
+		return queryResultCache;
+	}
+
+	/**
+	 * returns the cached result of a query for a collection version with the similarities of its MMFGs restored,
+	 * or null if the result is not cached
+	 **/
+	protected Vector<MMFG> getCachedQueryResult(GraphCode gcQuery, int type, long version) {
+		QueryResultCache.Result<MMFG> cached = getQueryResultCache().get(gcQuery, type, getQueryEngine().getProcessorClass(),
+				getQueryEngine().getResultLimit(), version);
+		if (cached == null) return null;
+		Vector<MMFG> result = new Vector<MMFG>(cached.getItems().size());
+		for (int i = 0; i < cached.getItems().size(); i++) {
+			MMFG m = cached.getItems().get(i);
+			m.setTempSimilarity(cached.getMetric(i));
+			result.add(m);
+		}
+		return result;
+	}
+
+	/**
+	 * caches the result of a query for a collection version
+	 **/
+	protected void cacheQueryResult(GraphCode gcQuery, int type, long version, Vector<MMFG> result) {
+		Vector<float[]> metrics = new Vector<float[]>(result.size());
+		for (MMFG m : result) metrics.add(m.getTempSimilarity());
+		getQueryResultCache().put(gcQuery, type, getQueryEngine().getProcessorClass(),
+				getQueryEngine().getResultLimit(), version, result, metrics);
+	}
+
+	/**
+	 * returns the query engine of the collection
+	 **/
+	public synchronized QueryEngine getQueryEngine() {
+		if (queryEngine == null) queryEngine = new QueryEngine(this);
+		return queryEngine;
+	}
+
+	/**
+	 * returns the stored Graph Code of a MMFG for the query engine, a missing Graph Code is generated and stored
+	 **/
+	protected GraphCode getQueryGraphCode(MMFG m) {
+		File f = getGraphCodeFile(m);
+		GraphCode gc = loadStoredGraphCode(m, f);
+		if (gc == null) {
+			gc = GraphCodeGenerator.generate(m);
+			if (gc.getNormalizedDictionary().size() > 1) storeGraphCode(m, f, gc);
+		}
+		return gc;
+	}
+
+	/**
+	 * returns the GraphCodeMeta of a MMFG for the query engine. Graph Codes of the Graph Code index are not decoded
+	 * before the collection processor accesses them, so the first query after a start does not decode the whole
+	 * collection up front
+	 **/
+	protected GraphCodeMeta getQueryGraphCodeMeta(final MMFG m) {
+		String name = getGraphCodeFileName(m);
+		MappedGraphCodeIndex index = getGraphCodeIndex();
+		if (index == null || !index.contains(name)) return new GraphCodeMeta(name, getQueryGraphCode(m));
+		return new GraphCodeMeta(name, null) {
+			public synchronized GraphCode getGraphcode() {
+				GraphCode gc = super.getGraphcode();
+				if (gc == null) {
+					gc = getQueryGraphCode(m);
+					setGraphcode(gc);
+				}
+				return gc;
+			}
+		};
+	}
+
 	public GraphCode getCurrentQuery() {
 		return currentQuery;
 	}
@@ -325,58 +719,44 @@ public class MMFGCollection {
 		return collection.indexOf(m);
 	}
 
+	/**
+	 * returns the ranked MMFGs of a query from the query result cache or the query engine and moves them to the
+	 * front of the collection
+	 **/
 	public Vector<MMFG> processQuery(GraphCode gcQuery, int type) {
-		CollectionProcessor cp = new DefaultCollectionProcessor();
-		try {
-			String collectionProcessorClass = Configuration.getInstance().getCollectionProcessorClass();
-			Class c = Class.forName(collectionProcessorClass);
-			cp = (CollectionProcessor) c.newInstance();
-		} catch (Exception ex) {
-			System.out.println("no collection processor defined.");
-			System.out.println("using " + cp.getClass() + " instead");
+		long version = getCollectionVersion();
+		Vector<MMFG> result = getCachedQueryResult(gcQuery, type, version);
+		if (result == null) {
+			result = getQueryEngine().query(gcQuery, type);
+			cacheQueryResult(gcQuery, type, version, result);
 		}
-		cp.setOperation(type);
-
-		Vector<GraphCodeMeta> v = new Vector<GraphCodeMeta>();
-		Hashtable<String, MMFG> queryCache = new Hashtable<String, MMFG>();
+		rankCollection(result);
+		return result;
+	}
 
-		for (MMFG m : collection) {
-			GraphCode gc = null;
-			File f = new File(Configuration.getInstance().getGraphCodeRepository() + File.separatorChar
-					+ m.getGeneralMetadata().getFileName() + ".gc");
-			if (graphCodeCache.containsKey(m))
-				gc = graphCodeCache.get(m);
-			else if (f.exists()) {
-				gc = GraphCodeIO.read(f);
-				graphCodeCache.put(m, gc);
+	/**
+	 * orders the collection by a query result. MMFGs, which are not part of a limited result, keep their order behind
+	 * it and their similarity is reset
+	 **/
+	protected void rankCollection(Vector<MMFG> result) {
+		Vector<MMFG> c = getCollection();
+		synchronized (c) {
+			IdentityHashMap<MMFG, Boolean> ranked = new IdentityHashMap<MMFG, Boolean>(c.size() * 2);
+			for (MMFG m : c) ranked.put(m, Boolean.FALSE);
+			Vector<MMFG> order = new Vector<MMFG>(c.size());
+			for (MMFG m : result) {
+				if (ranked.get(m) != Boolean.FALSE) continue;
+				ranked.put(m, Boolean.TRUE);
+				order.add(m);
 			}
-			if (gc == null) {
-				gc = GraphCodeGenerator.generate(m);
-				if (gc.getDictionary().size() > 1) {
-					GraphCodeIO.write(gc, f);
-					graphCodeCache.put(m, gc);
-				}
+			for (MMFG m : c) {
+				if (ranked.get(m) == Boolean.TRUE) continue;
+				m.setTempSimilarity(new float[] {0f, 0f, 0f});
+				order.add(m);
 			}
-
-			String gcName = m.getGeneralMetadata().getFileName() + ".gc";
-			GraphCodeMeta gcm = new GraphCodeMeta(gcName, gc);
-			queryCache.put(gcName, m);
-			v.add(gcm);
-		}
-
-		cp.setQueryObject(gcQuery);
-		cp.preloadIndex(v);
-		cp.execute();
-		v = cp.getResultList();
-
-		Vector<MMFG> tempCollection = new Vector<MMFG>();
-		for (GraphCodeMeta gcm : v) {
-			MMFG m = queryCache.get(gcm.getFileName());
-			m.setTempSimilarity(gcm.getMetric());
-			tempCollection.add(m);
+			c.clear();
+			c.addAll(order);
 		}
-		collection = tempCollection;
-		return tempCollection;
 	}
 
 	/**
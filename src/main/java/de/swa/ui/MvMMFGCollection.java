@@ -2,10 +2,7 @@ package de.swa.ui;
 
 import de.swa.gc.GraphCode;
 import de.swa.gc.GraphCodeGenerator;
-import de.swa.gc.GraphCodeIO;
 import de.swa.gc.processing.CollectionProcessor;
-import de.swa.gc.processing.DefaultCollectionProcessor;
-import de.swa.gc.processing.GraphCodeMeta;
 import de.swa.gmaf.GMAF;
 import de.swa.mmfg.CompositionRelationship;
 import de.swa.mmfg.GeneralMetadata;
@@ -181,6 +178,11 @@ public class MvMMFGCollection extends MMFGCollection {
 
 	/** adds a MMFG to the collection **/
 	public void addToCollection(MMFG m) {
+		add(m);
+		collectionChanged(m, false);
+	}
+
+	private void add(MMFG m) {
 		collection.add(m);
 		fileMap.put(m.getGeneralMetadata().getFileReference(), m);
 		idMap.put(m.getGeneralMetadata().getId(), m);
@@ -198,7 +200,9 @@ public class MvMMFGCollection extends MMFGCollection {
 			graphCodeCache.remove(old);
 			collection.remove(old);
 			fileMap.remove(f);
-			addToCollection(m);
+			add(m);
+			replaceStoredGraphCode(old, m);
+			collectionChanged(m, true);
 		} catch (Exception x) {
 			x.printStackTrace();
 		}
@@ -242,6 +246,11 @@ public class MvMMFGCollection extends MMFGCollection {
 		return v;
 	}
 
+	/** returns the name of the Graph Code file of a MMFG, multi-view assets are stored per camera model **/
+	protected String getGraphCodeFileName(MMFG m) {
+		return m.getGeneralMetadata().getFileName() + "_" + m.getGeneralMetadata().getCameraModel() + ".gc";
+	}
+
 	/** returns or generates a Graph Code for a given MMFG **/
 	public GraphCode getOrGenerateGraphCode(MMFG mmfg) {
 		if (graphCodeCache.containsKey(mmfg))
@@ -260,60 +269,6 @@ public class MvMMFGCollection extends MMFGCollection {
 		return collection.indexOf(m);
 	}
 
-	public Vector<MMFG> processQuery(GraphCode gcQuery, int type) {
-		CollectionProcessor cp = new DefaultCollectionProcessor();
-		try {
-			String collectionProcessorClass = Configuration.getInstance().getCollectionProcessorClass();
-			Class c = Class.forName(collectionProcessorClass);
-			cp = (CollectionProcessor) c.newInstance();
-		} catch (Exception ex) {
-			System.out.println("no collection processor defined.");
-			System.out.println("using " + cp.getClass() + " instead");
-		}
-		cp.setOperation(type);
-
-		Vector<GraphCodeMeta> v = new Vector<GraphCodeMeta>();
-		Hashtable<String, MMFG> queryCache = new Hashtable<String, MMFG>();
-
-		for (MMFG m : collection) {
-			GraphCode gc = null;
-			File f = new File(Configuration.getInstance().getGraphCodeRepository() + File.separatorChar
-					+ m.getGeneralMetadata().getFileName() + "_" + m.getGeneralMetadata().getCameraModel() + ".gc");
-			if (graphCodeCache.containsKey(m))
-				gc = graphCodeCache.get(m);
-			else if (f.exists()) {
-				gc = GraphCodeIO.read(f);
-				graphCodeCache.put(m, gc);
-			}
-			if (gc == null) {
-				gc = GraphCodeGenerator.generate(m);
-				if (gc.getDictionary().size() > 1) {
-					GraphCodeIO.write(gc, f);
-					graphCodeCache.put(m, gc);
-				}
-			}
-
-			String gcName = m.getGeneralMetadata().getFileName() + m.getGeneralMetadata().getCameraModel() + ".gc";
-			GraphCodeMeta gcm = new GraphCodeMeta(gcName, gc);
-			queryCache.put(gcName, m);
-			v.add(gcm);
-		}
-
-		cp.setQueryObject(gcQuery);
-		cp.preloadIndex(v);
-		cp.execute();
-		v = cp.getResultList();
-
-		Vector<MMFG> tempCollection = new Vector<MMFG>();
-		for (GraphCodeMeta gcm : v) {
-			MMFG m = queryCache.get(gcm.getFileName());
-			m.setTempSimilarity(gcm.getMetric());
-			tempCollection.add(m);
-		}
-		collection = tempCollection;
-		return tempCollection;
-	}
-
 	public static boolean isQuery = false;
 
 	/** returns recommended assets based on a Graph Code query **/
@@ -0,0 +1,142 @@
+package de.swa.ui;
+
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.processing.CollectionProcessor;
+import de.swa.gc.processing.DefaultCollectionProcessor;
+import de.swa.gc.processing.GraphCodeMeta;
+import de.swa.mmfg.MMFG;
+
+/**
+ * Long-lived query engine of a MMFG collection. It keeps the collection processor, the Graph Code of every MMFG and
+ * the processor's index between queries. When the collection version has changed, the Graph Codes of added MMFGs are
+ * loaded or generated, replaced MMFGs are dropped and the processor's index is updated. Queries on an unchanged
+ * collection only pay for scoring. Queries rank at most queryResultLimit MMFGs, so processors can skip MMFGs, which
+ * cannot reach the limit. Queries of one engine are executed one after another.
+ */
+public class QueryEngine {
+	private final MMFGCollection mmfgCollection;
+	private CollectionProcessor processor;
+	private String processorClass;
+	/** Graph Codes of the collection in the order they have been added **/
+	private Vector<GraphCodeMeta> graphCodes = new Vector<GraphCodeMeta>();
+	private IdentityHashMap<MMFG, GraphCodeMeta> metas = new IdentityHashMap<MMFG, GraphCodeMeta>();
+	private IdentityHashMap<GraphCodeMeta, MMFG> mmfgs = new IdentityHashMap<GraphCodeMeta, MMFG>();
+	/** collection version the Graph Codes have been updated for **/
+	private long version = -1;
+	private boolean preloaded = false;
+	/** maximum number of ranked MMFGs, 0 ranks the whole collection **/
+	private int resultLimit;
+	/** true, if the processor has been given and does not follow the configuration **/
+	private final boolean fixedProcessor;
+
+	public QueryEngine(MMFGCollection mmfgCollection) {
+		this.mmfgCollection = mmfgCollection;
+		resultLimit = Configuration.getInstance().getQueryResultLimit();
+		fixedProcessor = false;
+	}
+
+	/** creates a query engine, which uses the given collection processor instead of the configured one **/
+	public QueryEngine(MMFGCollection mmfgCollection, CollectionProcessor processor) {
+		this.mmfgCollection = mmfgCollection;
+		resultLimit = Configuration.getInstance().getQueryResultLimit();
+		this.processor = processor;
+		processorClass = processor.getClass().getName();
+		fixedProcessor = true;
+	}
+
+	/** returns the class name of the collection processor used for queries **/
+	public synchronized String getProcessorClass() {
+		if (fixedProcessor) return processorClass;
+		return Configuration.getInstance().getCollectionProcessorClass();
+	}
+
+	/** sets the maximum number of ranked MMFGs, 0 ranks the whole collection **/
+	public synchronized void setResultLimit(int limit) {
+		resultLimit = Math.max(0, limit);
+	}
+
+	public synchronized int getResultLimit() {
+		return resultLimit;
+	}
+
+	/** returns the collection's best MMFGs for a query up to the result limit, ranked, and sets their similarities **/
+	public synchronized Vector<MMFG> query(GraphCode gcQuery, int type) {
+		CollectionProcessor cp = getProcessor();
+		update(cp);
+		cp.setOperation(type);
+		cp.setTopK(resultLimit);
+		cp.setQueryObject(gcQuery);
+		cp.execute();
+		Vector<GraphCodeMeta> v = cp.getResultList();
+
+		Vector<MMFG> result = new Vector<MMFG>(v.size());
+		for (GraphCodeMeta gcm : v) {
+			MMFG m = mmfgs.get(gcm);
+			m.setTempSimilarity(gcm.getMetric());
+			result.add(m);
+		}
+		return result;
+	}
+
+	/** returns the number of Graph Codes the engine holds **/
+	public synchronized int size() {
+		return graphCodes.size();
+	}
+
+	/** returns the collection processor, a configured one is only instantiated again if the configuration changes **/
+	private CollectionProcessor getProcessor() {
+		if (fixedProcessor) return processor;
+		String collectionProcessorClass = Configuration.getInstance().getCollectionProcessorClass();
+		if (processor != null && collectionProcessorClass != null && collectionProcessorClass.equals(processorClass)) return processor;
+		CollectionProcessor cp = new DefaultCollectionProcessor();
+		try {
+			Class c = Class.forName(collectionProcessorClass);
+			cp = (CollectionProcessor) c.newInstance();
+		} catch (Exception ex) {
+			System.out.println("no collection processor defined.");
+			System.out.println("using " + cp.getClass() + " instead");
+		}
+		processorClass = collectionProcessorClass;
+		processor = cp;
+		preloaded = false;
+		return cp;
+	}
+
+	/** updates the Graph Codes to the current collection and preloads the processor's index, if anything changed **/
+	private void update(CollectionProcessor cp) {
+		long current = mmfgCollection.getCollectionVersion();
+		if (current != version) {
+			Vector<MMFG> collection = new Vector<MMFG>(mmfgCollection.getCollection());
+			IdentityHashMap<MMFG, GraphCodeMeta> newMetas = new IdentityHashMap<MMFG, GraphCodeMeta>(collection.size() * 2);
+			for (MMFG m : collection) newMetas.put(m, metas.get(m));
+
+			Vector<GraphCodeMeta> newGraphCodes = new Vector<GraphCodeMeta>(collection.size());
+			IdentityHashMap<GraphCodeMeta, MMFG> newMmfgs = new IdentityHashMap<GraphCodeMeta, MMFG>(collection.size() * 2);
+			for (GraphCodeMeta gcm : graphCodes) {
+				MMFG m = mmfgs.get(gcm);
+				if (newMetas.get(m) != gcm) continue;
+				newGraphCodes.add(gcm);
+				newMmfgs.put(gcm, m);
+			}
+			for (MMFG m : collection) {
+				if (newMetas.get(m) != null) continue;
+				GraphCodeMeta gcm = mmfgCollection.getQueryGraphCodeMeta(m);
+				newMetas.put(m, gcm);
+				newGraphCodes.add(gcm);
+				newMmfgs.put(gcm, m);
+			}
+			graphCodes = newGraphCodes;
+			metas = newMetas;
+			mmfgs = newMmfgs;
+			version = current;
+			preloaded = false;
+		}
+		if (!preloaded) {
+			cp.preloadIndex(graphCodes);
+			preloaded = true;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package de.swa.gc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+class AlignedGraphCodeMetricTest {
+    private static final String[] TERMS = { "person", "Person", "car", "tree", "face_1", "a", "  ", "sky", "dog", "flash photography" };
+
+    private static GraphCode randomGraphCode(Random r, int size, int edges, boolean compact) {
+        Vector<String> dict = new Vector<>();
+        for (int i = 0; i < size; i++) {
+            dict.add(r.nextInt(3) == 0 ? TERMS[r.nextInt(TERMS.length)] : "term" + r.nextInt(size * 2));
+        }
+        GraphCode gc = new GraphCode();
+        gc.setDictionary(dict);
+        for (int n = 0; n < edges; n++) {
+            int x = r.nextInt(size);
+            int y = r.nextInt(size);
+            gc.setValue(x, y, r.nextInt(4) == 0 ? 1 : 11 + r.nextInt(11));
+        }
+        return compact ? new CompactGraphCode(gc) : gc;
+    }
+
+    @Test
+    void calculateSimilarity_EqualsGraphCodeMetric() {
+        Random r = new Random(7);
+        for (int n = 0; n < 500; n++) {
+            int querySize = 1 + r.nextInt(50);
+            int size = 1 + r.nextInt(50);
+            GraphCode query = randomGraphCode(r, querySize, r.nextInt(querySize * 3), r.nextBoolean());
+            GraphCode candidate = randomGraphCode(r, size, r.nextInt(size * 3), r.nextBoolean());
+            assertArrayEquals(GraphCodeMetric.calculateSimilarity(query, candidate),
+                    AlignedGraphCodeMetric.calculateSimilarity(query, candidate), "iteration " + n);
+            assertArrayEquals(GraphCodeMetric.calculateSimilarity(query, query),
+                    AlignedGraphCodeMetric.calculateSimilarity(query, query), "self similarity " + n);
+        }
+    }
+
+    @Test
+    void calculateSimilarity_EmptyQuery() {
+        GraphCode query = new GraphCode();
+        query.setDictionary(new Vector<>());
+        GraphCode candidate = randomGraphCode(new Random(1), 5, 5, false);
+        assertArrayEquals(new float[] {0f, 0f, 0f}, AlignedGraphCodeMetric.calculateSimilarity(query, candidate));
+    }
+}
@@ -0,0 +1,104 @@
+package de.swa.gc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AllPairsSimilarityTest {
+	@TempDir
+	File folder;
+
+	/** Graph Codes with normalized dictionaries over a small shared vocabulary **/
+	private static Vector<GraphCode> graphCodes(Random r, int n) {
+		Vector<GraphCode> gcs = new Vector<>();
+		for (int i = 0; i < n; i++) {
+			Vector<String> dict = new Vector<>();
+			int size = r.nextInt(40);
+			for (int t = 0; t < size; t++) {
+				String term = "term" + r.nextInt(50);
+				if (!dict.contains(term)) dict.add(term);
+			}
+			GraphCode gc = new GraphCode();
+			gc.setDictionary(dict);
+			for (int e = 0; e < dict.size() * 3; e++) gc.setValue(r.nextInt(dict.size()), r.nextInt(dict.size()), 1 + r.nextInt(3));
+			gcs.add(gc);
+		}
+		return gcs;
+	}
+
+	private static void assertEqualsMetric(Vector<GraphCode> gcs, float[][][] matrix) {
+		for (int i = 0; i < gcs.size(); i++) {
+			for (int j = 0; j < gcs.size(); j++) {
+				assertArrayEquals(GraphCodeMetric.calculateSimilarity(gcs.get(i), gcs.get(j)), matrix[i][j], i + "," + j);
+			}
+		}
+	}
+
+	@Test
+	void matrix_equalsGraphCodeMetric() {
+		Vector<GraphCode> gcs = graphCodes(new Random(21), 70);
+		for (int tileSize : new int[] { 1, 16, 128 }) assertEqualsMetric(gcs, new AllPairsSimilarity(gcs, tileSize).calculateMatrix());
+	}
+
+	@Test
+	void matrix_equalsGraphCodeMetricForUnnormalizedDictionaries() {
+		Random r = new Random(22);
+		Vector<GraphCode> gcs = graphCodes(r, 20);
+		for (int i = 0; i < 20; i++) {
+			// duplicate, upper case and single character terms
+			Vector<String> dict = new Vector<>();
+			int size = 1 + r.nextInt(40);
+			for (int t = 0; t < size; t++) dict.add(r.nextInt(8) == 0 ? "x" : (r.nextBoolean() ? "Term" : "term") + r.nextInt(50));
+			GraphCode gc = new GraphCode();
+			gc.setDictionary(dict);
+			for (int e = 0; e < size * 3; e++) gc.setValue(r.nextInt(size), r.nextInt(size), 1 + r.nextInt(3));
+			gcs.add(gc);
+		}
+		assertEqualsMetric(gcs, new AllPairsSimilarity(gcs, 8).calculateMatrix());
+	}
+
+	@Test
+	void rowSums_equalSumsOfTheMatrix() {
+		Vector<GraphCode> gcs = graphCodes(new Random(23), 50);
+		double[] sums = new AllPairsSimilarity(gcs, 7).calculateRowSums(1000000, 1000, 1);
+		for (int i = 0; i < gcs.size(); i++) {
+			double expected = 0;
+			for (int j = 0; j < gcs.size(); j++) {
+				float[] sim = GraphCodeMetric.calculateSimilarity(gcs.get(i), gcs.get(j));
+				expected += sim[0] * 1000000 + sim[1] * 1000 + sim[2];
+			}
+			assertEquals(expected, sums[i], 1e-3);
+		}
+	}
+
+	@Test
+	void sparseResult_containsPairsAboveThreshold() throws IOException {
+		final Vector<GraphCode> gcs = graphCodes(new Random(24), 60);
+		File f = new File(folder, "similarity.gcs");
+		long written = new AllPairsSimilarity(gcs, 16).writeSparse(f, 0.3f);
+
+		int expected = 0;
+		for (int i = 0; i < gcs.size(); i++) {
+			for (int j = 0; j < gcs.size(); j++) {
+				if (i != j && GraphCodeMetric.calculateSimilarity(gcs.get(i), gcs.get(j))[0] >= 0.3f) expected++;
+			}
+		}
+		assertEquals(expected, written);
+		final int[] read = new int[1];
+		int size = AllPairsSimilarity.readSparse(f, new AllPairsSimilarity.SimilarityVisitor() {
+			public void visit(int i, int j, float[] similarity) {
+				assertArrayEquals(GraphCodeMetric.calculateSimilarity(gcs.get(i), gcs.get(j)), similarity);
+				read[0]++;
+			}
+		});
+		assertEquals(gcs.size(), size);
+		assertEquals(expected, read[0]);
+	}
+}
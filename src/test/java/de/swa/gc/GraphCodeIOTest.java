@@ -0,0 +1,309 @@
+package de.swa.gc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+
+class GraphCodeIOTest {
+	@TempDir
+	File folder;
+
+	static GraphCode graphCode(Random r, int size, int edges, boolean unicode) {
+		Vector<String> dict = new Vector<>();
+		for (int i = 0; i < size; i++) dict.add(unicode && r.nextInt(5) == 0 ? "stra\u00dfe" + i : "term" + i);
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(dict);
+		for (int n = 0; n < edges; n++) gc.setValue(r.nextInt(size), r.nextInt(size), r.nextInt(400) - 100);
+		return gc;
+	}
+
+	static void assertSameGraphCode(GraphCode expected, GraphCode actual) {
+		assertEquals(expected.getDictionary(), actual.getDictionary());
+		for (int x = 0; x < expected.getDictionarySize(); x++) {
+			for (int y = 0; y < expected.getDictionarySize(); y++) {
+				assertEquals(expected.getValue(x, y), actual.getValue(x, y), x + "," + y);
+			}
+		}
+	}
+
+	@Test
+	void binary_roundTripsDenseAndSparseGraphCodes() throws IOException {
+		Random r = new Random(15);
+		for (int size : new int[] { 0, 1, 5, 31, 32, 200 }) {
+			GraphCode gc = graphCode(r, size, size * 3, true);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			new BinaryGraphCodeCodec().encode(gc, out);
+			assertSameGraphCode(gc, new BinaryGraphCodeCodec().decode(new ByteArrayInputStream(out.toByteArray())));
+		}
+	}
+
+	@Test
+	void read_detectsBinaryAndJsonFiles() {
+		GraphCode gc = graphCode(new Random(16), 20, 60, true);
+		File json = new File(folder, "a.gc");
+		File binary = new File(folder, "a.gcb");
+		GraphCodeIO.write(gc, json);
+		GraphCodeIO.write(gc, binary);
+		assertSameGraphCode(gc, GraphCodeIO.read(json));
+		assertSameGraphCode(gc, GraphCodeIO.read(binary));
+		assertTrue(binary.length() < json.length());
+
+		File gc2 = new File(folder, "b.gc");
+		GraphCodeIO.write(gc, gc2, true);
+		assertSameGraphCode(gc, GraphCodeIO.read(gc2));
+	}
+
+	@Test
+	void decode_rejectsCorruptData() throws IOException {
+		GraphCode gc = graphCode(new Random(17), 10, 20, true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new BinaryGraphCodeCodec().encode(gc, out);
+		byte[] data = out.toByteArray();
+		data[data.length / 2] ^= 0x10;
+		assertThrows(IOException.class, () -> new BinaryGraphCodeCodec().decode(new ByteArrayInputStream(data)));
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), data.length - 3);
+		assertThrows(IOException.class, () -> new BinaryGraphCodeCodec().decode(new ByteArrayInputStream(truncated)));
+	}
+
+	@Test
+	void decode_rejectsLengthsBeyondTheInput() {
+		// one term of 2^31-1 bytes
+		byte[] term = { (byte)0x89, 'G', 'C', 'B', 2, 1, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07, 'a' };
+		assertThrows(IOException.class, () -> new BinaryGraphCodeCodec().decode(new ByteArrayInputStream(term)));
+		// 2^28 terms and 2^31-1 edges of an empty dictionary
+		byte[] terms = { (byte)0x89, 'G', 'C', 'B', 2, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, 0x01, 1, 'a' };
+		assertThrows(IOException.class, () -> new BinaryGraphCodeCodec().decode(new ByteArrayInputStream(terms)));
+		byte[] edges = { (byte)0x89, 'G', 'C', 'B', 2, 0, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07 };
+		assertThrows(IOException.class, () -> new BinaryGraphCodeCodec().decode(new ByteArrayInputStream(edges)));
+	}
+
+	@Test
+	void binary_roundTripsCollectionElements() throws IOException {
+		Random r = new Random(19);
+		GraphCode gc = graphCode(r, 8, 20, true);
+		GraphCode element = graphCode(r, 5, 10, false);
+		element.addGraphCode(graphCode(r, 3, 4, false));
+		gc.addGraphCode(element);
+		gc.addGraphCode(graphCode(r, 0, 0, false));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new BinaryGraphCodeCodec().encode(gc, out);
+
+		GraphCode decoded = new BinaryGraphCodeCodec().decode(new ByteArrayInputStream(out.toByteArray()));
+		assertSameGraphCode(gc, decoded);
+		assertEquals(2, decoded.getCollectionElements().size());
+		assertSameGraphCode(element, decoded.getCollectionElements().get(0));
+		assertSameGraphCode(element.getCollectionElements().get(0), decoded.getCollectionElements().get(0).getCollectionElements().get(0));
+		assertEquals(0, decoded.getCollectionElements().get(1).getDictionarySize());
+	}
+
+	@Test
+	void read_returnsNullForCorruptBinaryFile() throws IOException {
+		File f = new File(folder, "c.gcb");
+		GraphCodeIO.write(graphCode(new Random(18), 10, 20, true), f);
+		RandomAccessFile rf = new RandomAccessFile(f, "rw");
+		rf.setLength(rf.length() - 1);
+		rf.close();
+		assertNull(GraphCodeIO.read(f));
+	}
+
+	@Test
+	void jsonCodec_writesLikeGsonAndReadsGsonOutput() throws IOException {
+		Random r = new Random(19);
+		Gson gson = new Gson();
+		for (int size : new int[] { 0, 3, 20, 40 }) {
+			GraphCode gc = graphCode(r, size, size * 2, true);
+			gc.addGraphCode(graphCode(r, 4, 5, false));
+			for (GraphCode g : new GraphCode[] { gc, new CompactGraphCode(graphCode(r, size, size, false)) }) {
+				StringWriter out = new StringWriter();
+				new JsonGraphCodeCodec().encode(g, out);
+				if (!g.isSparse() && !g.isPacked()) assertEquals(gson.toJson(g), out.toString());
+				assertSameGraphCode(g, new JsonGraphCodeCodec().decode(new StringReader(out.toString())));
+				// former versions wrote sparse and packed relationships as they are stored
+				GraphCode copy = new JsonGraphCodeCodec().decode(new StringReader(gson.toJson(g)));
+				assertSameGraphCode(g, copy);
+				assertEquals(g.getCollectionElements().size(), copy.getCollectionElements().size());
+			}
+		}
+	}
+
+	@Test
+	void jsonCodec_writesSparseAndPackedGraphCodesAsDenseMatrix() {
+		Random r = new Random(21);
+		GraphCode sparse = graphCode(r, 40, 30, false);
+		GraphCode packed = new CompactGraphCode(graphCode(r, 40, 0, false));
+		for (int n = 0; n < 30; n++) packed.setValue(r.nextInt(40), r.nextInt(40), 1 + r.nextInt(5));
+		assertTrue(sparse.isSparse());
+		assertTrue(packed.isPacked());
+		for (GraphCode g : new GraphCode[] { sparse, packed }) {
+			GraphCode dense = new GraphCode();
+			dense.setDictionary(g.getDictionary());
+			dense.sparseMatrix = null;
+			dense.matrix = new int[40][40];
+			for (int x = 0; x < 40; x++) {
+				for (int y = 0; y < 40; y++) dense.matrix[x][y] = g.getValue(x, y);
+			}
+			String json = GraphCodeIO.asJson(g);
+			assertTrue(json.contains("\"matrix\""));
+			assertEquals(new Gson().toJson(dense), json);
+			assertEquals(json, g.toString());
+		}
+	}
+
+	@Test
+	void readJson_readsLegacySingleByteFiles() throws IOException {
+		File f = new File(folder, "legacy.gc");
+		RandomAccessFile rf = new RandomAccessFile(f, "rw");
+		rf.writeBytes("{\"dictionary\":[\"stra\u00dfe\",\"car\"],\"collectionElements\":[],\"matrix\":[[1,2],[0,1]]}");
+		rf.close();
+		GraphCode gc = GraphCodeIO.read(f);
+		assertEquals("stra\u00dfe", gc.getTermForIndex(0));
+		assertEquals(2, gc.getValue(0, 1));
+	}
+
+	@Test
+	void migration_convertsRepositoryInPlace() throws IOException {
+		Random r = new Random(21);
+		Vector<GraphCode> gcs = new Vector<>();
+		for (int i = 0; i < 5; i++) {
+			gcs.add(graphCode(r, 3 + i * 10, 20, true));
+			GraphCodeIO.write(gcs.get(i), new File(folder, i + ".gc"));
+		}
+		GraphCodeMigration migration = new GraphCodeMigration();
+		assertTrue(migration.migrate(folder, true));
+		assertEquals(5, migration.getMigratedCount());
+		for (int i = 0; i < 5; i++) {
+			File f = new File(folder, i + ".gc");
+			try (FileInputStream in = new FileInputStream(f)) {
+				assertTrue(BinaryGraphCodeCodec.hasMagic(in));
+			}
+			assertSameGraphCode(gcs.get(i), GraphCodeIO.read(f));
+		}
+		assertTrue(new GraphCodeMigration().verify(folder));
+		assertEquals(5, folder.listFiles().length);
+	}
+
+	@Test
+	void migration_keepsCollectionElements() {
+		Random r = new Random(26);
+		GraphCode gc = graphCode(r, 6, 10, true);
+		gc.addGraphCode(graphCode(r, 4, 5, false));
+		File f = new File(folder, "c.gc");
+		GraphCodeIO.write(gc, f);
+		assertTrue(new GraphCodeMigration().migrate(folder, new CompressedGraphCodeCodec()));
+		GraphCode migrated = GraphCodeIO.read(f);
+		assertTrue(GraphCodeMigration.isEqual(gc, migrated));
+
+		GraphCode other = graphCode(new Random(26), 6, 10, true);
+		other.addGraphCode(graphCode(r, 3, 5, false));
+		assertFalse(GraphCodeMigration.isEqual(gc, other));
+		other.getCollectionElements().clear();
+		assertFalse(GraphCodeMigration.isEqual(gc, other));
+	}
+
+	@Test
+	void compressed_roundTripsAndIsSmallest() throws IOException {
+		Random r = new Random(22);
+		for (boolean deflate : new boolean[] { true, false }) {
+			for (int size : new int[] { 0, 1, 7, 40, 300 }) {
+				GraphCode gc = graphCode(r, size, size * 4, true);
+				for (int i = 0; i < size; i += 2) gc.setValue(i, i, 1);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				new CompressedGraphCodeCodec(deflate).encode(gc, out);
+				assertSameGraphCode(gc, new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(out.toByteArray())));
+			}
+		}
+		GraphCode gc = graphCode(r, 200, 800, false);
+		File binary = new File(folder, "e.gcb");
+		File compressed = new File(folder, "e.gc");
+		GraphCodeIO.write(gc, binary);
+		GraphCodeIO.write(gc, compressed, GraphCodeIO.getCodec("compressed"));
+		assertSameGraphCode(gc, GraphCodeIO.read(compressed));
+		assertTrue(compressed.length() < binary.length());
+	}
+
+	@Test
+	void compressed_roundTripsCollectionElements() throws IOException {
+		Random r = new Random(24);
+		GraphCode gc = graphCode(r, 8, 20, true);
+		GraphCode element = graphCode(r, 40, 60, false);
+		element.addGraphCode(graphCode(r, 3, 4, false));
+		gc.addGraphCode(element);
+		gc.addGraphCode(graphCode(r, 0, 0, false));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new CompressedGraphCodeCodec().encode(gc, out);
+
+		GraphCode decoded = new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(out.toByteArray()));
+		assertSameGraphCode(gc, decoded);
+		assertEquals(2, decoded.getCollectionElements().size());
+		assertSameGraphCode(element, decoded.getCollectionElements().get(0));
+		assertSameGraphCode(element.getCollectionElements().get(0), decoded.getCollectionElements().get(0).getCollectionElements().get(0));
+		assertEquals(0, decoded.getCollectionElements().get(1).getDictionarySize());
+	}
+
+	@Test
+	void compressed_readsVersion1() throws IOException {
+		GraphCode gc = graphCode(new Random(25), 30, 60, true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new CompressedGraphCodeCodec().encode(gc, out);
+		// version 1 ends the blocks without the collection element count
+		byte[] blocks = Arrays.copyOf(out.toByteArray(), out.size() - 5);
+		blocks[4] = 1;
+		CRC32 crc = new CRC32();
+		crc.update(blocks);
+		byte[] data = Arrays.copyOf(blocks, blocks.length + 4);
+		for (int i = 0; i < 4; i++) data[blocks.length + i] = (byte)(crc.getValue() >>> (24 - i * 8));
+		assertSameGraphCode(gc, new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(data)));
+	}
+
+	@Test
+	void compressed_rejectsCorruptData() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new CompressedGraphCodeCodec().encode(graphCode(new Random(23), 30, 60, true), out);
+		byte[] data = out.toByteArray();
+		data[data.length / 2] ^= 0x01;
+		assertThrows(IOException.class, () -> new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(data)));
+	}
+
+	@Test
+	void compressed_rejectsBlockLengthsBeyondTheInput() {
+		// raw block, which claims 2^31-1 bytes
+		byte[] huge = { (byte)0x89, 'G', 'C', 'Z', 1, 0, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07,
+				(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07, 1 };
+		assertThrows(IOException.class, () -> new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(huge)));
+		// raw block of 2^27 bytes, which ends after one byte
+		byte[] truncated = { (byte)0x89, 'G', 'C', 'Z', 1, 0, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x40,
+				(byte)0x80, (byte)0x80, (byte)0x80, (byte)0x40, 1 };
+		assertThrows(IOException.class, () -> new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(truncated)));
+		// deflated block of 2 bytes, which claims 2^27 raw bytes
+		byte[] ratio = { (byte)0x89, 'G', 'C', 'Z', 1, 1, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x40, 2, 3, 0 };
+		assertThrows(IOException.class, () -> new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(ratio)));
+		// raw dictionary block with a term of 2^28 bytes and a valid checksum
+		byte[] blocks = { (byte)0x89, 'G', 'C', 'Z', 1, 0, 6, 6, 1, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, 0x01,
+				0, 0, 0, 0, 1, 1, 0 };
+		CRC32 crc = new CRC32();
+		crc.update(blocks);
+		byte[] term = Arrays.copyOf(blocks, blocks.length + 4);
+		for (int i = 0; i < 4; i++) term[blocks.length + i] = (byte)(crc.getValue() >>> (24 - i * 8));
+		assertThrows(IOException.class, () -> new CompressedGraphCodeCodec().decode(new ByteArrayInputStream(term)));
+	}
+}
@@ -142,4 +142,39 @@ class GraphCodeMetricTest {
         assertEquals(0.0f, similarity[1], 0.001f, "Edge metric should be 0.0 for no edges");
         assertEquals(0.0f, similarity[2], 0.001f, "Edge type metric should be 0.0 for no edges");
     }
+
+    @Test
+    void calculateSimilarity_BlankTermsDoNotMatch() {
+        // Blank terms count for the query size, but never as matching terms
+        GraphCode gc1 = new GraphCode();
+        GraphCode gc2 = new GraphCode();
+        
+        Vector<String> dict = new Vector<>();
+        dict.add("term1");
+        dict.add("  ");
+        gc1.setDictionary(dict);
+        gc2.setDictionary(dict);
+        
+        float[] similarity = GraphCodeMetric.calculateSimilarity(gc1, gc2);
+        
+        assertEquals(0.5f, similarity[0], 0.001f, "Node metric should ignore blank terms");
+        assertEquals(1, GraphCodeMetric.countMatchingTerms(gc1.getTermSignature(), gc2.getTermSignature()));
+    }
+
+    @Test
+    void countMatchingTerms_SortedIdsForLargeIds() {
+        TermSignature small = TermSignature.of(new int[] {1, 5, 70, 5});
+        TermSignature large = TermSignature.of(new int[] {5, 70, 1000000});
+        TermSignature larger = TermSignature.of(new int[] {70, 1000000, 2000000});
+
+        assertTrue(small.isBitset());
+        assertFalse(large.isBitset());
+        assertEquals(3, small.size());
+        assertTrue(large.contains(1000000));
+        assertFalse(large.contains(1));
+        assertEquals(2, GraphCodeMetric.countMatchingTerms(small, large));
+        assertEquals(2, GraphCodeMetric.countMatchingTerms(large, small));
+        assertEquals(2, GraphCodeMetric.countMatchingTerms(large, larger));
+        assertEquals(0, GraphCodeMetric.countMatchingTerms(TermSignature.of(new int[0]), large));
+    }
 }
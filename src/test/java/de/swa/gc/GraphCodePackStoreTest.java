@@ -0,0 +1,215 @@
+package de.swa.gc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GraphCodePackStoreTest {
+	@TempDir
+	File folder;
+
+	@Test
+	void put_isReadableAfterReopening() throws Exception {
+		Random r = new Random(17);
+		HashMap<UUID, GraphCode> expected = new HashMap<>();
+		GraphCodePackStore store = new GraphCodePackStore(folder, 4096);
+		for (int i = 0; i < 100; i++) {
+			UUID id = UUID.randomUUID();
+			expected.put(id, GraphCodeIOTest.graphCode(r, 1 + r.nextInt(40), 30, true));
+			store.put(id, expected.get(id));
+		}
+		assertTrue(store.getSegmentCount() > 1);
+		store.close();
+
+		store = new GraphCodePackStore(folder, 4096);
+		assertEquals(100, store.size());
+		for (UUID id : expected.keySet()) GraphCodeIOTest.assertSameGraphCode(expected.get(id), store.get(id));
+		assertNull(store.get(UUID.randomUUID()));
+		store.close();
+	}
+
+	@Test
+	void replaceAndDelete_surviveReopening() throws Exception {
+		Random r = new Random(18);
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		GraphCode replacement = GraphCodeIOTest.graphCode(r, 6, 8, false);
+		GraphCodePackStore store = new GraphCodePackStore(folder);
+		store.put(a, GraphCodeIOTest.graphCode(r, 5, 5, false));
+		store.put(b, GraphCodeIOTest.graphCode(r, 5, 5, false));
+		store.put(a, replacement);
+		store.delete(b);
+		assertFalse(store.contains(b));
+		store.close();
+
+		store = new GraphCodePackStore(folder);
+		assertEquals(1, store.size());
+		assertFalse(store.contains(b));
+		GraphCodeIOTest.assertSameGraphCode(replacement, store.get(a));
+		store.close();
+	}
+
+	@Test
+	void compact_keepsLiveGraphCodesAndDropsGarbage() throws Exception {
+		Random r = new Random(19);
+		HashMap<UUID, GraphCode> expected = new HashMap<>();
+		UUID[] ids = new UUID[50];
+		GraphCodePackStore store = new GraphCodePackStore(folder, 1L << 30);
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = UUID.randomUUID();
+			store.put(ids[i], GraphCodeIOTest.graphCode(r, 10, 20, false));
+		}
+		for (int i = 0; i < ids.length; i++) {
+			if (i % 3 == 0) store.delete(ids[i]);
+			else {
+				expected.put(ids[i], GraphCodeIOTest.graphCode(r, 10, 20, false));
+				store.put(ids[i], expected.get(ids[i]));
+			}
+		}
+		assertTrue(store.getGarbageRatio() > 0.5);
+		store.compact();
+		assertEquals(0d, store.getGarbageRatio(), 1e-9);
+		for (UUID id : expected.keySet()) GraphCodeIOTest.assertSameGraphCode(expected.get(id), store.get(id));
+		store.put(ids[0], expected.get(ids[1]));
+		store.close();
+
+		store = new GraphCodePackStore(folder, 1L << 30);
+		assertEquals(expected.size() + 1, store.size());
+		for (UUID id : expected.keySet()) GraphCodeIOTest.assertSameGraphCode(expected.get(id), store.get(id));
+		GraphCodeIOTest.assertSameGraphCode(expected.get(ids[1]), store.get(ids[0]));
+		assertFalse(store.contains(ids[3]));
+		store.close();
+	}
+
+	@Test
+	void open_truncatesIncompleteRecord() throws Exception {
+		Random r = new Random(20);
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		GraphCode gc = GraphCodeIOTest.graphCode(r, 8, 10, false);
+		GraphCodePackStore store = new GraphCodePackStore(folder);
+		store.put(a, gc);
+		store.put(b, gc);
+		store.close();
+		File segment = folder.listFiles()[0];
+		RandomAccessFile rf = new RandomAccessFile(segment, "rw");
+		rf.setLength(rf.length() - 2);
+		rf.close();
+
+		store = new GraphCodePackStore(folder);
+		assertTrue(store.contains(a));
+		assertFalse(store.contains(b));
+		store.put(b, gc);
+		store.close();
+		store = new GraphCodePackStore(folder);
+		GraphCodeIOTest.assertSameGraphCode(gc, store.get(b));
+		store.close();
+	}
+
+	@Test
+	void open_verifiesTheActiveSegmentBeforeCompactedSegments() throws Exception {
+		Random r = new Random(22);
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		GraphCode gc = GraphCodeIOTest.graphCode(r, 8, 10, false);
+		GraphCodePackStore store = new GraphCodePackStore(folder);
+		store.put(a, gc);
+		store.compact();
+		// the active segment is now numbered before the compacted one
+		store.put(b, gc);
+		store.close();
+		File[] segments = folder.listFiles();
+		Arrays.sort(segments);
+		assertEquals(2, segments.length);
+		RandomAccessFile rf = new RandomAccessFile(segments[0], "rw");
+		rf.seek(rf.length() - 1);
+		int last = rf.read();
+		rf.seek(rf.length() - 1);
+		rf.write(last ^ 0xFF);
+		rf.close();
+
+		store = new GraphCodePackStore(folder);
+		assertTrue(store.contains(a));
+		assertFalse(store.contains(b));
+		store.put(b, gc);
+		store.close();
+		store = new GraphCodePackStore(folder);
+		GraphCodeIOTest.assertSameGraphCode(gc, store.get(a));
+		GraphCodeIOTest.assertSameGraphCode(gc, store.get(b));
+		store.close();
+	}
+
+	@Test
+	void compact_keepsDeletedGraphCodesDeletedAfterACrashBetweenDeletes() throws Exception {
+		Random r = new Random(24);
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		GraphCode gc = GraphCodeIOTest.graphCode(r, 8, 10, false);
+		GraphCodePackStore store = new GraphCodePackStore(folder);
+		store.put(a, gc);
+		store.compact();
+		// a is copied to segment 3, its tombstone is written to the active segment 2
+		store.delete(a);
+		store.put(b, gc);
+		File copy = new File(folder, "segment-000003.pack");
+		byte[] copied = Files.readAllBytes(copy.toPath());
+		store.compact();
+		store.close();
+		// segment 2 is deleted before segment 3, the crash leaves segment 3 behind
+		assertFalse(copy.exists());
+		Files.write(copy.toPath(), copied);
+
+		store = new GraphCodePackStore(folder);
+		assertFalse(store.contains(a));
+		GraphCodeIOTest.assertSameGraphCode(gc, store.get(b));
+		store.compact();
+		store.close();
+		store = new GraphCodePackStore(folder);
+		assertEquals(1, store.size());
+		assertFalse(store.contains(a));
+		store.close();
+	}
+
+	@Test
+	void close_waitsForRunningCompaction() throws Exception {
+		Random r = new Random(23);
+		GraphCodePackStore store = new GraphCodePackStore(folder, 1L << 30);
+		UUID[] ids = new UUID[200];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = UUID.randomUUID();
+			store.put(ids[i], GraphCodeIOTest.graphCode(r, 10, 20, false));
+		}
+		Future<?> compaction = store.compactInBackground();
+		store.close();
+		compaction.get();
+
+		store = new GraphCodePackStore(folder, 1L << 30);
+		assertEquals(ids.length, store.size());
+		store.close();
+	}
+
+	@Test
+	void codec_isDetectedPerRecord() throws Exception {
+		Random r = new Random(21);
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		GraphCode gcA = GraphCodeIOTest.graphCode(r, 50, 80, true);
+		GraphCode gcB = GraphCodeIOTest.graphCode(r, 50, 80, true);
+		GraphCodePackStore store = new GraphCodePackStore(folder);
+		store.put(a, gcA);
+		store.close();
+		store = new GraphCodePackStore(folder, GraphCodePackStore.DEFAULT_SEGMENT_SIZE, new CompressedGraphCodeCodec());
+		store.put(b, gcB);
+		GraphCodeIOTest.assertSameGraphCode(gcA, store.get(a));
+		GraphCodeIOTest.assertSameGraphCode(gcB, store.get(b));
+		store.close();
+	}
+}
@@ -2,6 +2,9 @@ package de.swa.gc;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -10,9 +13,17 @@ import org.junit.jupiter.api.Test;
 
 import com.google.gson.Gson;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
+import de.swa.mmfg.MMFG;
+import de.swa.mmfg.Node;
+
 /**
  * Created by Patrick Steinert on 12.07.24.
  */
@@ -51,4 +62,176 @@ public class GraphCodeTest {
 		assertTrue(json.contains("collectionElements"));
 		assertTrue(json.contains("childterm"));
 	}
-}
\ No newline at end of file
+
+	private static Vector<String> terms(int size) {
+		Vector<String> dict = new Vector<>();
+		for (int i = 0; i < size; i++) dict.add("term" + i);
+		return dict;
+	}
+
+	@Test
+	public void setDictionary_withLargeDictionary_usesSparseMode() {
+		graphCode.setDictionary(terms(GraphCode.SPARSE_MIN_SIZE));
+		assertTrue(graphCode.isSparse());
+		graphCode.setValueForTerms("term3", "term7", 11);
+		assertEquals(11, graphCode.getValue(3, 7));
+		assertEquals(11, graphCode.getRelationships()[3][7]);
+		assertEquals(0, graphCode.getValue(7, 3));
+		assertEquals(0, graphCode.getEdgeValueForTerms("term3", "unknown"));
+		assertThrows(ArrayIndexOutOfBoundsException.class, () -> graphCode.getValue(GraphCode.SPARSE_MIN_SIZE, 0));
+	}
+
+	@Test
+	public void setValue_withManyEdges_switchesToDenseMode() {
+		int size = GraphCode.SPARSE_MIN_SIZE;
+		graphCode.setDictionary(terms(size));
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) graphCode.setValue(i, j, i + j + 1);
+		}
+		assertFalse(graphCode.isSparse());
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) assertEquals(i + j + 1, graphCode.getValue(i, j));
+		}
+	}
+
+	@Test
+	public void setRelationships_choosesStorageByDensity() {
+		int size = 200;
+		graphCode.setDictionary(terms(size));
+		int[][] m = new int[size][size];
+		m[1][199] = 16;
+		m[50][50] = 2;
+		graphCode.setRelationships(m);
+		assertTrue(graphCode.isSparse());
+		assertEquals(16, graphCode.getValue(1, 199));
+		assertEquals(2, graphCode.getValue(50, 50));
+
+		for (int i = 0; i < size; i++) Arrays.fill(m[i], i + 1);
+		graphCode.setRelationships(m);
+		assertFalse(graphCode.isSparse());
+		assertEquals(200, graphCode.getValue(199, 0));
+		assertThrows(IllegalArgumentException.class, () -> graphCode.setRelationships(new int[size - 1][size - 1]));
+	}
+
+	@Test
+	public void deserialization_ofDenseGraphCodeWithFewEdges_usesSparseMode() throws Exception {
+		int size = 200;
+		graphCode.setDictionary(terms(size));
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) graphCode.setValue(i, j, 1);
+		}
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) if (i != j) graphCode.setValue(i, j, 0);
+		}
+		assertFalse(graphCode.isSparse());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(graphCode);
+		out.close();
+		GraphCode result = (GraphCode)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertTrue(result.isSparse());
+		assertEquals(1, result.getValue(7, 7));
+		assertEquals(0, result.getValue(7, 8));
+	}
+
+	@Test
+	public void setValueForTerms_withUnknownTerm_isIgnored() {
+		graphCode.setDictionary(terms(GraphCode.SPARSE_MIN_SIZE));
+		graphCode.setValueForTerms("term1", "unknown", 5);
+		graphCode.setDictionary(terms(4));
+		graphCode.setValueForTerms("unknown", "term1", 5);
+		assertEquals(0, graphCode.getEdgeValueForTerms("term1", "unknown"));
+	}
+
+	@Test
+	public void toString_withSparseGraphCode_roundTripsRelationships() {
+		graphCode.setDictionary(terms(100));
+		graphCode.setValueForTerms("term1", "term99", 16);
+		graphCode.setValueForTerms("term50", "term50", 2);
+		GraphCode result = new Gson().fromJson(graphCode.toString(), GraphCode.class);
+		// the Json representation is the dense matrix
+		assertFalse(result.isSparse());
+		assertEquals(16, result.getEdgeValueForTerms("term1", "term99"));
+		assertEquals(2, result.getEdgeValueForTerms("term50", "term50"));
+		assertEquals(0, result.getEdgeValueForTerms("term99", "term1"));
+	}
+
+	@Test
+	public void getIndexForTerm_returnsFirstOccurrenceIgnoringCase() {
+		graphCode.setDictionary(new Vector<>(Arrays.asList("Person", "car", "PERSON")));
+		assertEquals(0, graphCode.getIndexForTerm("person"));
+		assertEquals(1, graphCode.getIndexForTerm("CAR"));
+		assertEquals(-1, graphCode.getIndexForTerm("tree"));
+		assertEquals("car", graphCode.getTermForIndex(1));
+
+		graphCode.setDictionary(new Vector<>(Arrays.asList("tree")));
+		assertEquals(-1, graphCode.getIndexForTerm("person"));
+		assertEquals(0, graphCode.getIndexForTerm("tree"));
+	}
+
+	@Test
+	public void getNormalizedDictionary_isCachedAndImmutable() {
+		graphCode.setDictionary(new Vector<>(Arrays.asList("Person", "a", "car", "PERSON")));
+		List<String> dict = graphCode.getNormalizedDictionary();
+		assertEquals(Arrays.asList("person", "car"), dict);
+		assertSame(dict, graphCode.getNormalizedDictionary());
+		assertThrows(UnsupportedOperationException.class, () -> dict.add("tree"));
+
+		Vector<String> copy = graphCode.getDictionary();
+		copy.add("tree");
+		assertEquals(2, graphCode.getDictionary().size());
+
+		graphCode.setDictionary(new Vector<>(Arrays.asList("tree")));
+		assertEquals(Arrays.asList("tree"), graphCode.getNormalizedDictionary());
+	}
+
+	@Test
+	public void generate_keepsTermsDifferingInCaseAsSeparateRows() {
+		MMFG m = new MMFG();
+		Node upper = new Node("Person", m);
+		new Node("person", m);
+		upper.addChildNode(new Node("car", m));
+		GraphCode gc = GraphCodeGenerator.generate(m);
+
+		assertEquals(3, gc.getDictionarySize());
+		assertEquals(Arrays.asList("person", "car"), gc.getNormalizedDictionary());
+		assertEquals(0, gc.getIndexForTerm("Person"));
+		assertEquals(1, gc.getEdgeValueForTerms("person", "car"));
+	}
+
+	@Test
+	public void setDictionary_sharesTermsThroughVocabulary() {
+		TermVocabulary vocabulary = TermVocabulary.getInstance();
+		graphCode.setDictionary(new Vector<>(Arrays.asList("Person", "car")));
+		GraphCode other = new GraphCode();
+		other.setDictionary(new int[] { vocabulary.getId("car"), vocabulary.getId("tree") });
+
+		assertSame(graphCode.getNormalizedDictionary().get(1), other.getNormalizedDictionary().get(0));
+		assertEquals(vocabulary.getId("person"), graphCode.getTermIds()[0]);
+		assertEquals(graphCode.getTermIds()[1], other.getTermIds()[0]);
+		assertEquals("tree", vocabulary.getTerm(other.getTermIds()[1]));
+		assertEquals(-1, vocabulary.lookup("never used term"));
+	}
+
+	@Test
+	public void compactGraphCode_isInterchangeableWithGraphCode() {
+		graphCode.setDictionary(terms(40));
+		graphCode.setValueForTerms("term1", "term2", 16);
+		graphCode.setValueForTerms("term39", "term39", 2);
+		CompactGraphCode compact = new CompactGraphCode(graphCode);
+		assertTrue(compact.isPacked());
+		assertEquals(16, compact.getEdgeValueForTerms("term1", "term2"));
+		assertEquals(2, compact.getValue(39, 39));
+		assertEquals(0, compact.getValue(2, 1));
+		assertThrows(ArrayIndexOutOfBoundsException.class, () -> compact.getValue(0, 40));
+
+		GraphCode result = new Gson().fromJson(compact.toString(), GraphCode.class);
+		assertFalse(result.isPacked());
+		assertEquals(16, result.getEdgeValueForTerms("term1", "term2"));
+
+		compact.setValue(3, 4, 1000);
+		assertFalse(compact.isPacked());
+		assertEquals(1000, compact.getValue(3, 4));
+		assertEquals(16, compact.getValue(1, 2));
+	}
+}
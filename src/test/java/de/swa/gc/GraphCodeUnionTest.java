@@ -0,0 +1,69 @@
+package de.swa.gc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+class GraphCodeUnionTest {
+	private static Vector<GraphCode> graphCodes(Random r, int n) {
+		Vector<GraphCode> gcs = new Vector<>();
+		for (int i = 0; i < n; i++) {
+			int size = 1 + r.nextInt(45);
+			Vector<String> dict = new Vector<>();
+			for (int t = 0; t < size; t++) dict.add(r.nextInt(8) == 0 ? "x" : "Term" + r.nextInt(80));
+			GraphCode gc = new GraphCode();
+			gc.setDictionary(dict);
+			for (int e = 0; e < size * 2; e++) gc.setValue(r.nextInt(size), r.nextInt(size), r.nextInt(5) - 1);
+			gcs.add(gc);
+		}
+		return gcs;
+	}
+
+	/** term based union, in which non-zero relationships of later Graph Codes replace earlier ones **/
+	private static GraphCode expectedUnion(Vector<GraphCode> gcs) {
+		Vector<String> dictionary = new Vector<>();
+		for (GraphCode gci : gcs) {
+			for (String s : gci.getNormalizedDictionary()) if (!dictionary.contains(s)) dictionary.add(s);
+		}
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(dictionary);
+		for (GraphCode gci : gcs) {
+			for (String s : dictionary) {
+				for (String t : dictionary) {
+					int v = gci.getEdgeValueForTerms(s, t);
+					if (v != 0) gc.setValueForTerms(s, t, v);
+				}
+			}
+		}
+		return gc;
+	}
+
+	@Test
+	void union_equalsTermBasedUnion() {
+		Random r = new Random(19);
+		Vector<GraphCode> gcs = graphCodes(r, 30);
+		GraphCodeIOTest.assertSameGraphCode(expectedUnion(gcs), GraphCodeUnion.getUnion(gcs, false));
+	}
+
+	@Test
+	void parallelUnion_equalsSequentialUnion() {
+		Random r = new Random(20);
+		Vector<GraphCode> gcs = graphCodes(r, 300);
+		GraphCode sequential = GraphCodeUnion.getUnion(gcs, false);
+		GraphCodeIOTest.assertSameGraphCode(expectedUnion(gcs), sequential);
+		GraphCodeIOTest.assertSameGraphCode(sequential, GraphCodeUnion.getUnion(gcs, true));
+	}
+
+	@Test
+	void collectionGraphCode_isUnionOfElements() {
+		Random r = new Random(21);
+		GraphCode collection = new GraphCode();
+		Vector<GraphCode> gcs = graphCodes(r, 5);
+		for (GraphCode gc : gcs) collection.addGraphCode(gc);
+		GraphCodeIOTest.assertSameGraphCode(expectedUnion(gcs), GraphCodeCollection.getCollectionGraphCode(collection));
+		assertEquals(0, GraphCodeUnion.getUnion(new Vector<GraphCode>()).getDictionarySize());
+	}
+}
@@ -0,0 +1,51 @@
+package de.swa.gc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SparseMatrixTest {
+
+	@Test
+	void setAndRemove_matchDenseReference() {
+		int size = 40;
+		SparseMatrix sparse = new SparseMatrix(size);
+		int[][] dense = new int[size][size];
+		Random r = new Random(42);
+		for (int n = 0; n < 5000; n++) {
+			int x = r.nextInt(size);
+			int y = r.nextInt(size);
+			int v = r.nextInt(4) == 0 ? 0 : r.nextInt(21) + 1;
+			sparse.set(x, y, v);
+			dense[x][y] = v;
+		}
+		int nonZero = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				assertEquals(dense[x][y], sparse.get(x, y));
+				if (dense[x][y] != 0) nonZero++;
+			}
+		}
+		assertEquals(nonZero, sparse.getCount());
+		assertArrayEquals(dense, sparse.toDense());
+	}
+
+	@Test
+	void iterateSlots_visitsEveryNonZeroCell() {
+		SparseMatrix sparse = new SparseMatrix(10);
+		sparse.set(1, 2, 3);
+		sparse.set(9, 0, 11);
+		sparse.set(4, 4, 2);
+		sparse.set(4, 4, 0);
+		int visited = 0;
+		for (int slot = 0; slot < sparse.getCapacity(); slot++) {
+			if (!sparse.isOccupied(slot)) continue;
+			assertEquals(sparse.valueAt(slot), sparse.get(sparse.rowAt(slot), sparse.columnAt(slot)));
+			visited++;
+		}
+		assertEquals(2, visited);
+	}
+}
@@ -0,0 +1,126 @@
+package de.swa.gc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StopWordStatisticsTest {
+	@TempDir
+	File folder;
+
+	private static GraphCode graphCode(String... terms) {
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(new Vector<String>(Arrays.asList(terms)));
+		return gc;
+	}
+
+	private static Vector<String> sorted(Vector<String> terms) {
+		Vector<String> v = new Vector<String>(terms);
+		Collections.sort(v);
+		return v;
+	}
+
+	@Test
+	void gcStop_containsTermsOfMoreThanSeventyPercent() throws IOException {
+		StopWordStatistics statistics = new StopWordStatistics();
+		statistics.add("a", graphCode("photo", "dog", "x"));
+		statistics.add("b", graphCode("photo", "cat"));
+		statistics.add("c", graphCode("Photo", "dog"));
+		assertEquals(Arrays.asList("photo"), statistics.getGCStop().getDictionary());
+		assertEquals(2, statistics.getDocumentFrequency("dog"));
+		assertEquals(0, statistics.getDocumentFrequency("x"));
+	}
+
+	@Test
+	void calculateGCStop_equalsFullRecount() {
+		Random r = new Random(20);
+		Vector<GraphCode> collection = new Vector<GraphCode>();
+		for (int i = 0; i < 50; i++) {
+			Vector<String> dict = new Vector<String>();
+			dict.add("common");
+			if (r.nextInt(10) < 8) dict.add("frequent");
+			for (int t = 0; t < 10; t++) dict.add("term" + (r.nextInt(4) == 0 ? r.nextInt(100) : r.nextInt(8)));
+			GraphCode gc = new GraphCode();
+			gc.setDictionary(dict);
+			collection.add(gc);
+		}
+		Hashtable<String, Integer> termFrequency = new Hashtable<String, Integer>();
+		for (GraphCode gc : collection) {
+			for (String s : gc.getNormalizedDictionary()) termFrequency.put(s, termFrequency.containsKey(s) ? termFrequency.get(s) + 1 : 1);
+		}
+		Vector<String> expected = new Vector<String>();
+		for (String s : termFrequency.keySet()) if (termFrequency.get(s) > (int)(collection.size() * 0.7)) expected.add(s);
+		assertTrue(expected.size() > 0);
+		assertEquals(sorted(expected), GraphCodeCollection.calculateGCStop(collection, false).getDictionary());
+	}
+
+	@Test
+	void gcStop_isOnlyRebuiltWhenStopWordsChange() throws IOException {
+		StopWordStatistics statistics = new StopWordStatistics();
+		statistics.add("a", graphCode("photo", "dog"));
+		statistics.add("b", graphCode("photo", "cat"));
+		GraphCode gcstop = statistics.getGCStop();
+		statistics.add("c", graphCode("photo", "bird"));
+		assertSame(gcstop, statistics.getGCStop());
+
+		statistics.add("c", graphCode("tree", "bird"));
+		GraphCode changed = statistics.getGCStop();
+		assertNotSame(gcstop, changed);
+		assertEquals(0, changed.getDictionarySize());
+		statistics.remove("c");
+		assertEquals(Arrays.asList("photo"), statistics.getGCStop().getDictionary());
+		assertEquals(2, statistics.getDocumentCount());
+	}
+
+	@Test
+	void persistedStatistics_survivesReopenAndWritesGCStop() throws IOException {
+		StopWordStatistics statistics = new StopWordStatistics(folder);
+		statistics.add("a", graphCode("photo", "dog"));
+		statistics.add("b", graphCode("photo", "cat"));
+		statistics.add("b", graphCode("photo", "dog"));
+		statistics.add("c", graphCode("tree"));
+		statistics.remove("c");
+		assertEquals(Arrays.asList("dog", "photo"), statistics.getGCStop().getDictionary());
+		statistics.close();
+
+		GraphCode written = GraphCodeIO.read(new File(folder, StopWordStatistics.GCSTOP_FILE));
+		assertEquals(Arrays.asList("dog", "photo"), written.getDictionary());
+
+		StopWordStatistics reopened = new StopWordStatistics(folder);
+		assertEquals(2, reopened.getDocumentCount());
+		assertEquals(2, reopened.getDocumentFrequency("dog"));
+		assertEquals(0, reopened.getDocumentFrequency("cat"));
+		assertTrue(reopened.contains("b"));
+		reopened.close();
+	}
+
+	@Test
+	void tornLogRecord_isDropped() throws IOException {
+		StopWordStatistics statistics = new StopWordStatistics(folder);
+		statistics.add("a", graphCode("photo", "dog"));
+		statistics.close();
+		FileOutputStream out = new FileOutputStream(new File(folder, StopWordStatistics.LOG_FILE), true);
+		out.write("[\"+\",\"b\",\"pho".getBytes(StandardCharsets.UTF_8));
+		out.close();
+
+		StopWordStatistics reopened = new StopWordStatistics(folder);
+		assertEquals(1, reopened.getDocumentCount());
+		reopened.add("b", graphCode("photo"));
+		reopened.close();
+		assertEquals(2, new StopWordStatistics(folder).getDocumentCount());
+	}
+}
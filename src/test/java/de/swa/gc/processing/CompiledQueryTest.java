@@ -0,0 +1,54 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.GraphCodeMetric;
+
+class CompiledQueryTest {
+
+	static GraphCode randomGraphCode(Random r, int size, int edges) {
+		Vector<String> dict = new Vector<>();
+		for (int i = 0; i < size; i++) dict.add(r.nextInt(8) == 0 ? "x" : "term" + r.nextInt(60));
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(dict);
+		for (int n = 0; n < edges; n++) gc.setValue(r.nextInt(size), r.nextInt(size), 1 + r.nextInt(3));
+		return gc;
+	}
+
+	@Test
+	void score_batchEqualsGraphCodeMetric() {
+		Random r = new Random(3);
+		GraphCode query = randomGraphCode(r, 20, 60);
+		Vector<GraphCodeMeta> candidates = new Vector<>();
+		for (int i = 0; i < 200; i++) {
+			candidates.add(new GraphCodeMeta("gc" + i, randomGraphCode(r, 1 + r.nextInt(40), r.nextInt(120))));
+		}
+		CompiledQuery compiled = new CompiledQuery(query);
+		float[] result = new float[candidates.size() * 3];
+		compiled.score(candidates, result);
+		for (int i = 0; i < candidates.size(); i++) {
+			float[] expected = GraphCodeMetric.calculateSimilarity(query, candidates.get(i).getGraphcode());
+			assertArrayEquals(expected, new float[] {result[i * 3], result[i * 3 + 1], result[i * 3 + 2]}, "candidate " + i);
+			assertArrayEquals(expected, compiled.score(candidates.get(i).getGraphcode()));
+		}
+	}
+
+	@Test
+	void edgeCount_ignoresDiagonal() {
+		GraphCode query = new GraphCode();
+		Vector<String> dict = new Vector<>();
+		dict.add("person");
+		dict.add("car");
+		query.setDictionary(dict);
+		query.setValue(0, 0, 2);
+		query.setValue(0, 1, 11);
+		assertEquals(1, new CompiledQuery(query).getEdgeCount());
+	}
+}
@@ -0,0 +1,46 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+import de.swa.mmfg.CompositionRelationship;
+
+class EdgeIndexCollectionProcessorTest {
+
+	@Test
+	void execute_ranksLikeDefaultCollectionProcessor() {
+		Random r = new Random(33);
+		Vector<GraphCodeMeta> collection = InvertedIndexCollectionProcessorTest.collection(r, 400);
+		for (int n = 0; n < 20; n++) {
+			GraphCode query = CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(6), r.nextInt(15));
+			for (int operation : new int[] { CollectionProcessor.SIMILARITY, CollectionProcessor.RECOMMENDATION }) {
+				for (int topK : new int[] { 0, 5 }) {
+					InvertedIndexCollectionProcessorTest.assertSameRanking(new DefaultCollectionProcessor(),
+							new EdgeIndexCollectionProcessor(), collection, query, operation, topK);
+				}
+			}
+		}
+	}
+
+	@Test
+	void getGraphCodes_returnsGraphCodesWithRelationship() {
+		Vector<GraphCode> graphCodes = new Vector<>();
+		for (int i = 0; i < 3; i++) {
+			GraphCode gc = new GraphCode();
+			gc.setDictionary(new Vector<>(Arrays.asList("Person", "car", "person")));
+			graphCodes.add(gc);
+		}
+		graphCodes.get(0).setValueForTerms("person", "car", CompositionRelationship.RELATION_NEXT_TO);
+		graphCodes.get(1).setValueForTerms("person", "car", CompositionRelationship.RELATION_BEHIND);
+		graphCodes.get(2).setValue(2, 1, CompositionRelationship.RELATION_NEXT_TO); // hidden by the first "person"
+		EdgeIndex index = new EdgeIndex(graphCodes);
+		assertArrayEquals(new int[] { 0 }, index.getGraphCodes("person", "car", CompositionRelationship.RELATION_NEXT_TO));
+		assertArrayEquals(new int[0], index.getGraphCodes("car", "person", CompositionRelationship.RELATION_NEXT_TO));
+	}
+}
@@ -0,0 +1,168 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.GraphCodeMetric;
+
+class HnswIndexTest {
+	private static float[] randomVector(Random r, int dimension) {
+		float[] v = new float[dimension];
+		double norm = 0;
+		for (int i = 0; i < dimension; i++) {
+			v[i] = (float)r.nextGaussian();
+			norm += v[i] * v[i];
+		}
+		for (int i = 0; i < dimension; i++) v[i] /= (float)Math.sqrt(norm);
+		return v;
+	}
+
+	private static List<String> bruteForce(final float[][] vectors, final float[] query, int k) {
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < vectors.length; i++) ids.add(i);
+		Collections.sort(ids, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Float.compare(GraphCodeEmbedding.dot(vectors[b], query), GraphCodeEmbedding.dot(vectors[a], query));
+			}
+		});
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < k; i++) keys.add("v" + ids.get(i));
+		return keys;
+	}
+
+	private static float recall(HnswIndex index, float[][] vectors, Random r, int dimension) {
+		int found = 0, total = 0;
+		for (int q = 0; q < 50; q++) {
+			float[] query = randomVector(r, dimension);
+			HashSet<String> approximate = new HashSet<>(index.search(query, 10));
+			for (String key : bruteForce(vectors, query, 10)) {
+				if (approximate.contains(key)) found++;
+				total++;
+			}
+		}
+		return (float)found / total;
+	}
+
+	@Test
+	void search_hasHighRecall() throws Exception {
+		Random r = new Random(23);
+		float[][] vectors = new float[2000][];
+		HnswIndex index = new HnswIndex(32);
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i] = randomVector(r, 32);
+			index.insert("v" + i, vectors[i]);
+		}
+		assertEquals(vectors.length, index.size());
+		float recall = recall(index, vectors, r, 32);
+		assertTrue(recall >= 0.9f, "recall: " + recall);
+		assertEquals("v17", index.search(vectors[17], 1).get(0));
+	}
+
+	@Test
+	void insert_replacesAndRemoveHidesKeys() throws Exception {
+		Random r = new Random(24);
+		HnswIndex index = new HnswIndex(16);
+		for (int i = 0; i < 200; i++) index.insert("v" + i, randomVector(r, 16));
+		float[] replaced = randomVector(r, 16);
+		index.insert("v5", replaced);
+		assertEquals(200, index.size());
+		assertEquals("v5", index.search(replaced, 1).get(0));
+		index.remove("v5");
+		assertFalse(index.contains("v5"));
+		assertFalse(index.search(replaced, 200).contains("v5"));
+		assertEquals(199, index.search(replaced, 500).size());
+	}
+
+	@Test
+	void open_restoresTheIndexAndTruncatesATornRecord(@TempDir Path dir) throws Exception {
+		Random r = new Random(25);
+		File f = new File(dir.toFile(), HnswIndex.FILE_NAME);
+		float[][] vectors = new float[300][];
+		HnswIndex index = HnswIndex.open(f, 16);
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i] = randomVector(r, 16);
+			index.insert("v" + i, vectors[i]);
+		}
+		index.remove("v3");
+		float[] query = randomVector(r, 16);
+		List<String> expected = index.search(query, 10);
+		index.close();
+
+		long length = f.length();
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		raf.seek(length);
+		raf.write(new byte[] {0, 0, 1, 0, 1, 7});
+		raf.close();
+
+		HnswIndex reopened = HnswIndex.open(f, 16);
+		assertEquals(length, f.length());
+		assertEquals(299, reopened.size());
+		assertFalse(reopened.contains("v3"));
+		assertEquals(expected, reopened.search(query, 10));
+		reopened.insert("v300", randomVector(r, 16));
+		reopened.compact();
+		reopened.close();
+
+		HnswIndex compacted = HnswIndex.open(f, 16);
+		assertEquals(300, compacted.size());
+		assertEquals(expected, compacted.search(query, 10));
+		compacted.close();
+	}
+
+	@Test
+	void processor_ranksTheNearestNeighboursExactly() {
+		Random r = new Random(26);
+		Vector<String> queryTerms = new Vector<>();
+		for (int i = 0; i < 10; i++) queryTerms.add("query" + i);
+		GraphCode query = new GraphCode();
+		query.setDictionary(queryTerms);
+		for (int e = 0; e < 20; e++) query.setValue(r.nextInt(10), r.nextInt(10), 1 + r.nextInt(3));
+
+		Vector<GraphCodeMeta> collection = new Vector<>();
+		for (int i = 0; i < 500; i++) {
+			Vector<String> dict = new Vector<>();
+			if (i % 25 == 0) {
+				dict.addAll(queryTerms);
+				dict.set(r.nextInt(10), "variant" + i);
+			}
+			else for (int t = 0; t < 10; t++) dict.add("term" + r.nextInt(5000));
+			GraphCode gc = new GraphCode();
+			gc.setDictionary(dict);
+			for (int e = 0; e < 20; e++) gc.setValue(r.nextInt(10), r.nextInt(10), 1 + r.nextInt(3));
+			collection.add(new GraphCodeMeta("gc" + i, gc));
+		}
+
+		HnswCollectionProcessor cp = new HnswCollectionProcessor(new HnswIndex(GraphCodeEmbedding.DEFAULT_DIMENSION));
+		cp.setOperation(CollectionProcessor.SIMILARITY);
+		cp.setTopK(20);
+		cp.setQueryObject(query);
+		cp.preloadIndex(collection);
+		cp.execute();
+		Vector<GraphCodeMeta> result = cp.getResultList();
+
+		assertEquals(500, cp.getIndex().size());
+		assertTrue(cp.getCandidateCount() < collection.size());
+		assertEquals(20, result.size());
+		for (GraphCodeMeta m : result) {
+			assertEquals(0, Integer.parseInt(m.getFileName().substring(2)) % 25, m.getFileName());
+			assertArrayEquals(GraphCodeMetric.calculateSimilarity(query, m.getGraphcode()), m.getMetric());
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+
+class InvertedIndexCollectionProcessorTest {
+
+	static Vector<GraphCodeMeta> collection(Random r, int size) {
+		Vector<GraphCodeMeta> v = new Vector<>();
+		for (int i = 0; i < size; i++) {
+			v.add(new GraphCodeMeta("gc" + i, CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(6), r.nextInt(12))));
+		}
+		return v;
+	}
+
+	static void assertSameRanking(CollectionProcessor expected, CollectionProcessor actual, Vector<GraphCodeMeta> collection,
+			GraphCode query, int operation, int topK) {
+		Vector<Vector<GraphCodeMeta>> results = new Vector<>();
+		for (CollectionProcessor cp : new CollectionProcessor[] { expected, actual }) {
+			Vector<GraphCodeMeta> copy = new Vector<>();
+			for (GraphCodeMeta m : collection) copy.add(new GraphCodeMeta(m.getFileName(), m.getGraphcode()));
+			cp.setOperation(operation);
+			cp.setTopK(topK);
+			cp.setQueryObject(query);
+			cp.preloadIndex(copy);
+			cp.execute();
+			results.add(cp.getResultList());
+		}
+		assertEquals(results.get(0).size(), results.get(1).size());
+		for (int i = 0; i < results.get(0).size(); i++) {
+			assertEquals(results.get(0).get(i).getFileName(), results.get(1).get(i).getFileName(), "rank " + i);
+			assertArrayEquals(results.get(0).get(i).getMetric(), results.get(1).get(i).getMetric(), "rank " + i);
+		}
+		assertEquals(expected.getTotalCount(), actual.getTotalCount());
+	}
+
+	@Test
+	void execute_ranksLikeDefaultCollectionProcessor() {
+		Random r = new Random(21);
+		Vector<GraphCodeMeta> collection = collection(r, 400);
+		for (int n = 0; n < 20; n++) {
+			GraphCode query = CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(5), r.nextInt(10));
+			for (int operation : new int[] { CollectionProcessor.SIMILARITY, CollectionProcessor.RECOMMENDATION, 0 }) {
+				for (int topK : new int[] { 0, 1, 10, 1000 }) {
+					assertSameRanking(new DefaultCollectionProcessor(), new InvertedIndexCollectionProcessor(), collection, query,
+							operation, topK);
+				}
+			}
+		}
+	}
+
+	@Test
+	void execute_scoresOnlyMatchingGraphCodes() {
+		Random r = new Random(2);
+		Vector<GraphCodeMeta> collection = collection(r, 100);
+		GraphCode query = collection.get(0).getGraphcode();
+		InvertedIndexCollectionProcessor cp = new InvertedIndexCollectionProcessor();
+		cp.setOperation(CollectionProcessor.SIMILARITY);
+		cp.setQueryObject(query);
+		cp.preloadIndex(collection);
+		cp.execute();
+		assertTrue(cp.matches.length < collection.size());
+		assertEquals(0, cp.matches[0]);
+	}
+}
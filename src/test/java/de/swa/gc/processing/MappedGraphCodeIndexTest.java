@@ -0,0 +1,180 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.swa.gc.GraphCode;
+
+class MappedGraphCodeIndexTest {
+	@TempDir
+	File folder;
+
+	static void assertSameGraphCode(GraphCode expected, GraphCode actual) {
+		assertEquals(expected.getDictionary(), actual.getDictionary());
+		for (int x = 0; x < expected.getDictionarySize(); x++) {
+			for (int y = 0; y < expected.getDictionarySize(); y++) {
+				assertEquals(expected.getValue(x, y), actual.getValue(x, y), x + "," + y);
+			}
+		}
+	}
+
+	@Test
+	void append_isReadableAfterReopening() throws Exception {
+		Random r = new Random(14);
+		Vector<GraphCode> gcs = new Vector<>();
+		MappedGraphCodeIndex index = MappedGraphCodeIndex.open(folder);
+		for (int i = 0; i < 50; i++) {
+			GraphCode gc = CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(40), r.nextInt(80));
+			gc.setValue(0, 0, 1);
+			gcs.add(gc);
+			index.append("gc" + i, gc);
+		}
+		assertSameGraphCode(gcs.get(7), index.read("gc7"));
+		index.close();
+
+		index = MappedGraphCodeIndex.open(folder);
+		assertEquals(50, index.size());
+		for (int i = 0; i < 50; i++) assertSameGraphCode(gcs.get(i), index.read("gc" + i));
+		assertNull(index.read("unknown"));
+		index.close();
+	}
+
+	@Test
+	void read_recordsAcrossRegionsWhileAppending() throws Exception {
+		Random r = new Random(18);
+		Vector<GraphCode> gcs = new Vector<>();
+		File data = new File(folder, "graphcodes.idx"), terms = new File(folder, "graphcodes.terms");
+		MappedGraphCodeIndex index = new MappedGraphCodeIndex(data, terms, 256);
+		for (int i = 0; i < 40; i++) {
+			GraphCode gc = CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(12), r.nextInt(30));
+			gcs.add(gc);
+			index.append("gc" + i, gc);
+			for (int j = 0; j <= i; j++) assertSameGraphCode(gcs.get(j), index.read("gc" + j));
+		}
+		index.close();
+		assertTrue(data.length() > 10 * 256);
+
+		index = new MappedGraphCodeIndex(data, terms, 256);
+		assertEquals(40, index.size());
+		for (int i = 0; i < 40; i++) assertSameGraphCode(gcs.get(i), index.read("gc" + i));
+		index.close();
+	}
+
+	@Test
+	void append_supersedesGraphCodeWithSameName() throws Exception {
+		Random r = new Random(15);
+		GraphCode replacement = CompiledQueryTest.randomGraphCode(r, 5, 6);
+		MappedGraphCodeIndex index = MappedGraphCodeIndex.open(folder);
+		index.append("a", CompiledQueryTest.randomGraphCode(r, 4, 3));
+		index.append("b", CompiledQueryTest.randomGraphCode(r, 4, 3));
+		index.append("a", replacement);
+		assertEquals(2, index.size());
+		assertSameGraphCode(replacement, index.read("a"));
+		index.close();
+
+		index = MappedGraphCodeIndex.open(folder);
+		assertEquals(2, index.size());
+		assertEquals("a", index.getNames().get(1));
+		assertSameGraphCode(replacement, index.read("a"));
+		index.close();
+	}
+
+	@Test
+	void open_ignoresIncompleteTrailingRecord() throws Exception {
+		Random r = new Random(16);
+		GraphCode gc = CompiledQueryTest.randomGraphCode(r, 6, 8);
+		MappedGraphCodeIndex index = MappedGraphCodeIndex.open(folder);
+		index.append("a", gc);
+		index.append("b", CompiledQueryTest.randomGraphCode(r, 6, 8));
+		index.close();
+		RandomAccessFile rf = new RandomAccessFile(new File(folder, "graphcodes.idx"), "rw");
+		rf.setLength(rf.length() - 5);
+		rf.close();
+
+		index = MappedGraphCodeIndex.open(folder);
+		assertTrue(index.contains("a"));
+		assertFalse(index.contains("b"));
+		index.append("c", gc);
+		index.close();
+		index = MappedGraphCodeIndex.open(folder);
+		assertSameGraphCode(gc, index.read("c"));
+		index.close();
+	}
+
+	@Test
+	void read_returnsNullForCorruptRecord() throws Exception {
+		Random r = new Random(19);
+		GraphCode gc = CompiledQueryTest.randomGraphCode(r, 6, 8);
+		MappedGraphCodeIndex index = MappedGraphCodeIndex.open(folder);
+		index.append("a", CompiledQueryTest.randomGraphCode(r, 6, 8));
+		index.append("b", gc);
+		index.close();
+		// first local term ID of record a, after header, length, name length, name and dictionary size
+		RandomAccessFile rf = new RandomAccessFile(new File(folder, "graphcodes.idx"), "rw");
+		rf.seek(8 + 4 + 4 + 1 + 4);
+		rf.write(0x7F);
+		rf.close();
+
+		index = MappedGraphCodeIndex.open(folder);
+		assertTrue(index.contains("a"));
+		assertNull(index.read("a"));
+		assertSameGraphCode(gc, index.read("b"));
+		index.close();
+	}
+
+	@Test
+	void open_emptiesDataFileOfFormerVersion() throws Exception {
+		RandomAccessFile rf = new RandomAccessFile(new File(folder, "graphcodes.idx"), "rw");
+		rf.writeInt(0x47434958);
+		rf.writeInt(1);
+		rf.writeInt(12);
+		rf.writeInt(1);
+		rf.write('a');
+		rf.close();
+
+		MappedGraphCodeIndex index = MappedGraphCodeIndex.open(folder);
+		assertEquals(0, index.size());
+		GraphCode gc = CompiledQueryTest.randomGraphCode(new Random(20), 5, 6);
+		index.append("a", gc);
+		assertSameGraphCode(gc, index.read("a"));
+		index.close();
+	}
+
+	@Test
+	void getGraphCodeMetas_ranksLikeDefaultCollectionProcessor() throws Exception {
+		Random r = new Random(17);
+		Vector<GraphCodeMeta> collection = InvertedIndexCollectionProcessorTest.collection(r, 200);
+		MappedGraphCodeIndex index = MappedGraphCodeIndex.open(folder);
+		for (GraphCodeMeta m : collection) index.append(m.getFileName(), m.getGraphcode());
+		GraphCode query = CompiledQueryTest.randomGraphCode(r, 4, 6);
+
+		DefaultCollectionProcessor expected = new DefaultCollectionProcessor();
+		expected.setOperation(CollectionProcessor.SIMILARITY);
+		expected.setQueryObject(query);
+		expected.preloadIndex(collection);
+		expected.execute();
+		DefaultCollectionProcessor actual = new DefaultCollectionProcessor();
+		actual.setOperation(CollectionProcessor.SIMILARITY);
+		actual.setQueryObject(query);
+		actual.preloadIndex(index);
+		actual.execute();
+
+		Vector<GraphCodeMeta> e = expected.getResultList();
+		Vector<GraphCodeMeta> a = actual.getResultList();
+		assertEquals(e.size(), a.size());
+		for (int i = 0; i < e.size(); i++) {
+			assertEquals(e.get(i).getFileName(), a.get(i).getFileName(), "rank " + i);
+		}
+		index.close();
+	}
+}
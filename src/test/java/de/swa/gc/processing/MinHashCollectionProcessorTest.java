@@ -0,0 +1,123 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.GraphCodeMetric;
+
+class MinHashCollectionProcessorTest {
+	private static GraphCode graphCode(Random r, Vector<String> terms) {
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(terms);
+		for (int e = 0; e < terms.size() * 2; e++) gc.setValue(r.nextInt(terms.size()), r.nextInt(terms.size()), 1 + r.nextInt(3));
+		return gc;
+	}
+
+	private static Vector<String> terms(Random r, int size) {
+		Vector<String> dict = new Vector<>();
+		while (dict.size() < size) {
+			String term = "term" + r.nextInt(5000);
+			if (!dict.contains(term)) dict.add(term);
+		}
+		return dict;
+	}
+
+	/** 20 variants of the query, which differ in one term, and 500 unrelated Graph Codes **/
+	private static Vector<GraphCodeMeta> collection(Random r, Vector<String> queryTerms) {
+		Vector<GraphCodeMeta> v = new Vector<>();
+		for (int i = 0; i < 520; i++) {
+			Vector<String> dict;
+			if (i % 26 == 0) {
+				dict = new Vector<>(queryTerms);
+				dict.set(r.nextInt(dict.size()), "variant" + i);
+			}
+			else dict = terms(r, 10);
+			v.add(new GraphCodeMeta("gc" + i, graphCode(r, dict)));
+		}
+		return v;
+	}
+
+	@Test
+	void execute_findsNearDuplicatesAndRanksThemExactly() {
+		Random r = new Random(22);
+		Vector<String> queryTerms = terms(r, 10);
+		GraphCode query = graphCode(r, queryTerms);
+		Vector<GraphCodeMeta> collection = collection(r, queryTerms);
+
+		MinHashCollectionProcessor cp = new MinHashCollectionProcessor(32, 4);
+		cp.setOperation(CollectionProcessor.SIMILARITY);
+		cp.setTopK(20);
+		cp.setQueryObject(query);
+		cp.preloadIndex(collection);
+		cp.execute();
+		Vector<GraphCodeMeta> result = cp.getResultList();
+
+		assertTrue(cp.getCandidateCount() < 100, "candidates: " + cp.getCandidateCount());
+		assertEquals(20, result.size());
+		for (GraphCodeMeta m : result) {
+			assertEquals(0, Integer.parseInt(m.getFileName().substring(2)) % 26, m.getFileName());
+			assertArrayEquals(GraphCodeMetric.calculateSimilarity(query, m.getGraphcode()), m.getMetric());
+		}
+		assertEquals(collection.size(), cp.getTotalCount());
+	}
+
+	@Test
+	void execute_appendsGraphCodesOutsideOfTheCandidates() {
+		Random r = new Random(23);
+		Vector<String> queryTerms = terms(r, 10);
+		Vector<GraphCodeMeta> collection = collection(r, queryTerms);
+		MinHashCollectionProcessor cp = new MinHashCollectionProcessor(8, 8);
+		cp.setOperation(CollectionProcessor.SIMILARITY);
+		cp.setQueryObject(graphCode(r, queryTerms));
+		cp.preloadIndex(collection);
+		cp.execute();
+		Vector<GraphCodeMeta> result = cp.getResultList();
+		assertEquals(collection.size(), result.size());
+		assertArrayEquals(new float[] {0f, 0f, 0f}, result.lastElement().getMetric());
+	}
+
+	@Test
+	void candidates_growWithTheNumberOfBands() {
+		Random r = new Random(24);
+		Vector<GraphCode> gcs = new Vector<>();
+		for (int i = 0; i < 300; i++) gcs.add(graphCode(r, terms(r, 3 + r.nextInt(10))));
+		for (int q = 0; q < 10; q++) {
+			GraphCode query = gcs.get(r.nextInt(gcs.size()));
+			MinHashIndex few = new MinHashIndex(4, 2);
+			MinHashIndex many = new MinHashIndex(64, 2);
+			few.build(gcs);
+			many.build(gcs);
+			HashSet<Integer> manyCandidates = new HashSet<>();
+			for (int o : many.getCandidates(query)) manyCandidates.add(o);
+			for (int o : few.getCandidates(query)) assertTrue(manyCandidates.contains(o));
+			assertTrue(manyCandidates.contains(gcs.indexOf(query)));
+		}
+	}
+
+	@Test
+	void signature_estimatesJaccardSimilarity() {
+		Random r = new Random(25);
+		MinHashIndex index = new MinHashIndex(64, 4);
+		for (int n = 0; n < 20; n++) {
+			Vector<String> a = terms(r, 40);
+			Vector<String> b = new Vector<>(a.subList(0, r.nextInt(40)));
+			b.addAll(terms(r, 40 - b.size()));
+			HashSet<String> union = new HashSet<>(a);
+			union.addAll(b);
+			HashSet<String> intersection = new HashSet<>(a);
+			intersection.retainAll(b);
+			float jaccard = (float)intersection.size() / union.size();
+			float estimate = MinHashIndex.estimateSimilarity(index.getSignature(graphCode(r, a)), index.getSignature(graphCode(r, b)));
+			assertEquals(jaccard, estimate, 0.15f, Arrays.toString(new float[] {jaccard, estimate}));
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+
+class ParallelCollectionProcessorTest {
+
+	private static Vector<GraphCodeMeta> collection(long seed) {
+		Random r = new Random(seed);
+		Vector<GraphCodeMeta> v = new Vector<>();
+		for (int i = 0; i < 2000; i++) {
+			v.add(new GraphCodeMeta("gc" + i, CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(30), r.nextInt(60))));
+		}
+		return v;
+	}
+
+	@Test
+	void execute_ranksLikeDefaultCollectionProcessor() {
+		GraphCode query = CompiledQueryTest.randomGraphCode(new Random(11), 15, 40);
+		for (int operation : new int[] { CollectionProcessor.SIMILARITY, CollectionProcessor.RECOMMENDATION }) {
+			CollectionProcessor sequential = new DefaultCollectionProcessor();
+			CollectionProcessor parallel = new ParallelCollectionProcessor();
+			for (CollectionProcessor cp : new CollectionProcessor[] { sequential, parallel }) {
+				cp.setOperation(operation);
+				cp.setQueryObject(query);
+				cp.preloadIndex(collection(5));
+				cp.execute();
+			}
+			Vector<GraphCodeMeta> expected = sequential.getResultList();
+			Vector<GraphCodeMeta> actual = parallel.getResultList();
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).getFileName(), actual.get(i).getFileName());
+				assertArrayEquals(expected.get(i).getMetric(), actual.get(i).getMetric());
+			}
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+
+class PruningCollectionProcessorTest {
+
+	@Test
+	void execute_ranksLikeDefaultCollectionProcessor() {
+		Random r = new Random(44);
+		Vector<GraphCodeMeta> collection = InvertedIndexCollectionProcessorTest.collection(r, 600);
+		for (int n = 0; n < 30; n++) {
+			GraphCode query = CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(6), r.nextInt(15));
+			for (int operation : new int[] { CollectionProcessor.SIMILARITY, CollectionProcessor.RECOMMENDATION, 0 }) {
+				for (int topK : new int[] { 0, 1, 3, 20, 1000 }) {
+					InvertedIndexCollectionProcessorTest.assertSameRanking(new DefaultCollectionProcessor(),
+							new PruningCollectionProcessor(), collection, query, operation, topK);
+				}
+			}
+		}
+	}
+
+	@Test
+	void execute_withTopK_skipsCandidates() {
+		Random r = new Random(45);
+		Vector<GraphCodeMeta> collection = InvertedIndexCollectionProcessorTest.collection(r, 2000);
+		PruningCollectionProcessor cp = new PruningCollectionProcessor();
+		cp.setOperation(CollectionProcessor.SIMILARITY);
+		cp.setTopK(5);
+		cp.setQueryObject(collection.get(0).getGraphcode());
+		cp.preloadIndex(collection);
+		cp.execute();
+		assertTrue(cp.getEvaluatedCount() < cp.matches.length, cp.getEvaluatedCount() + " of " + cp.matches.length);
+	}
+}
@@ -0,0 +1,78 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+
+class QueryResultCacheTest {
+	private static final String DEFAULT = "de.swa.gc.processing.DefaultCollectionProcessor";
+
+	private static GraphCode graphCode(String... terms) {
+		GraphCode gc = new GraphCode();
+		gc.setDictionary(new Vector<>(Arrays.asList(terms)));
+		for (int i = 0; i < terms.length; i++) gc.setValue(i, i, 1);
+		if (terms.length > 1) gc.setValue(0, 1, 2);
+		return gc;
+	}
+
+	private static List<float[]> metrics(float... m0) {
+		Vector<float[]> v = new Vector<>();
+		for (float f : m0) v.add(new float[] {f, 0f, 0f});
+		return v;
+	}
+
+	@Test
+	void get_hitsForEqualQueriesOfTheSameVersion() {
+		QueryResultCache<String> cache = new QueryResultCache<>(4);
+		cache.put(graphCode("sun", "beach"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 1, Arrays.asList("a", "b"), metrics(1f, 0.5f));
+
+		QueryResultCache.Result<String> r = cache.get(graphCode("sun", "beach"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 1);
+		assertNotNull(r);
+		assertEquals(Arrays.asList("a", "b"), r.getItems());
+		assertArrayEquals(new float[] {0.5f, 0f, 0f}, r.getMetric(1));
+		assertNull(cache.get(graphCode("sun", "beach"), CollectionProcessor.RECOMMENDATION, DEFAULT, 0, 1));
+		assertNull(cache.get(graphCode("sun", "sea"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 1));
+		assertNull(cache.get(graphCode("sun", "beach"), CollectionProcessor.SIMILARITY, "de.swa.gc.processing.PruningCollectionProcessor", 0, 1));
+		assertNull(cache.get(graphCode("sun", "beach"), CollectionProcessor.SIMILARITY, DEFAULT, 1, 1));
+
+		GraphCode otherEdge = graphCode("sun", "beach");
+		otherEdge.setValue(1, 0, 3);
+		assertNull(cache.get(otherEdge, CollectionProcessor.SIMILARITY, DEFAULT, 0, 1));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(5, cache.getMissCount());
+	}
+
+	@Test
+	void get_missesResultsOfAnOlderVersion() {
+		QueryResultCache<String> cache = new QueryResultCache<>(4);
+		cache.put(graphCode("sun"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 1, Arrays.asList("a"), metrics(1f));
+		assertNull(cache.get(graphCode("sun"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 2));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	void put_evictsTheLeastRecentlyUsedResult() {
+		QueryResultCache<String> cache = new QueryResultCache<>(2);
+		cache.put(graphCode("alpha"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 0, Arrays.asList("a"), metrics(1f));
+		cache.put(graphCode("beta"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 0, Arrays.asList("b"), metrics(1f));
+		cache.get(graphCode("alpha"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 0);
+		cache.put(graphCode("gamma"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 0, Arrays.asList("c"), metrics(1f));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(graphCode("alpha"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 0));
+		assertNull(cache.get(graphCode("beta"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 0));
+
+		QueryResultCache<String> disabled = new QueryResultCache<>(0);
+		disabled.put(graphCode("alpha"), CollectionProcessor.SIMILARITY, DEFAULT, 0, 0, Arrays.asList("a"), metrics(1f));
+		assertEquals(0, disabled.size());
+	}
+}
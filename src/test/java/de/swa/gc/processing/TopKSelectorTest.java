@@ -0,0 +1,61 @@
+package de.swa.gc.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+import de.swa.gc.GraphCode;
+
+class TopKSelectorTest {
+
+	@Test
+	void getOrdinals_matchesStableDescendingSort() {
+		Random r = new Random(1);
+		for (int n : new int[] { 0, 1, 7, 100, 1000 }) {
+			double[] scores = new double[n];
+			// few distinct values to produce many ties
+			for (int i = 0; i < n; i++) scores[i] = r.nextInt(20);
+			Integer[] sorted = new Integer[n];
+			for (int i = 0; i < n; i++) sorted[i] = i;
+			Arrays.sort(sorted, Comparator.comparingDouble((Integer i) -> -scores[i]));
+			for (int k : new int[] { 0, 1, 5, 50, n }) {
+				TopKSelector selector = new TopKSelector(Math.min(k, n));
+				for (int i = 0; i < n; i++) selector.offer(scores[i], i);
+				int[] expected = new int[Math.min(k, n)];
+				for (int i = 0; i < expected.length; i++) expected[i] = sorted[i];
+				assertArrayEquals(expected, selector.getOrdinals(), "n=" + n + " k=" + k);
+			}
+		}
+	}
+
+	@Test
+	void getResultList_withTopK_returnsPrefixOfFullRanking() {
+		Random r = new Random(9);
+		Vector<GraphCodeMeta> collection = new Vector<>();
+		for (int i = 0; i < 500; i++) {
+			collection.add(new GraphCodeMeta("gc" + i, CompiledQueryTest.randomGraphCode(r, 1 + r.nextInt(20), r.nextInt(40))));
+		}
+		GraphCode query = CompiledQueryTest.randomGraphCode(r, 10, 20);
+
+		CollectionProcessor full = new DefaultCollectionProcessor();
+		CollectionProcessor top = new DefaultCollectionProcessor();
+		top.setTopK(50);
+		for (CollectionProcessor cp : new CollectionProcessor[] { full, top }) {
+			cp.setOperation(CollectionProcessor.SIMILARITY);
+			cp.setQueryObject(query);
+			cp.preloadIndex(new Vector<>(collection));
+			cp.execute();
+		}
+		Vector<GraphCodeMeta> all = full.getResultList();
+		Vector<GraphCodeMeta> best = top.getResultList();
+		assertEquals(50, best.size());
+		assertEquals(500, top.getTotalCount());
+		assertEquals(all.subList(0, 50), best);
+	}
+}
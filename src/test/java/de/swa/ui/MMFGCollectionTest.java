@@ -2,12 +2,15 @@ package de.swa.ui;
 
 import de.swa.gc.GraphCode;
 import de.swa.gc.GraphCodeMetric;
+import de.swa.gc.GraphCodePackStore;
 import de.swa.gc.processing.GraphCodeMeta;
 import de.swa.mmfg.MMFG;
 import de.swa.mmfg.GeneralMetadata;
 import de.swa.mmfg.Node;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.util.UUID;
@@ -20,9 +23,16 @@ class MMFGCollectionTest {
     private MMFGCollection collection;
     private MMFG testMMFG;
     private File testFile;
+    @TempDir
+    File repository;
+    private String graphCodeRepository;
 
     @BeforeEach
     void setUp() {
+        // stored Graph Codes go into a temporary repository
+        graphCodeRepository = Configuration.getInstance().getGraphCodeRepository();
+        MMFGCollection.closeGraphCodeStores();
+        Configuration.getInstance().setGraphCodeRepository(repository.getAbsolutePath());
         collection = MMFGCollection.getInstance();
         testMMFG = new MMFG();
         GeneralMetadata gm = new GeneralMetadata();
@@ -32,6 +42,12 @@ class MMFGCollectionTest {
         testMMFG.setGeneralMetadata(gm);
     }
 
+    @AfterEach
+    void tearDown() {
+        MMFGCollection.closeGraphCodeStores();
+        Configuration.getInstance().setGraphCodeRepository(graphCodeRepository);
+    }
+
     @Test
     void getInstance_ReturnsSameInstance() {
         MMFGCollection instance1 = MMFGCollection.getInstance();
@@ -221,6 +237,106 @@ class MMFGCollectionTest {
             }
         }
     }
+    @Test
+    void addAndReplace_IncrementTheVersionOnce() {
+        MMFGCollection testCollection = new MMFGCollection();
+        long version = testCollection.getCollectionVersion();
+        testCollection.addToCollection(testMMFG);
+        assertEquals(version + 1, testCollection.getCollectionVersion());
+
+        MMFG newMMFG = new MMFG();
+        GeneralMetadata gm = new GeneralMetadata();
+        gm.setFileReference(testFile);
+        gm.setFileName("test.jpg");
+        newMMFG.setGeneralMetadata(gm);
+        testCollection.replaceMMFGInCollection(newMMFG, testFile);
+        assertEquals(version + 2, testCollection.getCollectionVersion());
+        assertEquals(1, testCollection.getCollection().size());
+    }
+
+    @Test
+    void replaceMMFGInCollection_OverwritesTheStoredGraphCode() {
+        File gcFile = new File(repository, "replaced.jpg.gc");
+        MMFGCollection testCollection = new MMFGCollection();
+        testCollection.addToCollection(mmfg("replaced.jpg", "sun", "sea"));
+        testCollection.getQueryEngine().query(testCollection.getOrGenerateGraphCode(testCollection.getCollection().get(0)), 1);
+        assertTrue(gcFile.exists(), "The query engine should store the Graph Code");
+
+        MMFG newMMFG = mmfg("replaced.jpg", "street", "car");
+        testCollection.replaceMMFGInCollection(newMMFG, new File("replaced.jpg"));
+        GraphCode stored = testCollection.getQueryGraphCode(newMMFG);
+        assertTrue(stored.getNormalizedDictionary().contains("street"), "The stored Graph Code should be replaced");
+        assertFalse(stored.getNormalizedDictionary().contains("sun"));
+
+        testCollection.replaceMMFGInCollection(mmfg("replaced.jpg"), new File("replaced.jpg"));
+        assertFalse(gcFile.exists(), "A Graph Code, which is not stored, should not leave a stale file");
+    }
+
+    @Test
+    void packStore_ReusesTheRecordsOfAReopenedCollection() {
+        Configuration config = Configuration.getInstance();
+        boolean packStore = config.isGraphCodePackStoreEnabled();
+        config.setGraphCodePackStoreEnabled(true);
+        try {
+            MMFGCollection first = new MMFGCollection();
+            MMFG m = mmfg("packed.jpg", "sun", "sea");
+            first.addToCollection(m);
+            first.getQueryGraphCode(m);
+            assertEquals(1, MMFGCollection.getGraphCodePackStore().size());
+            MMFGCollection.closeGraphCodeStores();
+
+            // a new MMFG of the same asset gets a new random UUID
+            MMFGCollection reopened = new MMFGCollection();
+            MMFG again = mmfg("packed.jpg", "sun", "sea");
+            assertNotEquals(m.getGeneralMetadata().getId(), again.getGeneralMetadata().getId());
+            reopened.addToCollection(again);
+            assertTrue(reopened.getQueryGraphCode(again).getNormalizedDictionary().contains("sun"));
+            GraphCodePackStore store = MMFGCollection.getGraphCodePackStore();
+            assertEquals(1, store.size(), "The stored Graph Code should be read instead of appended again");
+            assertEquals(0.0, store.getGarbageRatio(), "The stored Graph Code should not be overwritten");
+        } finally {
+            MMFGCollection.closeGraphCodeStores();
+            config.setGraphCodePackStoreEnabled(packStore);
+        }
+    }
+
+    private static MMFG mmfg(String fileName, String... features) {
+        MMFG m = new MMFG();
+        GeneralMetadata gm = new GeneralMetadata();
+        gm.setFileReference(new File(fileName));
+        gm.setFileName(fileName);
+        m.setGeneralMetadata(gm);
+        for (String f : features) m.addNode(new Node(f, "value", m));
+        return m;
+    }
+
+    @Test
+    void processQuery_CachesResultsUntilTheCollectionChanges() {
+        MMFGCollection testCollection = new MMFGCollection();
+        testCollection.addToCollection(testMMFG);
+        GraphCode queryGraphCode = testCollection.getOrGenerateGraphCode(testMMFG);
+        long version = testCollection.getCollectionVersion();
+
+        Vector<MMFG> first = testCollection.processQuery(queryGraphCode, 0);
+        float[] similarity = first.get(0).getTempSimilarity().clone();
+        testCollection.processQuery(queryGraphCode, 1);
+        Vector<MMFG> second = testCollection.processQuery(queryGraphCode, 0);
+        assertEquals(first, second, "Cached results should equal the calculated results");
+        assertArrayEquals(similarity, second.get(0).getTempSimilarity(), "Cached similarities should be restored");
+        assertEquals(1, testCollection.getQueryResultCache().getHitCount());
+        assertEquals(2, testCollection.getQueryResultCache().getMissCount());
+
+        MMFG other = new MMFG();
+        GeneralMetadata gm = new GeneralMetadata();
+        gm.setFileReference(new File("other.jpg"));
+        gm.setFileName("other.jpg");
+        other.setGeneralMetadata(gm);
+        testCollection.addToCollection(other);
+        assertTrue(testCollection.getCollectionVersion() > version, "Adding a MMFG should increment the version");
+        assertEquals(2, testCollection.processQuery(queryGraphCode, 0).size());
+        assertEquals(3, testCollection.getQueryResultCache().getMissCount());
+    }
+
     private int compare(float[] metric_a, float[] metric_b) {
 
         // calculate numeric values to support java-compatible comparison
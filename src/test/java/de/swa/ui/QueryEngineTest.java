@@ -0,0 +1,156 @@
+package de.swa.ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.swa.gc.GraphCode;
+import de.swa.gc.GraphCodeGenerator;
+import de.swa.gc.processing.CollectionProcessor;
+import de.swa.gc.processing.GraphCodeMeta;
+import de.swa.gc.processing.PruningCollectionProcessor;
+import de.swa.mmfg.GeneralMetadata;
+import de.swa.mmfg.MMFG;
+import de.swa.mmfg.Node;
+
+class QueryEngineTest {
+	/** collection, which counts the Graph Codes loaded for queries and does not store them **/
+	private static class CountingCollection extends MMFGCollection {
+		int loads = 0;
+
+		protected GraphCode getQueryGraphCode(MMFG m) {
+			loads++;
+			return GraphCodeGenerator.generate(m);
+		}
+
+		protected void storeGraphCode(MMFG m, File f, GraphCode gc) { }
+	}
+
+	/** collection, which queries with a pruning collection processor **/
+	private static class PruningCollection extends CountingCollection {
+		final PruningCollectionProcessor processor = new PruningCollectionProcessor();
+		private QueryEngine engine;
+
+		public synchronized QueryEngine getQueryEngine() {
+			if (engine == null) engine = new QueryEngine(this, processor);
+			return engine;
+		}
+	}
+
+	@Test
+	void query_decodesIndexedGraphCodesOnAccess(@TempDir File repository) throws Exception {
+		Configuration config = Configuration.getInstance();
+		String graphCodeRepository = config.getGraphCodeRepository();
+		boolean graphCodeIndex = config.isGraphCodeIndexEnabled();
+		MMFGCollection.closeGraphCodeStores();
+		config.setGraphCodeRepository(repository.getAbsolutePath());
+		config.setGraphCodeIndexEnabled(true);
+		try {
+			CountingCollection collection = new CountingCollection();
+			MMFG beach = mmfg("beach.jpg", "sun", "sand", "sea");
+			MMFG city = mmfg("city.jpg", "street", "car", "house");
+			// adding MMFGs appends their Graph Codes to the index
+			collection.addToCollection(beach);
+			collection.addToCollection(city);
+			assertTrue(MMFGCollection.getGraphCodeIndex().contains("city.jpg.gc"));
+
+			GraphCodeMeta indexed = collection.getQueryGraphCodeMeta(beach);
+			collection.getQueryGraphCodeMeta(city);
+			assertEquals(0, collection.loads);
+			assertTrue(indexed.getGraphcode().getNormalizedDictionary().contains("sand"));
+			assertEquals(1, collection.loads);
+
+			Vector<MMFG> result = collection.getQueryEngine().query(GraphCodeGenerator.generate(mmfg("query.jpg", "sun", "sea")), CollectionProcessor.SIMILARITY);
+			assertSame(beach, result.get(0));
+		} finally {
+			MMFGCollection.closeGraphCodeStores();
+			config.setGraphCodeRepository(graphCodeRepository);
+			config.setGraphCodeIndexEnabled(graphCodeIndex);
+		}
+	}
+
+	private static MMFG mmfg(String fileName, String... features) {
+		MMFG m = new MMFG();
+		GeneralMetadata gm = new GeneralMetadata();
+		gm.setFileReference(new File(fileName));
+		gm.setFileName(fileName);
+		m.setGeneralMetadata(gm);
+		for (String f : features) m.addNode(new Node(f, "value", m));
+		return m;
+	}
+
+	@Test
+	void query_loadsGraphCodesOnlyForAddedAndReplacedMMFGs() {
+		CountingCollection collection = new CountingCollection();
+		MMFG beach = mmfg("beach.jpg", "sun", "sand", "sea");
+		MMFG city = mmfg("city.jpg", "street", "car", "house");
+		collection.addToCollection(beach);
+		collection.addToCollection(city);
+		QueryEngine engine = collection.getQueryEngine();
+
+		GraphCode sunQuery = GraphCodeGenerator.generate(mmfg("query.jpg", "sun", "sea"));
+		Vector<MMFG> result = engine.query(sunQuery, CollectionProcessor.SIMILARITY);
+		assertSame(beach, result.get(0));
+		assertTrue(beach.getTempSimilarity()[0] > city.getTempSimilarity()[0]);
+		engine.query(GraphCodeGenerator.generate(mmfg("query.jpg", "car")), CollectionProcessor.RECOMMENDATION);
+		assertEquals(2, collection.loads);
+
+		MMFG forest = mmfg("forest.jpg", "tree", "sun");
+		collection.addToCollection(forest);
+		assertEquals(3, engine.query(sunQuery, CollectionProcessor.SIMILARITY).size());
+		assertEquals(3, collection.loads);
+
+		MMFG newCity = mmfg("city.jpg", "street", "sun", "sea");
+		collection.replaceMMFGInCollection(newCity, new File("city.jpg"));
+		result = engine.query(sunQuery, CollectionProcessor.SIMILARITY);
+		assertEquals(4, collection.loads);
+		assertEquals(3, engine.size());
+		assertTrue(result.contains(newCity));
+		assertFalse(result.contains(city));
+	}
+
+	@Test
+	void processQuery_ranksAtMostTheResultLimitAndKeepsTheCollection() {
+		CountingCollection collection = new CountingCollection();
+		MMFG beach = mmfg("beach.jpg", "sun", "sand", "sea");
+		collection.addToCollection(beach);
+		collection.addToCollection(mmfg("city.jpg", "street", "car", "house"));
+		collection.addToCollection(mmfg("forest.jpg", "tree", "moss"));
+		collection.getQueryEngine().setResultLimit(1);
+
+		Vector<MMFG> result = collection.processQuery(GraphCodeGenerator.generate(mmfg("query.jpg", "sun", "sea")), CollectionProcessor.SIMILARITY);
+		assertEquals(1, result.size());
+		assertSame(beach, result.get(0));
+		assertEquals(3, collection.getCollection().size());
+		assertSame(beach, collection.getCollection().get(0));
+	}
+
+	@Test
+	void processQuery_prunesCandidatesWithTheResultLimit() {
+		PruningCollection pruning = new PruningCollection();
+		CountingCollection exhaustive = new CountingCollection();
+		for (MMFGCollection c : new MMFGCollection[] {pruning, exhaustive}) {
+			c.addToCollection(mmfg("beach.jpg", "sun", "sand", "sea"));
+			c.addToCollection(mmfg("coast.jpg", "sun", "sea", "rock"));
+			for (int i = 0; i < 10; i++) c.addToCollection(mmfg("street" + i + ".jpg", "sun", "street", "car" + i));
+			c.getQueryEngine().setResultLimit(2);
+		}
+		GraphCode query = GraphCodeGenerator.generate(mmfg("query.jpg", "sun", "sea"));
+
+		Vector<MMFG> pruned = pruning.processQuery(query, CollectionProcessor.SIMILARITY);
+		Vector<MMFG> expected = exhaustive.processQuery(query, CollectionProcessor.SIMILARITY);
+		assertEquals(2, pruned.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getGeneralMetadata().getFileName(), pruned.get(i).getGeneralMetadata().getFileName());
+		}
+		assertTrue(pruning.processor.getEvaluatedCount() < pruning.getCollection().size());
+		assertEquals(12, pruning.getCollection().size());
+	}
+}